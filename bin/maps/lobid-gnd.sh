@@ -21,7 +21,8 @@ curl --no-progress-meter\
       puts "#{k}\u001D#{v.join("\u001F")}" if k && !v.empty?
     }
   ' |\
-  ./gradlew execLmdb --args="$t"
+  LC_ALL=C sort --stable --field-separator=$'\035' --key=1,1 |\
+  ./gradlew execLmdb --args="$t --append"
 
 [ -s "$t" ] && mv --backup --suffix=.bak "$t" "$f"
 
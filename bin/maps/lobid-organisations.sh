@@ -12,7 +12,8 @@ t="$p.$$.$e"
 curl --no-progress-meter\
   'https://lobid.org/organisations/search?q=_exists_:isil&format=tsv:isil,name&size=25000' |\
   tr $'\t' '\035' |\
-  ./gradlew execLmdb --args="$t"
+  LC_ALL=C sort --stable --field-separator=$'\035' --key=1,1 |\
+  ./gradlew execLmdb --args="$t --append"
 
 [ -s "$t" ] && mv --backup --suffix=.bak "$t" "$f"
 
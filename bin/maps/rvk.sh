@@ -31,7 +31,8 @@ curl --no-progress-meter\
       puts "#{k}\u001D#{v}"
     }
   ' |\
-  ./gradlew execLmdb --args="$t"
+  LC_ALL=C sort --stable --field-separator=$'\035' --key=1,1 |\
+  ./gradlew execLmdb --args="$t --append"
 
 [ -s "$t" ] && mv --backup --suffix=.bak "$t" "$f"
 
@@ -0,0 +1,132 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.Settings;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts bulk limits (actions, size and concurrent requests) towards a
+ * target latency, similar to AIMD congestion control: after each window of
+ * completed bulk requests, the limits grow additively if the requests were
+ * fast enough and are halved if they were too slow. A rejected or failed
+ * request (e.g., HTTP 429, timeouts or server errors) halves them right away
+ * (and starts a new window), so that the rejected actions are retried with the
+ * reduced limits.
+ */
+public final class AdaptiveBulkSizer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int DEFAULT_TARGET_LATENCY = 2000; // milliseconds
+    private static final int DEFAULT_WINDOW = 10;
+    private static final int DEFAULT_MIN_ACTIONS = 100;
+    private static final int DEFAULT_MIN_REQUESTS = 1;
+
+    private static final int MAX_FACTOR = 10;
+    private static final int INCREMENT_DIVISOR = 10;
+    private static final int DECREASE_DIVISOR = 2;
+
+    private final int mIncrement;
+    private final int mMaxActions;
+    private final int mMaxRequests;
+    private final int mMinActions;
+    private final int mMinRequests;
+    private final int mWindow;
+    private final long mBytesPerAction;
+    private final long mTargetLatency;
+
+    private boolean mChanged;
+    private int mActions;
+    private int mCount;
+    private int mRequests;
+    private long mNanos;
+
+    public AdaptiveBulkSizer(final Settings aSettings, final int aActions, final long aBytes, final int aRequests) {
+        mTargetLatency = TimeUnit.MILLISECONDS.toNanos(aSettings.getAsInt("target-latency", DEFAULT_TARGET_LATENCY));
+        mWindow = Math.max(aSettings.getAsInt("window", DEFAULT_WINDOW), 1);
+
+        mMinActions = Math.min(aSettings.getAsInt("min-actions", DEFAULT_MIN_ACTIONS), aActions);
+        mMaxActions = Math.max(aSettings.getAsInt("max-actions", aActions * MAX_FACTOR), aActions);
+        mMinRequests = Math.min(aSettings.getAsInt("min-requests", DEFAULT_MIN_REQUESTS), aRequests);
+        mMaxRequests = Math.max(aSettings.getAsInt("max-requests", aRequests * 2), aRequests);
+
+        mIncrement = Math.max(aActions / INCREMENT_DIVISOR, 1);
+
+        // The size limit (if any) follows the action limit proportionally.
+        mBytesPerAction = aBytes > 0 ? Math.max(aBytes / aActions, 1) : -1;
+
+        mActions = aActions;
+        mRequests = aRequests;
+
+        LOGGER.info("Adaptive bulk sizing [target={}ms, window={}, actions={}..{}, requests={}..{}]",
+                TimeUnit.NANOSECONDS.toMillis(mTargetLatency), mWindow, mMinActions, mMaxActions, mMinRequests, mMaxRequests);
+    }
+
+    public synchronized int getActions() {
+        return mActions;
+    }
+
+    public synchronized long getBytes() {
+        return mBytesPerAction > 0 ? mBytesPerAction * mActions : -1;
+    }
+
+    public synchronized int getRequests() {
+        return mRequests;
+    }
+
+    /**
+     * Records a completed bulk request.
+     *
+     * @param aNanos the bulk request's latency
+     * @param aFailed whether the bulk request failed or (some of it) was rejected by the cluster
+     */
+    public synchronized void record(final long aNanos, final boolean aFailed) {
+        mNanos += aNanos;
+        ++mCount;
+
+        if (aFailed || mCount >= mWindow) {
+            adjust(mNanos / mCount, aFailed);
+
+            mCount = 0;
+            mNanos = 0;
+        }
+    }
+
+    /**
+     * Returns (and clears) whether the limits changed since the last call.
+     *
+     * @return whether the bulk processor should be recreated
+     */
+    public synchronized boolean takeChanged() {
+        final boolean changed = mChanged;
+        mChanged = false;
+        return changed;
+    }
+
+    private void adjust(final long aLatency, final boolean aFailed) {
+        final int actions;
+        final int requests;
+
+        if (aFailed || aLatency > mTargetLatency) {
+            actions = Math.max(mActions / DECREASE_DIVISOR, mMinActions);
+            requests = Math.max(mRequests / DECREASE_DIVISOR, mMinRequests);
+        }
+        else {
+            actions = Math.min(mActions + mIncrement, mMaxActions);
+            requests = aLatency < mTargetLatency / 2 ? Math.min(mRequests + 1, mMaxRequests) : mRequests;
+        }
+
+        if (actions != mActions || requests != mRequests) {
+            LOGGER.info("Adjusting bulk limits [latency={}ms, failed={}, actions={}->{}, requests={}->{}]",
+                    TimeUnit.NANOSECONDS.toMillis(aLatency), aFailed, mActions, actions, mRequests, requests);
+
+            mActions = actions;
+            mRequests = requests;
+            mChanged = true;
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.FileQueue;
+import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.JsonBytesEncoder;
+import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.Metrics;
+import hbz.limetrans.util.Settings;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.metafacture.io.FileCompression;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes bulk actions as Elasticsearch {@code _bulk} NDJSON shards (without
+ * index names) for later ingestion with {@link BulkReplayer}.
+ *
+ * Shards are split by uncompressed size, compressed according to their file
+ * extension and only appear under their final name once complete.
+ */
+public final class BulkExporter implements BulkOutput {
+
+    public static final String SHARD_PATTERN = "bulk-*.ndjson*";
+    public static final String CHECKPOINT_FILE = "checkpoint";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String SHARD_NAME = "bulk-%05d.ndjson%s";
+
+    private static final String DEFAULT_COMPRESSION = "gz";
+    private static final String DEFAULT_SHARD_SIZE = "1073741824"; // 1 GB
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] INDEX = "{\"index\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE = "{\"update\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DELETE = "{\"delete\":{\"_id\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ACTION_END = "\"}}\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_START = "{\"doc\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATE_END = "}".getBytes(StandardCharsets.UTF_8);
+
+    private final JsonStringEncoder mIdEncoder = JsonStringEncoder.getInstance();
+    private final Path mPath;
+    private final String mExtension;
+    private final long mShardSize;
+
+    private OutputStream mOutputStream;
+    private Path mShardFile;
+    private Path mTempFile;
+    private boolean mFailed;
+    private int mShards;
+    private long mActions;
+    private long mBytes;
+    private long mShardBytes;
+
+    public BulkExporter(final Settings aSettings) {
+        mPath = Paths.get(aSettings.get("path"));
+        mShardSize = Long.parseLong(aSettings.get("shard-size", DEFAULT_SHARD_SIZE));
+
+        final String compression = aSettings.get("compression", DEFAULT_COMPRESSION);
+        mExtension = compression.isEmpty() || "none".equals(compression) ? "" : "." + compression;
+
+        reset();
+    }
+
+    @Override
+    public void addBulkIndex(final String aId, final JsonBytesEncoder.Document aDocument) {
+        write(INDEX, aId, aDocument, false);
+    }
+
+    @Override
+    public void addBulkUpdate(final String aId, final JsonBytesEncoder.Document aDocument) {
+        write(UPDATE, aId, aDocument, true);
+    }
+
+    @Override
+    public void addBulkDelete(final String aId) {
+        write(DELETE, aId, null, false);
+    }
+
+    @Override
+    public void setMetrics(final Metrics aMetrics) {
+        aMetrics.addGauge("bulk.shards", () -> mShards);
+    }
+
+    // Actions are never acknowledged: written shards might not get replayed (cf. BulkReplayer).
+    @Override
+    public void setAcknowledgedListener(final Consumer<String> aListener) {
+    }
+
+    /**
+     * Removes previously exported shards (and the replay checkpoint) so that
+     * they won't be mixed up with the current export.
+     */
+    @Override
+    public void reset() {
+        closeShard();
+
+        mFailed = false;
+        mShards = 0;
+        mActions = 0;
+        mBytes = 0;
+
+        try {
+            Files.createDirectories(mPath);
+
+            try (Stream<Path> stream = FileQueue.findFiles(mPath, SHARD_PATTERN)) {
+                stream.forEach(p -> {
+                    try {
+                        Files.delete(p);
+                    }
+                    catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+
+            if (Files.deleteIfExists(mPath.resolve(CHECKPOINT_FILE))) {
+                LOGGER.info("Removed replay checkpoint: {}", mPath);
+            }
+        }
+        catch (final IOException | UncheckedIOException e) {
+            throw new LimetransException("Failed to prepare bulk export: " + mPath, e);
+        }
+
+        LOGGER.info("Exporting bulk shards: {} [size={}, extension={}]",
+                mPath, Helpers.byteCountToDisplaySize(mShardSize), mExtension);
+    }
+
+    @Override
+    public void flush() {
+        try {
+            if (mOutputStream != null) {
+                mOutputStream.flush();
+            }
+        }
+        catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public boolean sync() {
+        flush();
+        return !mFailed;
+    }
+
+    @Override
+    public void close(final boolean aSwitchIndex) {
+        closeShard();
+
+        LOGGER.info("Exported bulk shards: {} [shards={}, actions={}, bytes={}, failed={}]",
+                mPath, mShards, mActions, Helpers.byteCountToDisplaySize(mBytes), mFailed);
+    }
+
+    @Override
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    private void write(final byte[] aAction, final String aId, final JsonBytesEncoder.Document aDocument, final boolean aUpdate) {
+        if (mFailed) {
+            return;
+        }
+
+        try {
+            if (mOutputStream == null) {
+                openShard();
+            }
+
+            final byte[] id = mIdEncoder.quoteAsUTF8(aId);
+            long bytes = aAction.length + id.length + ACTION_END.length;
+
+            mOutputStream.write(aAction);
+            mOutputStream.write(id);
+            mOutputStream.write(ACTION_END);
+
+            if (aDocument != null) {
+                if (aUpdate) {
+                    mOutputStream.write(UPDATE_START);
+                    bytes += UPDATE_START.length + UPDATE_END.length;
+                }
+
+                mOutputStream.write(aDocument.array(), aDocument.offset(), aDocument.length());
+
+                if (aUpdate) {
+                    mOutputStream.write(UPDATE_END);
+                }
+
+                mOutputStream.write('\n');
+                bytes += aDocument.length() + 1;
+            }
+
+            ++mActions;
+            mBytes += bytes;
+            mShardBytes += bytes;
+
+            if (mShardBytes >= mShardSize) {
+                closeShard();
+            }
+        }
+        catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    private void openShard() throws IOException {
+        mShardFile = mPath.resolve(SHARD_NAME.formatted(mShards, mExtension));
+        mTempFile = Files.createTempFile(mPath, "bulk-", ".tmp");
+        mShardBytes = 0;
+
+        // Compression is determined by the shard's final name, not the temporary one.
+        mOutputStream = FileCompression.AUTO.createCompressor(new BufferedOutputStream(
+                    Files.newOutputStream(mTempFile), BUFFER_SIZE), mShardFile.toString());
+    }
+
+    private void closeShard() {
+        if (mOutputStream == null) {
+            return;
+        }
+
+        try {
+            mOutputStream.close();
+
+            if (!mFailed) {
+                Files.move(mTempFile, mShardFile, StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Exported bulk shard: {} [bytes={}]", mShardFile, Helpers.byteCountToDisplaySize(mShardBytes));
+
+                ++mShards;
+            }
+        }
+        catch (final IOException e) {
+            fail(e);
+        }
+        finally {
+            mOutputStream = null;
+
+            try {
+                Files.deleteIfExists(mTempFile);
+            }
+            catch (final IOException e) {
+                LOGGER.warn("Failed to delete temporary file: " + mTempFile, e);
+            }
+        }
+    }
+
+    private void fail(final IOException aException) {
+        LOGGER.error("Failed to write bulk shard: " + mShardFile, aException);
+        mFailed = true;
+    }
+
+}
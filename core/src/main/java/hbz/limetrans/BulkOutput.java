@@ -0,0 +1,45 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.JsonBytesEncoder;
+import hbz.limetrans.util.Metrics;
+
+import java.util.function.Consumer;
+
+/**
+ * Destination for bulk actions: either an Elasticsearch cluster
+ * ({@link ElasticsearchClient}) or an offline export ({@link BulkExporter}).
+ */
+public interface BulkOutput {
+
+    void addBulkIndex(String aId, JsonBytesEncoder.Document aDocument);
+
+    void addBulkUpdate(String aId, JsonBytesEncoder.Document aDocument);
+
+    void addBulkDelete(String aId);
+
+    void setMetrics(Metrics aMetrics);
+
+    /**
+     * Sets the listener to be notified with the ID of each index or update
+     * action once the destination has acknowledged it.
+     *
+     * @param aListener the listener (may be {@code null}); called from any thread
+     */
+    void setAcknowledgedListener(Consumer<String> aListener);
+
+    void reset();
+
+    void flush();
+
+    /**
+     * Waits until all actions added so far have been acknowledged.
+     *
+     * @return whether all actions succeeded
+     */
+    boolean sync();
+
+    void close(boolean aSwitchIndex);
+
+    boolean isFailed();
+
+}
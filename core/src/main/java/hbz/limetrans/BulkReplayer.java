@@ -0,0 +1,253 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.FileQueue;
+import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.Settings;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.metafacture.io.FileCompression;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Ingests the shards written by {@link BulkExporter} through the regular
+ * {@link ElasticsearchClient} bulk processor.
+ *
+ * Shards are read concurrently in batches of {@code workers}; after each
+ * batch, the pending bulk requests are awaited (keeping the bulk index
+ * settings until the end of the run) and the batch's shards are recorded in
+ * the checkpoint file, which starts with the name of the index set up by the
+ * first run. A subsequent run resumes with the remaining shards in that index
+ * (cf. {@link ElasticsearchClient#getResumeSettings(Settings, String)}), even
+ * if the configured time window would yield a different one by now. The
+ * checkpoint is removed once all shards have been ingested.
+ */
+public final class BulkReplayer {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String INDEX_PREFIX = "index=";
+
+    private final Path mCheckpoint;
+    private final Path mPath;
+    private final Settings mSettings;
+    private final int mWorkers;
+
+    public BulkReplayer(final Settings aSettings, final Path aPath, final int aWorkers) {
+        mSettings = aSettings;
+        mPath = aPath;
+        mWorkers = aWorkers;
+
+        mCheckpoint = aPath.resolve(BulkExporter.CHECKPOINT_FILE);
+    }
+
+    public boolean replay() throws IOException {
+        final Checkpoint checkpoint = readCheckpoint();
+        final Set<String> completed = checkpoint.shards();
+        final List<Path> shards;
+
+        try (Stream<Path> stream = FileQueue.findFiles(mPath, BulkExporter.SHARD_PATTERN)) {
+            shards = stream.filter(p -> !completed.contains(p.getFileName().toString())).sorted().collect(Collectors.toList());
+        }
+
+        LOGGER.info("Replaying bulk shards: {} [pending={}, completed={}, workers={}]",
+                mPath, shards.size(), completed.size(), mWorkers);
+
+        final ElasticsearchClient client;
+
+        if (checkpoint.indexName() != null) {
+            // Resuming: the index already holds the completed shards' documents.
+            LOGGER.info("Resuming into index: {}", checkpoint.indexName());
+            client = ElasticsearchClient.newClient(ElasticsearchClient.getResumeSettings(mSettings, checkpoint.indexName()));
+        }
+        else if (completed.isEmpty()) {
+            client = ElasticsearchClient.newClient(mSettings);
+        }
+        else {
+            throw new LimetransException("Checkpoint lacks the index name, can't resume: " + mCheckpoint);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(mWorkers, r -> {
+            final Thread thread = new Thread(r, "bulk-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        boolean failed = false;
+
+        try {
+            if (checkpoint.indexName() == null) {
+                writeCheckpoint(List.of(INDEX_PREFIX + client.getIndexName()));
+            }
+
+            for (int i = 0; i < shards.size() && !failed; i += mWorkers) {
+                final List<Path> batch = shards.subList(i, Math.min(i + mWorkers, shards.size()));
+
+                failed = !replayBatch(client, executor, batch);
+
+                if (!failed) {
+                    writeCheckpoint(batch.stream().map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            client.close(!failed);
+        }
+
+        failed |= client.isFailed();
+
+        if (failed) {
+            LOGGER.error("Replaying bulk shards: FAILED (resume from checkpoint: {})", mCheckpoint);
+        }
+        else {
+            Files.deleteIfExists(mCheckpoint);
+            LOGGER.info("Replaying bulk shards: SUCCESSFUL [succeeded={}, failed={}, deleted={}]",
+                    client.getSucceeded(), client.getFailed(), client.getDeleted());
+        }
+
+        return !failed;
+    }
+
+    private boolean replayBatch(final ElasticsearchClient aClient, final ExecutorService aExecutor, final List<Path> aBatch) {
+        final List<Future<Long>> futures = new ArrayList<>();
+        aBatch.forEach(p -> futures.add(aExecutor.submit(() -> replayShard(aClient, p))));
+
+        boolean failed = false;
+
+        for (int i = 0; i < futures.size(); ++i) {
+            try {
+                LOGGER.info("Replayed bulk shard: {} [actions={}]", aBatch.get(i), futures.get(i).get());
+            }
+            catch (final ExecutionException e) {
+                LOGGER.error("Failed to replay bulk shard: " + aBatch.get(i), e.getCause());
+                failed = true;
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Replaying bulk shard interrupted: " + aBatch.get(i), e);
+                failed = true;
+            }
+        }
+
+        // Only acknowledged shards are checkpointed.
+        return aClient.sync() && !failed;
+    }
+
+    private long replayShard(final ElasticsearchClient aClient, final Path aShard) throws IOException {
+        long actions = 0;
+
+        try (
+            InputStream inputStream = Files.newInputStream(aShard);
+            InputStream decompressor = FileCompression.AUTO.createDecompressor(inputStream, true);
+            Reader reader = new InputStreamReader(decompressor, StandardCharsets.UTF_8);
+            BufferedReader bufferedReader = new BufferedReader(reader)
+        ) {
+            final Iterator<String> lines = bufferedReader.lines().iterator();
+
+            while (lines.hasNext()) {
+                final String line = lines.next();
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final Map.Entry<String, JsonNode> action = MAPPER.readTree(line).fields().next();
+                final String id = action.getValue().path("_id").asText(null);
+
+                switch (action.getKey()) {
+                    case "create":
+                    case "index":
+                        final String document = readDocument(lines, aShard);
+
+                        synchronized (aClient) {
+                            aClient.addBulkIndex(id, document);
+                        }
+
+                        break;
+                    case "update":
+                        final String update = MAPPER.readTree(readDocument(lines, aShard)).path("doc").toString();
+
+                        synchronized (aClient) {
+                            aClient.addBulkUpdate(id, update);
+                        }
+
+                        break;
+                    case "delete":
+                        synchronized (aClient) {
+                            aClient.addBulkDelete(id);
+                        }
+
+                        break;
+                    default:
+                        throw new LimetransException("Unsupported bulk action in " + aShard + ": " + action.getKey());
+                }
+
+                ++actions;
+            }
+        }
+
+        return actions;
+    }
+
+    private String readDocument(final Iterator<String> aLines, final Path aShard) {
+        if (!aLines.hasNext()) {
+            throw new LimetransException("Missing document in " + aShard);
+        }
+
+        return aLines.next();
+    }
+
+    private Checkpoint readCheckpoint() throws IOException {
+        final Set<String> completed = new HashSet<>();
+        String indexName = null;
+
+        if (Files.exists(mCheckpoint)) {
+            for (final String line : Files.readAllLines(mCheckpoint, StandardCharsets.UTF_8)) {
+                final String value = line.strip();
+
+                if (value.startsWith(INDEX_PREFIX)) {
+                    indexName = value.substring(INDEX_PREFIX.length());
+                }
+                else if (!value.isEmpty()) {
+                    completed.add(value);
+                }
+            }
+        }
+
+        return new Checkpoint(indexName, completed);
+    }
+
+    private void writeCheckpoint(final List<String> aLines) throws IOException {
+        Files.write(mCheckpoint, aLines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private record Checkpoint(String indexName, Set<String> shards) {
+    }
+
+}
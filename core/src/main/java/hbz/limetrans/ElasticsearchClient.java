@@ -2,6 +2,7 @@ package hbz.limetrans;
 
 import hbz.limetrans.util.Helpers;
 import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.Metrics;
 import hbz.limetrans.util.Settings;
 
 import org.apache.logging.log4j.Level;
@@ -19,13 +20,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
-public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractClass
+public abstract class ElasticsearchClient implements BulkOutput { // checkstyle-disable-line AbstractClass
 
     protected static final int MAX_HITS = 1000;
 
@@ -46,8 +50,15 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
     private static final int MAX_BULK_ACTIONS = 1000;
     private static final int MAX_BULK_REQUESTS = 2;
 
+    private static final int MAX_BULK_RETRIES = 5;
+    private static final long BULK_RETRY_DELAY = 500; // milliseconds
+
     private static final int DEFAULT_RETAIN = 2;
 
+    private static final String RESUME_INDEX_KEY = "resumeIndex";
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
     private static final String VERSION_PREFIX = "V";
 
     private static final Logger LOGGER = LogManager.getLogger();
@@ -56,19 +67,28 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
     private final LongAdder mDeletedCounter = new LongAdder();
     private final LongAdder mFailedCounter = new LongAdder();
     private final LongAdder mSucceededCounter = new LongAdder();
+    private final AdaptiveBulkSizer mBulkSizer;
+    private final Map<Long, Long> mBulkStartTimes = new ConcurrentHashMap<>();
+    private final Queue<Runnable> mBulkRetries = new ConcurrentLinkedQueue<>();
     private final Settings mIndexSettings;
     private final Settings mSettings;
     private final String mRefreshInterval;
     private final int mBulkActions;
     private final int mBulkRequests;
+    private final int mMaxBulkRetries;
     private final int mRetain;
     private final long mBulkSize;
 
+    private volatile Consumer<String> mAcknowledgedListener;
+
+    private Metrics.Stage mBulkStage;
     private String mAliasName;
     private String mIndexName;
+    private boolean mBulkIndexSettings;
     private boolean mDeleteOnExit;
     private boolean mFailed;
     private boolean mIndexCreated;
+    private boolean mRetrying;
 
     protected ElasticsearchClient(final Settings aSettings) {
         LOGGER.debug("Settings: {}", aSettings);
@@ -79,6 +99,10 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         mBulkActions = aSettings.getAsInt("maxbulkactions", MAX_BULK_ACTIONS);
         mBulkRequests = aSettings.getAsInt("maxbulkrequests", MAX_BULK_REQUESTS);
         mBulkSize = Long.parseLong(aSettings.get("maxbulksize", MAX_BULK_SIZE));
+        mMaxBulkRetries = aSettings.getAsInt("maxbulkretries", MAX_BULK_RETRIES);
+
+        mBulkSizer = aSettings.containsSetting("adaptive") ?
+            new AdaptiveBulkSizer(aSettings.getAsSettings("adaptive"), mBulkActions, mBulkSize, mBulkRequests) : null;
 
         mNumberOfReplicas = mIndexSettings.getAsInt(INDEX_REPLICA_KEY, DEFAULT_REPLICA_COUNT);
         mRefreshInterval = mIndexSettings.get(INDEX_REFRESH_KEY, DEFAULT_REFRESH_INTERVAL);
@@ -93,9 +117,14 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         final boolean delete = aSettings.getAsBoolean("delete", false);
 
         final String indexName = mIndexSettings.get(INDEX_NAME_KEY).toLowerCase();
+        final String resumeIndex = aSettings.get(RESUME_INDEX_KEY);
         final String timeWindow = getTimeWindow();
 
-        if (timeWindow != null && !update) {
+        if (resumeIndex != null) {
+            mIndexName = resumeIndex;
+            mAliasName = resumeIndex.equals(indexName) ? null : indexName;
+        }
+        else if (timeWindow != null && !update) {
             mIndexName = indexName + timeWindow;
             mAliasName = indexName;
         }
@@ -107,7 +136,7 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         }
 
         try {
-            if (update) {
+            if (update || resumeIndex != null) {
                 LOGGER.info("Checking index: {}", mIndexName);
                 checkIndex();
             }
@@ -122,10 +151,13 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         }
     }
 
+    @Override
     public void reset() {
+        mBulkIndexSettings = false;
         mFailed = false;
         mIndexCreated = false;
 
+        mBulkRetries.clear();
         mSucceededCounter.reset();
         mFailedCounter.reset();
         mDeletedCounter.reset();
@@ -154,6 +186,7 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         close(false);
     }
 
+    @Override
     public void close(final boolean aSwitchIndex) {
         flush();
 
@@ -164,10 +197,11 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         closeClient();
     }
 
+    @Override
     public void flush() {
         if (!isBulkClosed()) {
             try {
-                if (closeBulk()) {
+                if (closeBulkAndRetry()) {
                     LOGGER.info("All bulk requests complete");
                 }
                 else {
@@ -178,24 +212,114 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
                 LOGGER.error("Flushing bulk processor interrupted", e);
                 mFailed = true;
             }
+        }
 
+        if (mBulkIndexSettings) {
             updateIndexSettings(false);
+            mBulkIndexSettings = false;
         }
 
         refreshIndex();
     }
 
+    // Unlike flush(), keeps the bulk index settings (the bulk processor is recreated on demand).
+    @Override
+    public boolean sync() {
+        if (!isBulkClosed()) {
+            try {
+                if (!closeBulkAndRetry()) {
+                    LOGGER.warn("Some bulk requests still pending");
+                    mFailed = true;
+                }
+            }
+            catch (final InterruptedException e) {
+                LOGGER.error("Syncing bulk processor interrupted", e);
+                mFailed = true;
+            }
+        }
+
+        return !mFailed;
+    }
+
+    @Override
+    public boolean isFailed() {
+        return mFailed;
+    }
+
     protected abstract boolean isBulkClosed();
 
     protected abstract boolean closeBulk() throws InterruptedException;
 
+    // Resubmits rejected actions (with increasing delays) until none are left or the retries are exhausted.
+    private boolean closeBulkAndRetry() throws InterruptedException {
+        boolean complete = closeBulk();
+
+        for (int i = 0; complete && !mBulkRetries.isEmpty(); ++i) {
+            if (i >= mMaxBulkRetries) {
+                LOGGER.error("Giving up on {} rejected bulk actions after {} retries", mBulkRetries.size(), i);
+                mFailedCounter.add(mBulkRetries.size());
+                mBulkRetries.clear();
+                mFailed = true;
+                break;
+            }
+
+            LOGGER.info("Retrying {} rejected bulk actions", mBulkRetries.size());
+            Thread.sleep(BULK_RETRY_DELAY << i);
+
+            retryBulk();
+            complete = isBulkClosed() || closeBulk();
+        }
+
+        return complete;
+    }
+
+    // Rejected actions are resubmitted from the indexing thread (bulk listeners must not add to the bulk processor).
+    private void retryBulk() {
+        if (mRetrying) {
+            return;
+        }
+
+        mRetrying = true;
+
+        try {
+            for (Runnable retry = mBulkRetries.poll(); retry != null; retry = mBulkRetries.poll()) {
+                retry.run();
+            }
+        }
+        finally {
+            mRetrying = false;
+        }
+    }
+
     protected boolean createBulk() {
+        final boolean resize = mBulkSizer != null && mBulkSizer.takeChanged() && !isBulkClosed();
+
+        if (resize) {
+            // Limits can only be set when the bulk processor is created.
+            try {
+                closeBulk();
+            }
+            catch (final InterruptedException e) {
+                LOGGER.error("Resizing bulk processor interrupted", e);
+                mFailed = true;
+            }
+        }
+
         if (isBulkClosed()) {
-            LOGGER.info("Creating bulk processor [actions={}, requests={}, size={}]", mBulkActions, mBulkRequests, mBulkSize);
-            createBulk(mBulkActions, mBulkRequests);
-            updateIndexSettings(true);
+            final int bulkActions = getBulkActions();
+            final int bulkRequests = getBulkRequests();
+
+            LOGGER.info("Creating bulk processor [actions={}, requests={}, size={}]", bulkActions, bulkRequests, getBulkSize());
+            createBulk(bulkActions, bulkRequests);
+
+            if (!mBulkIndexSettings) {
+                updateIndexSettings(true);
+                mBulkIndexSettings = true;
+            }
         }
 
+        retryBulk();
+
         return !mFailed;
     }
 
@@ -418,38 +542,132 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
 
     public abstract void addBulkUpdate(String aId, String aDocument);
 
-    public abstract void addBulkDelete(String aId);
+    @Override
+    public void setMetrics(final Metrics aMetrics) {
+        mBulkStage = aMetrics.getStage("elasticsearch.bulk");
+
+        if (mBulkSizer != null) {
+            aMetrics.addGauge("elasticsearch.bulk.actions", mBulkSizer::getActions);
+            aMetrics.addGauge("elasticsearch.bulk.bytes", mBulkSizer::getBytes);
+            aMetrics.addGauge("elasticsearch.bulk.requests", mBulkSizer::getRequests);
+        }
+    }
+
+    @Override
+    public void setAcknowledgedListener(final Consumer<String> aListener) {
+        mAcknowledgedListener = aListener;
+    }
 
     protected void beforeBulk(final long aId, final int aActions, final long aBytes) {
         LOGGER.debug("Before bulk {} [actions={}, bytes={}]", aId, aActions, aBytes);
+
+        if (mBulkStage != null || mBulkSizer != null) {
+            mBulkStartTimes.put(aId, System.nanoTime());
+        }
+
+        if (mBulkStage != null) {
+            mBulkStage.addRecords(aActions);
+
+            if (aBytes > 0) {
+                mBulkStage.addBytes(aBytes);
+            }
+        }
+    }
+
+    private void finishBulk(final long aId, final boolean aFailed) {
+        final Long startTime = mBulkStartTimes.remove(aId);
+
+        if (startTime != null) {
+            final long elapsed = System.nanoTime() - startTime;
+
+            if (mBulkStage != null) {
+                mBulkStage.addNanos(elapsed);
+            }
+
+            if (mBulkSizer != null) {
+                mBulkSizer.record(elapsed, aFailed);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the cluster rejected a bulk request or item because it
+     * is overloaded (HTTP 429).
+     *
+     * @param aStatus the response status
+     * @return true if the request or item should be retried
+     */
+    protected static boolean isRejected(final int aStatus) {
+        return aStatus == TOO_MANY_REQUESTS;
     }
 
     protected void afterBulk(final long aId, final long aTook, final BulkItemConsumer aConsumer) {
         final LongAdder deleted = new LongAdder();
         final LongAdder failed = new LongAdder();
+        final LongAdder rejected = new LongAdder();
         final LongAdder succeeded = new LongAdder();
+        final Consumer<String> listener = mAcknowledgedListener;
 
-        aConsumer.accept(deleted::increment, succeeded::increment, (i, m) -> {
+        aConsumer.accept(deleted::increment, i -> {
+            succeeded.increment();
+
+            if (listener != null) {
+                listener.accept(i);
+            }
+        }, (i, m) -> {
             mFailed = true;
             failed.increment();
             LOGGER.warn("Bulk {} item {} failed: {}", aId, i, m);
+        }, r -> {
+            rejected.increment();
+            mBulkRetries.add(r);
         });
 
         mSucceededCounter.add(succeeded.sum());
         mFailedCounter.add(failed.sum());
         mDeletedCounter.add(deleted.sum());
 
-        LOGGER.debug("After bulk {} [succeeded={}, failed={}, deleted={}, took={}]",
-                aId, succeeded.sum(), failed.sum(), deleted.sum(), aTook);
+        if (rejected.sum() > 0) {
+            LOGGER.warn("Bulk {} items rejected, retrying: {}", aId, rejected.sum());
+        }
+
+        LOGGER.debug("After bulk {} [succeeded={}, failed={}, deleted={}, rejected={}, took={}]",
+                aId, succeeded.sum(), failed.sum(), deleted.sum(), rejected.sum(), aTook);
+
+        finishBulk(aId, rejected.sum() > 0);
     }
 
-    protected void afterBulk(final long aId, final Throwable aThrowable) {
-        LOGGER.error("Bulk " + aId + " failed: " + aThrowable.getMessage(), aThrowable);
-        mFailed = true;
+    /**
+     * Handles a failed bulk request.
+     *
+     * @param aId the bulk request's ID
+     * @param aThrowable the failure
+     * @param aRetries the actions to resubmit if the request was rejected (cf. {@link #isRejected(int)}), or {@code null}
+     */
+    protected void afterBulk(final long aId, final Throwable aThrowable, final List<Runnable> aRetries) {
+        if (aRetries != null) {
+            LOGGER.warn("Bulk {} rejected, retrying {} actions: {}", aId, aRetries.size(), aThrowable.getMessage());
+            mBulkRetries.addAll(aRetries);
+        }
+        else {
+            LOGGER.error("Bulk " + aId + " failed: " + aThrowable.getMessage(), aThrowable);
+            mFailed = true;
+        }
+
+        // Rejected or not (e.g., timeouts or server errors), a failed request means the cluster can't keep up.
+        finishBulk(aId, true);
+    }
+
+    protected int getBulkActions() {
+        return mBulkSizer != null ? mBulkSizer.getActions() : mBulkActions;
+    }
+
+    protected int getBulkRequests() {
+        return mBulkSizer != null ? mBulkSizer.getRequests() : mBulkRequests;
     }
 
     protected long getBulkSize() {
-        return mBulkSize;
+        return mBulkSizer != null ? mBulkSizer.getBytes() : mBulkSize;
     }
 
     protected Settings getSettings() {
@@ -524,6 +742,20 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
         }
     }
 
+    /**
+     * Amends the settings to continue an interrupted run in the index it had
+     * set up, which must still exist (instead of setting up a new one; e.g.,
+     * because the time window has moved on in the meantime). The alias, if
+     * any, is switched to that index as usual.
+     *
+     * @param aSettings the settings
+     * @param aIndexName the concrete index name (cf. {@link #getIndexName()})
+     * @return the amended settings
+     */
+    public static Settings getResumeSettings(final Settings aSettings, final String aIndexName) {
+        return aSettings.amendSettings((s, b) -> b.put(RESUME_INDEX_KEY, aIndexName));
+    }
+
     public static ElasticsearchClient newClient(final String aIndexName, final String aIndexType, final Consumer<Settings.Builder> aConsumer) {
         final Settings.Builder settingsBuilder = Settings.settingsBuilder()
             .put(new String[]{INDEX_KEY, INDEX_NAME_KEY}, aIndexName)
@@ -567,7 +799,7 @@ public abstract class ElasticsearchClient { // checkstyle-disable-line AbstractC
 
     @FunctionalInterface
     protected interface BulkItemConsumer {
-        void accept(Runnable aDeleted, Runnable aSucceeded, BiConsumer<String, String> aFailed);
+        void accept(Runnable aDeleted, Consumer<String> aSucceeded, BiConsumer<String, String> aFailed, Consumer<Runnable> aRejected);
     }
 
     protected record IndexInfo(boolean hasAliases, boolean isEmpty) {
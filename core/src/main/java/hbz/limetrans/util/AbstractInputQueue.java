@@ -13,9 +13,12 @@ public abstract class AbstractInputQueue {
 
     private static final int DEFAULT_ORDER = 0;
 
+    private static final String FILTER_STAGE = "filter";
+
     private final int mOrder;
 
-    private boolean mFailed;
+    private Metrics mMetrics;
+    private volatile boolean mFailed;
 
     public AbstractInputQueue() {
         mOrder = DEFAULT_ORDER;
@@ -43,6 +46,14 @@ public abstract class AbstractInputQueue {
 
     public abstract int size();
 
+    public void setMetrics(final Metrics aMetrics) {
+        mMetrics = aMetrics;
+    }
+
+    protected String getStageName() {
+        return "input";
+    }
+
     public LifeCycle process(final StreamReceiver aReceiver) {
         return process(aReceiver, null);
     }
@@ -50,10 +61,46 @@ public abstract class AbstractInputQueue {
     public abstract <T extends StreamReceiver & Sender<StreamReceiver>> LifeCycle process(StreamReceiver aReceiver, T aSender);
 
     protected <T> void process(final String aMsg, final ObjectReceiver<T> aOpener, final T aObj) {
+        process(aMsg, () -> aOpener.process(aObj));
+    }
+
+    protected void process(final String aMsg, final Runnable aRunnable) {
         LOGGER.info("Processing " + aMsg);
+        execute(mMetrics != null ? () -> mMetrics.getStage(getStageName()).time(aRunnable) : aRunnable);
+    }
+
+    protected void addBytes(final long aBytes) {
+        if (mMetrics != null) {
+            mMetrics.getStage(getStageName()).addBytes(aBytes);
+        }
+    }
+
+    // Decoded records are counted for the input stage, the filter (if any) is timed separately.
+    protected <T extends StreamReceiver & Sender<StreamReceiver>> StreamReceiver getReceiver(final StreamReceiver aReceiver, final T aSender, final boolean aCount) {
+        StreamReceiver receiver = aReceiver;
+
+        if (aSender != null) {
+            aSender.setReceiver(receiver);
+            receiver = withMetrics(aSender, FILTER_STAGE, true);
+        }
+
+        return aCount ? withMetrics(receiver, getStageName(), false) : receiver;
+    }
+
+    private StreamReceiver withMetrics(final StreamReceiver aReceiver, final String aStage, final boolean aTimed) {
+        if (mMetrics == null) {
+            return aReceiver;
+        }
+
+        final TimingStreamPipe pipe = aTimed ? mMetrics.newTimer(aStage) : mMetrics.newCounter(aStage);
+        pipe.setReceiver(aReceiver);
+
+        return pipe;
+    }
 
+    protected void execute(final Runnable aRunnable) {
         try {
-            aOpener.process(aObj);
+            aRunnable.run();
         }
         catch (final Exception e) { // checkstyle-disable-line IllegalCatch
             LOGGER.error("Processing failed:", e);
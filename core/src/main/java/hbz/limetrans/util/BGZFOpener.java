@@ -0,0 +1,58 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+import org.metafacture.io.FileCompression;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+// Like FileOpener, but inflates BGZF blocks on several threads; other files are decompressed as usual.
+public final class BGZFOpener extends DefaultObjectPipe<String, ObjectReceiver<Reader>> {
+
+    private static final FileCompression COMPRESSION = FileCompression.AUTO;
+
+    private final ExecutorService mExecutor;
+    private final int mWorkers;
+
+    // The executor is shared by all files (cf. ParallelBGZFInputStream.newExecutor).
+    public BGZFOpener(final ExecutorService aExecutor, final int aWorkers) {
+        mExecutor = aExecutor;
+        mWorkers = aWorkers;
+    }
+
+    @Override
+    public void process(final String aFileName) {
+        try (
+            InputStream stream = open(aFileName);
+            Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)
+        ) {
+            getReceiver().process(reader);
+        }
+        catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private InputStream open(final String aFileName) throws IOException {
+        final InputStream stream = new BufferedInputStream(new FileInputStream(aFileName));
+
+        try {
+            return ParallelBGZFInputStream.isBGZF(stream) ?
+                new ParallelBGZFInputStream(stream, mExecutor, mWorkers) :
+                COMPRESSION.createDecompressor(stream, true);
+        }
+        catch (final IOException | RuntimeException e) { // checkstyle-disable-line IllegalCatch
+            stream.close();
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache in front of a (slow) read-only map. Absent keys are
+ * cached as well. The cache is split into independently locked segments so
+ * that concurrent lookups rarely contend.
+ */
+public final class CachedMap extends AbstractReadOnlyMap<String, String> implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int PERCENT = 100;
+
+    // Compared by identity: marks keys known to be absent from the underlying map.
+    private static final String ABSENT = new String();
+
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+    private final Map<String, String> mMap;
+    private final Segment[] mSegments;
+    private final String mName;
+    private final int mMask;
+
+    public CachedMap(final String aName, final Map<String, String> aMap, final int aSize) {
+        this(aName, aMap, aSize, Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(aSize, 1))));
+    }
+
+    /*package-private*/ CachedMap(final String aName, final Map<String, String> aMap, final int aSize, final int aSegments) {
+        mName = aName;
+        mMap = aMap;
+
+        final int segments = Integer.highestOneBit(Math.max(aSegments, 1));
+        final int segmentSize = Math.max(aSize / segments, 1);
+
+        mSegments = new Segment[segments];
+        mMask = segments - 1;
+
+        for (int i = 0; i < segments; ++i) {
+            mSegments[i] = new Segment(segmentSize);
+        }
+    }
+
+    public long getHits() {
+        return mHits.sum();
+    }
+
+    public long getMisses() {
+        return mMisses.sum();
+    }
+
+    @Override
+    public String get(final Object aKey) {
+        return getOrDefault(aKey, null);
+    }
+
+    @Override
+    public String getOrDefault(final Object aKey, final String aDefault) {
+        if (aKey == null) {
+            return aDefault;
+        }
+
+        final String key = aKey.toString();
+        final Segment segment = mSegments[spread(key.hashCode()) & mMask];
+
+        String value;
+
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+
+        if (value != null) {
+            mHits.increment();
+        }
+        else {
+            mMisses.increment();
+
+            final String result = mMap.get(key);
+            value = result != null ? result : ABSENT;
+
+            synchronized (segment) {
+                segment.put(key, value);
+            }
+        }
+
+        return value != ABSENT ? value : aDefault;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+
+        LOGGER.info("Cache {}: hits={}, misses={}, hit rate={}%", mName, hits, total - hits,
+                total > 0 ? hits * PERCENT / total : 0);
+
+        if (mMap instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static int spread(final int aHash) {
+        return aHash ^ (aHash >>> Short.SIZE);
+    }
+
+    private static final class Segment extends LinkedHashMap<String, String> {
+
+        private static final float LOAD_FACTOR = 0.75f;
+
+        private final int mCapacity;
+
+        private Segment(final int aCapacity) {
+            super(aCapacity, LOAD_FACTOR, true);
+            mCapacity = aCapacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> aEldest) {
+            return size() > mCapacity;
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records the progress of a run through its input files: the files that have
+ * been completed and the number of records passed on from the current file,
+ * along with the index they went into (cf. {@link #setIndexName(String)}).
+ *
+ * Progress is only recorded once the outputs have acknowledged everything up
+ * to that point (see {@link #setSync(BooleanSupplier)}). The state is bound
+ * to a fingerprint of the settings and transformation rules; it is discarded
+ * when they change and removed once the run has finished successfully.
+ *
+ * File format (one entry per line, tab-separated): {@code fingerprint HASH},
+ * {@code index NAME}, {@code completed FILE}, {@code current FILE RECORDS}.
+ */
+public final class Checkpoint {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String SEPARATOR = "\t";
+    private static final String SETTINGS_SEPARATOR = ".";
+
+    private static final String COMPLETED_KEY = "completed";
+    private static final String CURRENT_KEY = "current";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String INDEX_KEY = "index";
+
+    private static final int DEFAULT_INTERVAL = 100000;
+
+    private final Path mPath;
+    private final Set<String> mCompleted = new LinkedHashSet<>();
+    private final String mFingerprint;
+    private final int mInterval;
+
+    private BooleanSupplier mSync = () -> true;
+    private String mCurrentFile;
+    private String mIndexName;
+    private boolean mResuming;
+    private long mCurrentRecords;
+
+    public Checkpoint(final Settings aSettings, final String aDefaultPath, final String aFingerprint) {
+        mPath = Paths.get(aSettings.get("path", aDefaultPath));
+        mInterval = aSettings.getAsInt("interval", DEFAULT_INTERVAL);
+        mFingerprint = aFingerprint;
+
+        try {
+            if (aSettings.getAsBoolean("resume", false) && Files.exists(mPath)) {
+                load();
+            }
+            else if (Files.deleteIfExists(mPath)) {
+                LOGGER.info("Removed checkpoint: {}", mPath);
+            }
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Computes a fingerprint for the given settings (except for the
+     * checkpoint settings themselves) and the files in the transformation
+     * rules' directory (which includes, e.g., Metafix includes).
+     *
+     * @param aSettings the settings
+     * @param aKey the checkpoint settings' key
+     * @param aRulesPath the transformation rules path (may be {@code null})
+     * @return the fingerprint
+     * @throws IOException if the settings or rules could not be read
+     */
+    public static String fingerprint(final Settings aSettings, final String aKey, final String aRulesPath) throws IOException {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new LimetransException(e);
+        }
+
+        final String ignoredPrefix = aKey + SETTINGS_SEPARATOR;
+
+        new TreeMap<>(aSettings.getAsFlatMap(SETTINGS_SEPARATOR)).forEach((k, v) -> {
+            if (!k.startsWith(ignoredPrefix)) {
+                digest.update((k + "=" + v + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        final Path rulesPath = aRulesPath != null ? Paths.get(aRulesPath) : null;
+
+        if (rulesPath != null && Files.isRegularFile(rulesPath)) {
+            final List<Path> files;
+
+            try (Stream<Path> stream = Files.walk(rulesPath.toAbsolutePath().getParent())) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+
+            for (final Path file : files) {
+                digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(file));
+            }
+        }
+        else if (aRulesPath != null) {
+            digest.update(aRulesPath.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Sets the function that waits until the outputs have acknowledged all
+     * records passed on so far.
+     *
+     * @param aSync the function; returns whether the outputs succeeded
+     */
+    public void setSync(final BooleanSupplier aSync) {
+        mSync = aSync;
+    }
+
+    public int getInterval() {
+        return mInterval;
+    }
+
+    public boolean isResuming() {
+        return mResuming;
+    }
+
+    /**
+     * Sets the concrete name of the index the run ingests into, so that a
+     * resumed run can continue in the same index (instead of, e.g., the one
+     * for the current time window).
+     *
+     * @param aIndexName the index name
+     */
+    public void setIndexName(final String aIndexName) {
+        mIndexName = aIndexName;
+    }
+
+    /**
+     * Returns the index name recorded by the previous run.
+     *
+     * @return the index name, or {@code null} if none has been recorded
+     */
+    public String getIndexName() {
+        return mIndexName;
+    }
+
+    public boolean isCompleted(final String aFile) {
+        return mCompleted.contains(aFile);
+    }
+
+    /**
+     * Returns the number of records to skip in the given file.
+     *
+     * @param aFile the input file
+     * @return the number of records already processed
+     */
+    public long getOffset(final String aFile) {
+        return aFile.equals(mCurrentFile) ? mCurrentRecords : 0;
+    }
+
+    public void update(final String aFile, final long aRecords) {
+        if (mSync.getAsBoolean()) {
+            mCurrentFile = aFile;
+            mCurrentRecords = aRecords;
+            save();
+        }
+    }
+
+    public void complete(final String aFile) {
+        if (mSync.getAsBoolean()) {
+            mCompleted.add(aFile);
+            mCurrentFile = null;
+            mCurrentRecords = 0;
+            save();
+        }
+    }
+
+    /**
+     * Finishes the run.
+     *
+     * @param aSuccess whether the run succeeded; only then is the checkpoint
+     *                 removed, otherwise the next run may resume from it
+     */
+    public void finish(final boolean aSuccess) {
+        try {
+            if (aSuccess) {
+                Files.deleteIfExists(mPath);
+            }
+            else if (Files.exists(mPath)) {
+                LOGGER.warn("Keeping checkpoint: {} [completed={}, current={}, records={}]",
+                        mPath, mCompleted.size(), mCurrentFile, mCurrentRecords);
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.error("Failed to remove checkpoint: " + mPath, e);
+        }
+    }
+
+    private void load() throws IOException {
+        final List<String> lines = Files.readAllLines(mPath, StandardCharsets.UTF_8);
+
+        if (lines.isEmpty() || !lines.get(0).equals(FINGERPRINT_KEY + SEPARATOR + mFingerprint)) {
+            LOGGER.warn("Discarding checkpoint, settings or rules have changed: {}", mPath);
+            Files.delete(mPath);
+            return;
+        }
+
+        lines.stream().skip(1).map(l -> l.split(SEPARATOR)).forEach(parts -> {
+            switch (parts[0]) {
+                case INDEX_KEY:
+                    mIndexName = parts[1];
+                    break;
+                case COMPLETED_KEY:
+                    mCompleted.add(parts[1]);
+                    break;
+                case CURRENT_KEY:
+                    mCurrentFile = parts[1];
+                    mCurrentRecords = Long.parseLong(parts[2]);
+                    break;
+                default:
+                    throw new LimetransException("Invalid checkpoint entry: " + String.join(SEPARATOR, parts));
+            }
+        });
+
+        mResuming = true;
+
+        LOGGER.info("Resuming from checkpoint: {} [index={}, completed={}, current={}, records={}]",
+                mPath, mIndexName, mCompleted.size(), mCurrentFile, mCurrentRecords);
+    }
+
+    // Written to a temporary file first, so that an interrupted write leaves the previous state intact.
+    private void save() {
+        final List<String> lines = new ArrayList<>();
+
+        lines.add(FINGERPRINT_KEY + SEPARATOR + mFingerprint);
+
+        if (mIndexName != null) {
+            lines.add(INDEX_KEY + SEPARATOR + mIndexName);
+        }
+
+        mCompleted.forEach(f -> lines.add(COMPLETED_KEY + SEPARATOR + f));
+
+        if (mCurrentFile != null) {
+            lines.add(CURRENT_KEY + SEPARATOR + mCurrentFile + SEPARATOR + mCurrentRecords);
+        }
+
+        try {
+            final Path parent = mPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+
+            final Path tempFile = Files.createTempFile(parent, mPath.getFileName().toString(), ".tmp");
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, mPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e) {
+            LOGGER.error("Failed to write checkpoint: " + mPath, e);
+        }
+
+        LOGGER.debug("Checkpoint: {} [completed={}, current={}, records={}]",
+                mPath, mCompleted.size(), mCurrentFile, mCurrentRecords);
+    }
+
+}
@@ -0,0 +1,94 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+
+/**
+ * Counts the records passed on from each input file: skips those that have
+ * already been processed according to the {@link Checkpoint} and records
+ * progress every {@link Checkpoint#getInterval() interval} records.
+ */
+public final class CheckpointStreamPipe extends DefaultStreamPipe<StreamReceiver> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final Checkpoint mCheckpoint;
+    private final int mInterval;
+
+    private String mFile;
+    private boolean mSkip;
+    private long mOffset;
+    private long mRecords;
+
+    public CheckpointStreamPipe(final Checkpoint aCheckpoint) {
+        mCheckpoint = aCheckpoint;
+        mInterval = aCheckpoint.getInterval();
+    }
+
+    public void startFile(final String aFile) {
+        mFile = aFile;
+        mOffset = mCheckpoint.getOffset(aFile);
+        mRecords = 0;
+
+        if (mOffset > 0) {
+            LOGGER.info("Skipping {} records processed before: {}", mOffset, aFile);
+        }
+    }
+
+    public void endFile(final boolean aCompleted) {
+        if (aCompleted) {
+            mCheckpoint.complete(mFile);
+        }
+
+        mFile = null;
+        mOffset = 0;
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mSkip = mRecords < mOffset;
+
+        if (!mSkip) {
+            getReceiver().startRecord(aIdentifier);
+        }
+    }
+
+    @Override
+    public void endRecord() {
+        ++mRecords;
+
+        if (!mSkip) {
+            getReceiver().endRecord();
+
+            if (mFile != null && mRecords % mInterval == 0) {
+                mCheckpoint.update(mFile, mRecords);
+            }
+        }
+
+        mSkip = false;
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        if (!mSkip) {
+            getReceiver().startEntity(aName);
+        }
+    }
+
+    @Override
+    public void endEntity() {
+        if (!mSkip) {
+            getReceiver().endEntity();
+        }
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        if (!mSkip) {
+            getReceiver().literal(aName, aValue);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.StreamReceiver;
+
+import java.util.Arrays;
+
+/**
+ * Holds the entity and literal events of a record until it is known whether
+ * they have to be passed on. Reused across records, so that buffering doesn't
+ * allocate per event.
+ */
+public final class EventBuffer {
+
+    private static final byte START_ENTITY = 0;
+    private static final byte END_ENTITY = 1;
+    private static final byte LITERAL = 2;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] mTypes = new byte[INITIAL_CAPACITY];
+    private String[] mNames = new String[INITIAL_CAPACITY];
+    private String[] mValues = new String[INITIAL_CAPACITY];
+    private int mSize;
+
+    public EventBuffer() {
+    }
+
+    public void startEntity(final String aName) {
+        add(START_ENTITY, aName, null);
+    }
+
+    public void endEntity() {
+        add(END_ENTITY, null, null);
+    }
+
+    public void literal(final String aName, final String aValue) {
+        add(LITERAL, aName, aValue);
+    }
+
+    public void replay(final StreamReceiver aReceiver) {
+        for (int i = 0; i < mSize; ++i) {
+            switch (mTypes[i]) {
+                case START_ENTITY:
+                    aReceiver.startEntity(mNames[i]);
+                    break;
+                case END_ENTITY:
+                    aReceiver.endEntity();
+                    break;
+                default:
+                    aReceiver.literal(mNames[i], mValues[i]);
+                    break;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mNames, 0, mSize, null);
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+
+    private void add(final byte aType, final String aName, final String aValue) {
+        if (mSize == mTypes.length) {
+            final int capacity = mSize * 2;
+
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mNames = Arrays.copyOf(mNames, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+
+        mTypes[mSize] = aType;
+        mNames[mSize] = aName;
+        mValues[mSize] = aValue;
+        ++mSize;
+    }
+
+}
@@ -0,0 +1,353 @@
+package hbz.limetrans.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Finds files by glob pattern, following symbolic links (cf. {@link FileQueue}).
+ *
+ * Each directory tree is walked only once, reading the attributes of all
+ * entries along the way; further lookups (e.g., for multiple patterns, or
+ * both passes of {@code %GROUP_MARKER%} patterns) are answered from that
+ * listing. With more than one worker, subdirectories are listed concurrently,
+ * which mainly helps on network file systems; the order of the entries is
+ * the same either way.
+ */
+/*package-private*/ final class FileFinder {
+
+    private static final FileSystem FILE_SYSTEM = FileSystems.getDefault();
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private final Map<Path, List<Entry>> mListings = new HashMap<>();
+    private final int mWorkers;
+
+    /*package-private*/ FileFinder(final int aWorkers) {
+        mWorkers = Math.max(aWorkers, 1);
+    }
+
+    /**
+     * Finds files according to the given settings ({@code path} or
+     * {@code base}/{@code basepattern}, {@code sort_by}, {@code order},
+     * {@code max}, {@code max-age}).
+     *
+     * @param aSettings the settings
+     * @param aPattern the glob pattern to match file names against
+     * @return the files
+     * @throws IOException if a directory could not be read
+     */
+    /*package-private*/ Stream<Path> find(final Settings aSettings, final String aPattern) throws IOException {
+        final Path path;
+
+        if (aSettings.containsSetting("base")) {
+            path = find(FILE_SYSTEM.getPath(aSettings.get("base")), aSettings.get("basepattern", "*"),
+                    BasicFileAttributes::isDirectory, "name", true, 1).stream().findFirst().map(Entry::path).orElse(null);
+        }
+        else {
+            path = FILE_SYSTEM.getPath(aSettings.get("path", "."));
+        }
+
+        if (path == null) {
+            return Stream.empty();
+        }
+
+        final int maxAge = aSettings.getAsInt("max-age", -1);
+        final long threshold = System.currentTimeMillis() - maxAge * DAY;
+
+        final List<Entry> entries = find(path, aPattern, BasicFileAttributes::isRegularFile,
+                aSettings.get("sort_by", "lastmodified"), "desc".equals(aSettings.get("order")),
+                aSettings.getAsInt("max", Integer.MAX_VALUE));
+
+        return entries.stream().map(e -> {
+            if (maxAge > -1 && threshold > e.attributes().lastModifiedTime().toMillis()) {
+                throw new RuntimeException("file too old: " + e.path() + " (" + maxAge + ")");
+            }
+
+            return e.path();
+        });
+    }
+
+    /**
+     * Finds all files below the given path, in directory order.
+     *
+     * @param aPath the path
+     * @param aPattern the glob pattern to match file names against
+     * @return the files
+     * @throws IOException if a directory could not be read
+     */
+    /*package-private*/ Stream<Path> find(final Path aPath, final String aPattern) throws IOException {
+        return find(aPath, aPattern, BasicFileAttributes::isRegularFile, null, false, Integer.MAX_VALUE).stream().map(Entry::path);
+    }
+
+    // Applies `max` while selecting the matching entries, so only that many of them have to be kept and sorted.
+    private List<Entry> find(final Path aPath, final String aPattern, final Predicate<BasicFileAttributes> aPredicate,
+            final String aSort, final boolean aReversed, final int aMax) throws IOException {
+        final PathMatcher m = FILE_SYSTEM.getPathMatcher("glob:" + aPattern);
+
+        final Stream<Entry> stream = list(aPath).stream().filter(e -> aPredicate.test(e.attributes()) &&
+                e.path().getFileName() != null && m.matches(e.path().getFileName()));
+
+        if (aSort == null) {
+            return stream.limit(aMax).toList();
+        }
+
+        final Comparator<Entry> comparator = getComparator(aSort, aReversed);
+        final PriorityQueue<Entry> queue = new PriorityQueue<>(comparator.reversed());
+
+        stream.forEachOrdered(e -> {
+            queue.add(e);
+
+            if (queue.size() > aMax) {
+                queue.poll();
+            }
+        });
+
+        final List<Entry> entries = new ArrayList<>(queue);
+        entries.sort(comparator);
+
+        return entries;
+    }
+
+    /**
+     * Translates a glob pattern, as used for matching file names, into a
+     * regular expression.
+     *
+     * @param aGlob the glob pattern
+     * @return the regular expression
+     */
+    /*package-private*/ static String toRegex(final String aGlob) { // checkstyle-disable-line CyclomaticComplexity
+        final StringBuilder sb = new StringBuilder();
+        boolean inGroup = false;
+        int i = 0;
+
+        while (i < aGlob.length()) {
+            final char c = aGlob.charAt(i);
+            int next = i + 1;
+
+            switch (c) {
+                case '\\' -> next = appendEscaped(sb, aGlob, next);
+                case '*' -> sb.append(".*");
+                case '?' -> sb.append('.');
+                case '[' -> next = appendBracket(sb, aGlob, next);
+                case '{' -> {
+                    sb.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    sb.append(inGroup ? ")" : "\\}");
+                    inGroup = false;
+                }
+                case ',' -> sb.append(inGroup ? '|' : ',');
+                default -> appendLiteral(sb, c);
+            }
+
+            i = next;
+        }
+
+        return sb.toString();
+    }
+
+    private static int appendEscaped(final StringBuilder aBuilder, final String aGlob, final int aIndex) {
+        if (aIndex < aGlob.length()) {
+            appendLiteral(aBuilder, aGlob.charAt(aIndex));
+            return aIndex + 1;
+        }
+        else {
+            appendLiteral(aBuilder, '\\');
+            return aIndex;
+        }
+    }
+
+    // Bracket expressions ("[a-z]", "[!0-9]") map to character classes; an unterminated one is taken literally.
+    private static int appendBracket(final StringBuilder aBuilder, final String aGlob, final int aIndex) {
+        final int end = aGlob.indexOf(']', aIndex + 1);
+
+        if (end == -1) {
+            appendLiteral(aBuilder, '[');
+            return aIndex;
+        }
+
+        aBuilder.append('[');
+
+        for (int i = aIndex; i < end; ++i) {
+            final char c = aGlob.charAt(i);
+
+            if (i == aIndex && c == '!') {
+                aBuilder.append('^');
+            }
+            else {
+                aBuilder.append(c == '\\' || c == '[' || c == '&' || c == '^' ? "\\" + c : String.valueOf(c));
+            }
+        }
+
+        aBuilder.append(']');
+        return end + 1;
+    }
+
+    private static void appendLiteral(final StringBuilder aBuilder, final char aChar) {
+        if (Character.isLetterOrDigit(aChar)) {
+            aBuilder.append(aChar);
+        }
+        else {
+            aBuilder.append('\\').append(aChar);
+        }
+    }
+
+    // Ties keep directory order (like a stable sort would).
+    private Comparator<Entry> getComparator(final String aSort, final boolean aReversed) {
+        final Comparator<Entry> comparator;
+
+        switch (aSort) {
+            case "lastmodified":
+                comparator = Comparator.comparing(e -> e.attributes().lastModifiedTime());
+                break;
+            case "name":
+                comparator = Comparator.comparing(e -> e.path().toString());
+                break;
+            default:
+                throw new RuntimeException("invalid sort parameter: " + aSort);
+        }
+
+        return (aReversed ? comparator.reversed() : comparator).thenComparingInt(Entry::index);
+    }
+
+    private List<Entry> list(final Path aPath) throws IOException {
+        List<Entry> entries = mListings.get(aPath);
+
+        if (entries == null) {
+            entries = walk(aPath);
+            mListings.put(aPath, entries);
+        }
+
+        return entries;
+    }
+
+    private List<Entry> walk(final Path aPath) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(aPath, BasicFileAttributes.class);
+        final List<Entry> entries = new ArrayList<>();
+
+        entries.add(new Entry(aPath, attributes, 0));
+
+        if (attributes.isDirectory()) {
+            final ForkJoinPool pool = new ForkJoinPool(mWorkers);
+
+            try {
+                pool.invoke(new Walker(aPath, List.of(getKey(aPath, attributes)))).forEach(e ->
+                        entries.add(new Entry(e.path(), e.attributes(), entries.size())));
+            }
+            catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+
+        return entries;
+    }
+
+    private static Object getKey(final Path aPath, final BasicFileAttributes aAttributes) {
+        final Object key = aAttributes.fileKey();
+        return key != null ? key : aPath.toAbsolutePath().normalize();
+    }
+
+    private record Entry(Path path, BasicFileAttributes attributes, int index) {
+    }
+
+    // Lists a directory, then its subdirectories (concurrently); entries are returned in depth-first order.
+    private static final class Walker extends RecursiveTask<List<Entry>> {
+
+        private final List<Object> mAncestors;
+        private final Path mPath;
+
+        private Walker(final Path aPath, final List<Object> aAncestors) {
+            mPath = aPath;
+            mAncestors = aAncestors;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            final List<Object> children = new ArrayList<>();
+            final List<Walker> walkers = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(mPath)) {
+                for (final Path path : stream) {
+                    final BasicFileAttributes attributes = readAttributes(path);
+                    children.add(new Entry(path, attributes, -1));
+
+                    if (attributes.isDirectory()) {
+                        final Walker walker = new Walker(path, getAncestors(path, attributes));
+                        children.add(walker);
+                        walkers.add(walker);
+                    }
+                }
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            ForkJoinTask.invokeAll(walkers);
+
+            final List<Entry> entries = new ArrayList<>();
+
+            for (final Object child : children) {
+                if (child instanceof final Walker walker) {
+                    entries.addAll(walker.join());
+                }
+                else {
+                    entries.add((Entry) child);
+                }
+            }
+
+            return entries;
+        }
+
+        // Broken symbolic links are listed as such (cf. Files.walk).
+        private BasicFileAttributes readAttributes(final Path aPath) throws IOException {
+            try {
+                return Files.readAttributes(aPath, BasicFileAttributes.class);
+            }
+            catch (final IOException e) {
+                return Files.readAttributes(aPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+        }
+
+        private List<Object> getAncestors(final Path aPath, final BasicFileAttributes aAttributes) throws FileSystemLoopException {
+            final Object key = getKey(aPath, aAttributes);
+
+            for (final Object ancestor : mAncestors) {
+                if (Objects.equals(ancestor, key)) {
+                    throw new FileSystemLoopException(aPath.toString());
+                }
+            }
+
+            final List<Object> ancestors = new ArrayList<>(mAncestors);
+            ancestors.add(key);
+
+            return ancestors;
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Converts a delimited key-value file (as loaded by Metafix's
+ * {@code put_filemap}) into an LMDB index on first load; later runs open the
+ * index directly instead of parsing the file again.
+ *
+ * Indexes are keyed by the file's path, the column settings and its content
+ * hash, so a changed file (or different settings) gets a fresh index; the
+ * index it supersedes is deleted once the new one has been built.
+ */
+public final class FileMapIndex {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String EXTENSION = ".lmdb";
+
+    private static final int HASH_LENGTH = 16;
+    private static final int MAX_KEY_SIZE = 511; // LMDB's default maximum key size (in bytes)
+
+    private final Pattern mSeparator;
+    private final String mSettings;
+    private final int mExpectedColumns;
+    private final int mKeyColumn;
+    private final int mValueColumn;
+
+    /**
+     * Creates a file map index loader.
+     *
+     * @param aSeparator the column separator
+     * @param aKeyColumn the key column (zero-based)
+     * @param aValueColumn the value column (zero-based)
+     * @param aExpectedColumns the number of columns a line must have (or {@code -1} for any)
+     */
+    public FileMapIndex(final String aSeparator, final int aKeyColumn, final int aValueColumn, final int aExpectedColumns) {
+        mSeparator = Pattern.compile(Pattern.quote(aSeparator));
+        mKeyColumn = aKeyColumn;
+        mValueColumn = aValueColumn;
+        mExpectedColumns = aExpectedColumns;
+
+        mSettings = String.join("\u0000", aSeparator,
+                String.valueOf(aKeyColumn), String.valueOf(aValueColumn), String.valueOf(aExpectedColumns));
+    }
+
+    /**
+     * Opens the index for the given file, building it first if necessary.
+     *
+     * @param aPath the key-value file, optionally compressed
+     * @param aIndexPath the index directory (defaults to the system's temporary directory)
+     * @return the index, or {@code null} if the file doesn't exist
+     * @throws IOException if the file could not be read or the index could not be written
+     */
+    public LMDB open(final String aPath, final String aIndexPath) throws IOException {
+        final File file = new File(aPath);
+
+        if (!file.exists()) {
+            LOGGER.warn("File map not found: {}", aPath);
+            return null;
+        }
+
+        final String prefix = file.getName() + "." + hash(file.getAbsolutePath(), mSettings) + ".";
+        final Path indexFile = Path.of(aIndexPath != null ? aIndexPath : System.getProperty("java.io.tmpdir"),
+                prefix + hash(file) + EXTENSION);
+
+        // Each Metafix instance (e.g., per parallel worker) loads the map, but only the first one builds the index.
+        final boolean built = LMDB.buildIfAbsent(indexFile, lmdb -> {
+            LOGGER.info("Building file map index: {}: {}", aPath, indexFile);
+
+            final AtomicInteger count = new AtomicInteger();
+
+            if (!Helpers.loadFile(aPath, true, "file map", l -> load(l, lmdb, count), count::get, LOGGER)) {
+                throw new IOException("Failed to load file map: " + aPath);
+            }
+        });
+
+        if (built) {
+            deleteSuperseded(indexFile, prefix);
+        }
+        else {
+            LOGGER.info("Opening file map index: {}", indexFile);
+        }
+
+        return new LMDB(indexFile.toString());
+    }
+
+    private void deleteSuperseded(final Path aIndexFile, final String aPrefix) {
+        final String name = aIndexFile.getFileName().toString();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(aIndexFile.toAbsolutePath().getParent(), p -> {
+            final String fileName = p.getFileName().toString();
+            return fileName.startsWith(aPrefix) && fileName.endsWith(EXTENSION) && !fileName.equals(name);
+        })) {
+            for (final Path path : stream) {
+                LOGGER.info("Deleting superseded file map index: {}", path);
+                Files.deleteIfExists(path);
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Failed to delete superseded file map indexes: " + aPrefix, e);
+        }
+    }
+
+    private void load(final String aLine, final LMDB aLmdb, final AtomicInteger aCount) {
+        if (aLine.isEmpty()) {
+            return;
+        }
+
+        final String[] parts = mSeparator.split(aLine, -1);
+
+        if ((mExpectedColumns < 0 || parts.length == mExpectedColumns) && parts.length > Math.max(mKeyColumn, mValueColumn)) {
+            final String key = parts[mKeyColumn];
+            final String value = parts[mValueColumn];
+
+            // Like Metafix's FileMap, skip entries without key or value; LMDB can't store oversized keys at all.
+            if (!key.isEmpty() && !value.isEmpty() && key.getBytes(StandardCharsets.UTF_8).length <= MAX_KEY_SIZE) {
+                aLmdb.putKV(key, value);
+                aCount.incrementAndGet();
+            }
+        }
+    }
+
+    // Hashes the raw (possibly compressed) bytes, which is much cheaper than parsing them.
+    private String hash(final File aFile) throws IOException {
+        final MessageDigest digest = newDigest();
+
+        try (InputStream stream = new DigestInputStream(Files.newInputStream(aFile.toPath()), digest)) {
+            stream.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest(), 0, HASH_LENGTH / 2);
+    }
+
+    private String hash(final String... aValues) {
+        return HexFormat.of().formatHex(newDigest().digest(String.join("\u0000", aValues).getBytes(StandardCharsets.UTF_8)), 0, HASH_LENGTH / 2);
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new LimetransException(e);
+        }
+    }
+
+}
@@ -5,6 +5,8 @@ import org.metafacture.biblio.marc21.MarcXmlHandler;
 import org.metafacture.formeta.FormetaDecoder;
 import org.metafacture.formeta.FormetaRecordsReader;
 import org.metafacture.framework.LifeCycle;
+import org.metafacture.framework.ObjectPipe;
+import org.metafacture.framework.ObjectReceiver;
 import org.metafacture.framework.Sender;
 import org.metafacture.framework.StreamReceiver;
 import org.metafacture.io.FileOpener;
@@ -18,19 +20,19 @@ import org.metafacture.xml.XmlDecoder;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
+import java.io.Reader;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.attribute.FileTime;
-import java.util.Comparator;
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -49,6 +51,15 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
                 .setReceiver(handler);
         }),
 
+        ALMAXML_STAX(aOpener -> {
+            final StaxMarcXmlDecoder decoder = new StaxMarcXmlDecoder();
+            decoder.setNamespace("");
+
+            return aOpener
+                .setReceiver(new TarReader())
+                .setReceiver(decoder);
+        }),
+
         FORMETA(aOpener -> aOpener
                 .setReceiver(new FormetaRecordsReader())
                 .setReceiver(new FormetaDecoder())),
@@ -78,6 +89,9 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
                 .setReceiver(new XmlDecoder())
                 .setReceiver(new MarcXmlHandler())),
 
+        MARCXML_STAX(aOpener -> aOpener
+                .setReceiver(new StaxMarcXmlDecoder())),
+
         SISIS(aOpener -> {
             final MultiLineDecoder decoder = SisisSupplement.getDecoder();
 
@@ -90,12 +104,23 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
                 .setReceiver(decoder);
         }),
 
-        SISIS_SUPER(aOpener -> SISIS.process(aOpener)
+        // Links records across all files; needs a single decoder chain.
+        SISIS_SUPER(false, aOpener -> SISIS.process(aOpener)
                 .setReceiver(new SisisSuperFilter()));
 
-        private final Function<FileOpener, Sender<StreamReceiver>> mFunction;
+        // Like SISIS_SUPER, but keeps the buffered records in a temporary file instead of on the heap.
+        SISIS_SUPER_SPILL(false, aOpener -> SISIS.process(aOpener)
+                .setReceiver(new SisisSuperFilter(true)));
+
+        private final Function<ObjectPipe<String, ObjectReceiver<Reader>>, Sender<StreamReceiver>> mFunction;
+        private final boolean mConcurrent;
+
+        Processor(final Function<ObjectPipe<String, ObjectReceiver<Reader>>, Sender<StreamReceiver>> aFunction) {
+            this(true, aFunction);
+        }
 
-        Processor(final Function<FileOpener, Sender<StreamReceiver>> aFunction) {
+        Processor(final boolean aConcurrent, final Function<ObjectPipe<String, ObjectReceiver<Reader>>, Sender<StreamReceiver>> aFunction) {
+            mConcurrent = aConcurrent;
             mFunction = aFunction;
         }
 
@@ -109,19 +134,27 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
             return decoder;
         }
 
-        public Sender<StreamReceiver> process(final FileOpener aOpener) {
+        public Sender<StreamReceiver> process(final ObjectPipe<String, ObjectReceiver<Reader>> aOpener) {
             return mFunction.apply(aOpener);
         }
 
+        public boolean isConcurrent() {
+            return mConcurrent;
+        }
+
     }
 
     private static final String GROUP_MARKER = "%GROUP_MARKER%";
 
-    private static final FileSystem FILE_SYSTEM = FileSystems.getDefault();
-
+    private final FileFinder mFinder;
     private final Processor mProcessor;
     private final Queue<String> mQueue = new LinkedList<>();
     private final boolean mNormalizeUnicode;
+    private final int mInflateWorkers;
+    private final int mWorkers;
+
+    private Checkpoint mCheckpoint;
+    private ExecutorService mInflateExecutor;
 
     public FileQueue(final Settings aSettings) throws IOException {
         super(aSettings);
@@ -129,17 +162,26 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
         if (aSettings != null) {
             mProcessor = Processor.valueOf(aSettings.get("processor", "MARCXML"));
             mNormalizeUnicode = aSettings.getAsBoolean("normalize-unicode", true);
+            mInflateWorkers = aSettings.getAsInt("inflate-workers", 1);
+            mWorkers = aSettings.getAsInt("workers", 1);
+            mFinder = new FileFinder(aSettings.getAsInt("find-workers", 1));
             add(aSettings);
         }
         else {
             mProcessor = null;
             mNormalizeUnicode = false;
+            mInflateWorkers = 1;
+            mWorkers = 1;
+            mFinder = null;
         }
     }
 
     public FileQueue(final String aProcessor, final boolean aNormalizeUnicode, final String... aFileNames) throws IOException {
         mProcessor = Processor.valueOf(aProcessor);
         mNormalizeUnicode = aNormalizeUnicode;
+        mInflateWorkers = 1;
+        mWorkers = 1;
+        mFinder = new FileFinder(1);
 
         for (final String fileName : aFileNames) {
             final File file = new File(fileName);
@@ -171,41 +213,191 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
         return mQueue.size();
     }
 
+    @Override
+    protected String getStageName() {
+        return "input." + mProcessor;
+    }
+
+    /**
+     * Sets the checkpoint for skipping input files (and records) that have
+     * been processed before and for recording progress.
+     *
+     * @param aCheckpoint the checkpoint
+     */
+    public void setCheckpoint(final Checkpoint aCheckpoint) {
+        mCheckpoint = aCheckpoint;
+    }
+
     @Override
     public <T extends StreamReceiver & Sender<StreamReceiver>> LifeCycle process(final StreamReceiver aReceiver, final T aSender) {
-        final FileOpener opener = new FileOpener();
-        opener.setDecompressConcatenated(true);
+        final CheckpointStreamPipe checkpointPipe = newCheckpointPipe(aReceiver);
+        final StreamReceiver receiver = checkpointPipe != null ? checkpointPipe : aReceiver;
+        final PushdownFilter pushdownFilter = aSender instanceof final PushdownFilter filter ? filter : null;
+
+        try {
+            if (mWorkers > 1 && mProcessor != null && mProcessor.isConcurrent()) {
+                return processConcurrently(receiver, aSender, pushdownFilter, checkpointPipe);
+            }
+
+            final ObjectPipe<String, ObjectReceiver<Reader>> opener = newOpener(receiver, aSender, pushdownFilter);
+            forEachFile((m, f) -> withCheckpoint(checkpointPipe, f, () -> process(m, opener, f)));
+
+            getLogger().info("Finished processing {} files", mProcessor);
+
+            return opener;
+        }
+        finally {
+            // One inflation pool for all files of the queue (cf. newOpener).
+            if (mInflateExecutor != null) {
+                mInflateExecutor.shutdownNow();
+                mInflateExecutor = null;
+            }
+        }
+    }
+
+    private <T extends StreamReceiver & Sender<StreamReceiver>> LifeCycle processConcurrently(final StreamReceiver aReceiver, final T aSender,
+            final PushdownFilter aPushdownFilter, final CheckpointStreamPipe aCheckpointPipe) {
+        final StreamReceiver receiver = getReceiver(aReceiver, aSender, false);
+
+        final List<RecordQueue> recordQueues = new ArrayList<>();
+        final List<String> fileNames = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(mWorkers);
+
+        try {
+            // Files are decoded in queue order, so the head file's task is always running.
+            forEachFile((m, f) -> {
+                final RecordQueue recordQueue = new RecordQueue();
+                recordQueues.add(recordQueue);
+                fileNames.add(f);
+
+                // Rejected records are queued empty; the filter is applied on replay.
+                final ObjectPipe<String, ObjectReceiver<Reader>> opener = newOpener(recordQueue, null, aPushdownFilter);
+
+                executor.execute(() -> {
+                    try {
+                        process(m, () -> {
+                            opener.process(f);
+                            opener.closeStream();
+                        });
+                    }
+                    finally {
+                        recordQueue.finish();
+                    }
+                });
+            });
+
+            for (int i = 0; i < recordQueues.size(); ++i) {
+                final RecordQueue recordQueue = recordQueues.get(i);
+
+                withCheckpoint(aCheckpointPipe, fileNames.get(i), () -> execute(() -> recordQueue.replay(receiver)));
+                recordQueue.discard();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        getLogger().info("Finished processing {} files [workers={}]", mProcessor, mWorkers);
+
+        return receiver;
+    }
+
+    private CheckpointStreamPipe newCheckpointPipe(final StreamReceiver aReceiver) {
+        if (mCheckpoint == null) {
+            return null;
+        }
+
+        if (mProcessor == null || !mProcessor.isConcurrent()) {
+            // Records aren't attributable to individual files.
+            getLogger().warn("Checkpoints not supported for {} files", mProcessor);
+            return null;
+        }
+
+        final CheckpointStreamPipe checkpointPipe = new CheckpointStreamPipe(mCheckpoint);
+        checkpointPipe.setReceiver(aReceiver);
+
+        return checkpointPipe;
+    }
+
+    private void withCheckpoint(final CheckpointStreamPipe aCheckpointPipe, final String aFileName, final Runnable aRunnable) {
+        if (aCheckpointPipe == null) {
+            aRunnable.run();
+            return;
+        }
+
+        aCheckpointPipe.startFile(aFileName);
+        aRunnable.run();
+        aCheckpointPipe.endFile(!isFailed());
+    }
+
+    private <T extends StreamReceiver & Sender<StreamReceiver>> ObjectPipe<String, ObjectReceiver<Reader>> newOpener(final StreamReceiver aReceiver, final T aSender,
+            final PushdownFilter aPushdownFilter) {
+        final ObjectPipe<String, ObjectReceiver<Reader>> opener;
+
+        if (mInflateWorkers > 1) {
+            if (mInflateExecutor == null) {
+                mInflateExecutor = ParallelBGZFInputStream.newExecutor(mInflateWorkers);
+            }
+
+            opener = new BGZFOpener(mInflateExecutor, mInflateWorkers);
+        }
+        else {
+            final FileOpener fileOpener = new FileOpener();
+            fileOpener.setDecompressConcatenated(true);
+
+            opener = fileOpener;
+        }
 
         if (mProcessor != null) {
             Sender<StreamReceiver> result = mProcessor.process(opener);
 
+            final PushdownStreamPipe pushdownPipe = newPushdownPipe(aPushdownFilter);
+            if (pushdownPipe != null) {
+                if (result instanceof final PushdownStreamPipe.Aware decoder) {
+                    decoder.setPushdownPipe(pushdownPipe);
+                }
+
+                result = result.setReceiver(pushdownPipe);
+            }
+
             if (mNormalizeUnicode) {
                 result = result.setReceiver(new StreamUnicodeNormalizer());
             }
 
-            if (aSender != null) {
-                result = result.setReceiver(aSender);
-            }
+            result.setReceiver(getReceiver(aReceiver, aSender, true));
+        }
+
+        return opener;
+    }
 
-            result.setReceiver(aReceiver);
+    private PushdownStreamPipe newPushdownPipe(final PushdownFilter aFilter) {
+        // Records of non-concurrent processors are linked to each other (cf. SISIS_SUPER), so none may be skipped.
+        if (aFilter == null || !mProcessor.isConcurrent()) {
+            return null;
         }
 
+        // Values are scanned as the filter will receive them (cf. StreamUnicodeNormalizer).
+        return new PushdownStreamPipe(aFilter.newScanner(), mNormalizeUnicode ?
+                v -> Normalizer.normalize(v, Normalizer.Form.NFC) : null);
+    }
+
+    private void forEachFile(final BiConsumer<String, String> aConsumer) {
         for (final String fileName : this) {
             final File file = new File(fileName);
             final String msg = String.format("%s file: %s [mtime=%s, size=%s]", mProcessor, fileName,
                     FileTime.fromMillis(file.lastModified()), Helpers.byteCountToDisplaySize(file.length()));
 
-            if (file.length() > 0) {
-                process(msg, opener, fileName);
+            if (mCheckpoint != null && mCheckpoint.isCompleted(fileName)) {
+                getLogger().info("Skipping completed " + msg);
+            }
+            else if (file.length() > 0) {
+                aConsumer.accept(msg, fileName);
+                addBytes(file.length());
             }
             else {
                 getLogger().warn("Skipping empty " + msg);
             }
         }
-
-        getLogger().info("Finished processing {} files", mProcessor);
-
-        return opener;
     }
 
     private void add(final Settings aSettings) throws IOException {
@@ -233,14 +425,9 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
                 final String groupPattern = prefix + "*" + suffix;
                 getLogger().debug("Finding groups: {}", groupPattern);
 
-                final Path file = find(aSettings, groupPattern).reduce(null, (a, b) -> b);
+                final Path file = mFinder.find(aSettings, groupPattern).reduce(null, (a, b) -> b);
                 if (file != null) {
-                    // FIXME: Support bracket and brace expressions (`[A-Z]*.{java,class}`)
-                    final Pattern p = Pattern.compile(aPattern
-                            .replaceAll("[.+()]", "\\\\$0")
-                            .replace("*", ".*")
-                            .replace("?", ".")
-                            .replace(GROUP_MARKER, "(.*)"));
+                    final Pattern p = Pattern.compile(FileFinder.toRegex(prefix) + "(.*)" + FileFinder.toRegex(suffix));
 
                     final String name = file.getFileName().toString();
                     getLogger().debug("Extracting group: {}: {}", p, name);
@@ -271,70 +458,18 @@ public class FileQueue extends AbstractInputQueue implements Iterable<String> {
 
         getLogger().debug("Finding pattern: {}", pattern);
 
-        find(aSettings, pattern).forEachOrdered(p -> {
+        mFinder.find(aSettings, pattern).forEachOrdered(p -> {
             getLogger().debug("Adding file: {}", p);
             mQueue.add(p.toString());
         });
     }
 
     public static Stream<Path> find(final Settings aSettings, final String aPattern) throws IOException {
-        final Path path;
-
-        if (aSettings.containsSetting("base")) {
-            path = findFiles(FILE_SYSTEM.getPath(aSettings.get("base")),
-                    aSettings.get("basepattern", "*"), File::isDirectory, "name", true).iterator().next();
-        }
-        else {
-            path = FILE_SYSTEM.getPath(aSettings.get("path", "."));
-        }
-
-        if (path == null) {
-            return Stream.empty();
-        }
-
-        final int maxAge = aSettings.getAsInt("max-age", -1);
-        final long threshold = System.currentTimeMillis() - maxAge * 24 * 60 * 60 * 1000;
-
-        return findFiles(path, aPattern, File::isFile,
-                aSettings.get("sort_by", "lastmodified"), "desc".equals(aSettings.get("order")))
-            .limit(aSettings.getAsInt("max", Integer.MAX_VALUE))
-            .peek(p -> {
-                if (maxAge > -1 && threshold > p.toFile().lastModified()) {
-                    throw new RuntimeException("file too old: " + p + " (" + maxAge + ")");
-                }
-            });
-    }
-
-    private static Stream<Path> findFiles(final Path aPath, final String aPattern,
-            final Predicate<File> aPredicate, final String aSort, final boolean aReversed) throws IOException {
-        final PathMatcher m = FILE_SYSTEM.getPathMatcher("glob:" + aPattern);
-
-        final Stream<Path> stream = Files.find(aPath, Integer.MAX_VALUE,
-            (p, a) -> aPredicate.test(p.toFile()) && m.matches(p.getFileName()), FileVisitOption.FOLLOW_LINKS);
-
-        if (aSort != null) {
-            final Comparator<Path> comparator;
-
-            switch (aSort) {
-                case "lastmodified":
-                    comparator = Comparator.comparing(p -> p.toFile().lastModified());
-                    break;
-                case "name":
-                    comparator = Comparator.comparing(Path::toString);
-                    break;
-                default:
-                    throw new RuntimeException("invalid sort parameter: " + aSort);
-            }
-
-            return stream.sorted(aReversed ? comparator.reversed() : comparator);
-        }
-        else {
-            return stream;
-        }
+        return new FileFinder(1).find(aSettings, aPattern);
     }
 
     public static Stream<Path> findFiles(final Path aPath, final String aPattern) throws IOException {
-        return findFiles(aPath, aPattern, File::isFile, null, false);
+        return new FileFinder(1).find(aPath, aPattern);
     }
 
 }
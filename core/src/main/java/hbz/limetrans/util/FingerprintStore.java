@@ -0,0 +1,155 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Persistent record ID to content hash store (LMDB) for skipping unchanged
+ * documents in incremental runs.
+ *
+ * A changed document's fingerprint is only recorded once the destination has
+ * acknowledged it (cf. {@link #acknowledge(String)}), so documents that
+ * failed or never got sent are sent again next time. Acknowledgements may
+ * arrive on any thread; they are written to the store by the thread calling
+ * {@link #update(String, byte[], int, int)}, {@link #remove(String)} or
+ * {@link #close()}. Since only acknowledged fingerprints are recorded, the
+ * store is kept even if some bulk requests failed.
+ */
+public final class FingerprintStore implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String ALGORITHM = "SHA-256";
+
+    private final Base64.Encoder mEncoder = Base64.getEncoder().withoutPadding();
+    private final Map<String, String> mPending = new ConcurrentHashMap<>();
+    private final Queue<Entry> mAcknowledged = new ConcurrentLinkedQueue<>();
+    private final LMDB mLmdb;
+    private final MessageDigest mDigest;
+    private final String mPath;
+
+    private long mChanged;
+    private long mRemoved;
+    private long mUnchanged;
+
+    public FingerprintStore(final String aPath, final boolean aReset) {
+        mPath = aPath;
+
+        try {
+            if (aReset && Files.deleteIfExists(Paths.get(aPath))) {
+                LOGGER.info("Reset fingerprint store: {}", aPath);
+            }
+
+            mDigest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new LimetransException(e);
+        }
+
+        mLmdb = new LMDB(aPath, true);
+    }
+
+    /**
+     * Checks the document's fingerprint; a changed one is recorded once the
+     * document has been acknowledged.
+     *
+     * @param aId the record ID
+     * @param aDocument the document
+     * @return whether the document is new or has changed since it was last recorded
+     */
+    public boolean update(final String aId, final String aDocument) {
+        final byte[] bytes = aDocument.getBytes(StandardCharsets.UTF_8);
+        return update(aId, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Checks the fingerprint of the document's UTF-8 bytes; a changed one is
+     * recorded once the document has been acknowledged.
+     *
+     * @param aId the record ID
+     * @param aBytes the byte array containing the document
+     * @param aOffset the document's offset
+     * @param aLength the document's length
+     * @return whether the document is new or has changed since it was last recorded
+     */
+    public boolean update(final String aId, final byte[] aBytes, final int aOffset, final int aLength) {
+        drain();
+
+        mDigest.update(aBytes, aOffset, aLength);
+        final String fingerprint = mEncoder.encodeToString(mDigest.digest());
+
+        if (fingerprint.equals(mLmdb.get(aId))) {
+            ++mUnchanged;
+            return false;
+        }
+        else {
+            mPending.put(aId, fingerprint);
+            ++mChanged;
+            return true;
+        }
+    }
+
+    /**
+     * Records the pending fingerprint of an acknowledged document (cf.
+     * {@link hbz.limetrans.BulkOutput#setAcknowledgedListener}).
+     *
+     * @param aId the record ID
+     */
+    public void acknowledge(final String aId) {
+        final String fingerprint = mPending.remove(aId);
+
+        if (fingerprint != null) {
+            mAcknowledged.add(new Entry(aId, fingerprint));
+        }
+    }
+
+    public void remove(final String aId) {
+        drain();
+
+        mPending.remove(aId);
+        mLmdb.removeKV(aId);
+        ++mRemoved;
+    }
+
+    public long getUnchanged() {
+        return mUnchanged;
+    }
+
+    @Override
+    public void close() {
+        drain();
+        mLmdb.close();
+
+        LOGGER.info("Fingerprints: {} [changed={}, unchanged={}, removed={}, unacknowledged={}]",
+                mPath, mChanged, mUnchanged, mRemoved, mPending.size());
+
+        mPending.clear();
+    }
+
+    private void drain() {
+        for (Entry entry = mAcknowledged.poll(); entry != null; entry = mAcknowledged.poll()) {
+            mLmdb.putKV(entry.id(), entry.fingerprint());
+        }
+    }
+
+    private record Entry(String id, String fingerprint) {
+    }
+
+}
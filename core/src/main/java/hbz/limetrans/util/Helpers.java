@@ -111,19 +111,19 @@ public class Helpers { // checkstyle-disable-line ClassDataAbstractionCoupling|C
         return settingsBuilder.build();
     }
 
-    public static boolean loadFile(final String aPath, final boolean aRequired, final String aDescription, final Consumer<String> aConsumer, final Supplier<Integer> aSupplier, final Logger aLogger) {
+    public static boolean loadFile(final String aPath, final boolean aRequired, final String aDescription, final Consumer<String> aConsumer, final Supplier<? extends Number> aSupplier, final Logger aLogger) {
+        return load(aPath, aRequired, aDescription, f -> readLines(f, aConsumer), aSupplier, aLogger);
+    }
+
+    // Like loadFile, but leaves reading the file to the given loader (e.g. to open an index built from it).
+    public static boolean load(final String aPath, final boolean aRequired, final String aDescription, final FileLoader aLoader, final Supplier<? extends Number> aSupplier, final Logger aLogger) {
         final File file = new File(aPath);
 
         final Long rssBefore = getRss();
 
         if (aRequired || file.exists()) {
-            try (
-                InputStream inputStream = new FileInputStream(aPath);
-                InputStream decompressor = COMPRESSION.createDecompressor(inputStream, true);
-                Reader reader = new InputStreamReader(decompressor);
-                BufferedReader bufferedReader = new BufferedReader(reader)
-            ) {
-                bufferedReader.lines().forEach(aConsumer);
+            try {
+                aLoader.load(file);
             }
             catch (final IOException e) {
                 aLogger.error("Failed to load " + aDescription + ": " + aPath, e);
@@ -142,6 +142,18 @@ public class Helpers { // checkstyle-disable-line ClassDataAbstractionCoupling|C
         return true;
     }
 
+    // Reads a (compressed) line-based file.
+    public static void readLines(final File aFile, final Consumer<String> aConsumer) throws IOException {
+        try (
+            InputStream inputStream = new FileInputStream(aFile);
+            InputStream decompressor = COMPRESSION.createDecompressor(inputStream, true);
+            Reader reader = new InputStreamReader(decompressor);
+            BufferedReader bufferedReader = new BufferedReader(reader)
+        ) {
+            bufferedReader.lines().forEach(aConsumer);
+        }
+    }
+
     public static String slurpFile(final String aPath) throws IOException {
         return new String(Files.readAllBytes(Paths.get(aPath)));
     }
@@ -222,4 +234,9 @@ public class Helpers { // checkstyle-disable-line ClassDataAbstractionCoupling|C
         return "%s%s".formatted(aSize, DISPLAY_SIZE[aExponent]);
     }
 
+    @FunctionalInterface
+    public interface FileLoader {
+        void load(File aFile) throws IOException;
+    }
+
 }
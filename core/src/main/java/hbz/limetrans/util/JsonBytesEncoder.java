@@ -0,0 +1,243 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes records as UTF-8 JSON bytes, equivalent to metafacture's
+ * {@code JsonEncoder} with default settings (entities whose name ends with
+ * {@code []} become arrays), but without an intermediate {@code String}.
+ *
+ * Documents are written back to back into shared slabs and passed on as
+ * slices; a slab is never written to again where it has been handed out, so
+ * the documents stay valid until they are no longer referenced.
+ */
+public final class JsonBytesEncoder extends DefaultStreamPipe<ObjectReceiver<JsonBytesEncoder.Document>> {
+
+    private static final String ARRAY_MARKER = "[]";
+
+    private static final int SLAB_SIZE = 1 << 16;
+    private static final int INITIAL_DEPTH = 16;
+
+    // Worst case: control character as a six byte unicode escape (upper-case hex, like Jackson).
+    private static final int MAX_BYTES_PER_CHAR = 6;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private boolean[] mArray = new boolean[INITIAL_DEPTH];
+    private boolean[] mFirst = new boolean[INITIAL_DEPTH];
+    private byte[] mSlab = new byte[SLAB_SIZE];
+    private int mDepth;
+    private int mPosition;
+    private int mStart;
+
+    public JsonBytesEncoder() {
+    }
+
+    @Override
+    public void startRecord(final String aId) {
+        mPosition = mStart;
+        mDepth = 0;
+
+        write('{');
+        push(false);
+    }
+
+    @Override
+    public void endRecord() {
+        write('}');
+        mDepth = 0;
+
+        final Document document = new Document(mSlab, mStart, mPosition - mStart);
+        mStart = mPosition;
+
+        getReceiver().process(document);
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        final boolean array = aName.endsWith(ARRAY_MARKER);
+
+        writeName(array ? aName.substring(0, aName.length() - ARRAY_MARKER.length()) : aName);
+        write(array ? '[' : '{');
+        push(array);
+    }
+
+    @Override
+    public void endEntity() {
+        write(mArray[--mDepth] ? ']' : '}');
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        writeName(aName);
+
+        if (aValue != null) {
+            writeString(aValue);
+        }
+        else {
+            ensureCapacity(NULL.length);
+            System.arraycopy(NULL, 0, mSlab, mPosition, NULL.length);
+            mPosition += NULL.length;
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        mDepth = 0;
+        mPosition = mStart;
+    }
+
+    private void push(final boolean aArray) {
+        if (mDepth == mArray.length) {
+            mArray = Arrays.copyOf(mArray, mDepth * 2);
+            mFirst = Arrays.copyOf(mFirst, mDepth * 2);
+        }
+
+        mArray[mDepth] = aArray;
+        mFirst[mDepth] = true;
+        ++mDepth;
+    }
+
+    // Writes the separator and, outside of arrays, the member name.
+    private void writeName(final String aName) {
+        final int current = mDepth - 1;
+
+        if (mFirst[current]) {
+            mFirst[current] = false;
+        }
+        else {
+            write(',');
+        }
+
+        if (!mArray[current]) {
+            writeString(aName);
+            write(':');
+        }
+    }
+
+    private void write(final char aChar) {
+        ensureCapacity(1);
+        mSlab[mPosition++] = (byte) aChar;
+    }
+
+    private void writeString(final String aString) {
+        final int length = aString.length();
+        ensureCapacity(length * MAX_BYTES_PER_CHAR + 2);
+
+        final byte[] slab = mSlab;
+        int position = mPosition;
+
+        slab[position++] = '"';
+
+        for (int i = 0; i < length; ++i) {
+            final char c = aString.charAt(i);
+
+            if (c < 0x80) { // checkstyle-disable-line MagicNumber
+                if (c == '"' || c == '\\') {
+                    slab[position++] = '\\';
+                    slab[position++] = (byte) c;
+                }
+                else if (c < 0x20) { // checkstyle-disable-line MagicNumber
+                    position = writeControl(slab, position, c);
+                }
+                else {
+                    slab[position++] = (byte) c;
+                }
+            }
+            else if (c < 0x800) { // checkstyle-disable-line MagicNumber
+                slab[position++] = (byte) (0xc0 | c >> 6); // checkstyle-disable-line MagicNumber
+                slab[position++] = (byte) (0x80 | c & 0x3f); // checkstyle-disable-line MagicNumber
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(aString.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, aString.charAt(++i)); // checkstyle-disable-line ModifiedControlVariable
+
+                // checkstyle-disable-begin MagicNumber
+                slab[position++] = (byte) (0xf0 | codePoint >> 18);
+                slab[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                slab[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                slab[position++] = (byte) (0x80 | codePoint & 0x3f);
+                // checkstyle-disable-end
+            }
+            else if (Character.isSurrogate(c)) {
+                slab[position++] = '?'; // unpaired surrogate, like String.getBytes()
+            }
+            else {
+                // checkstyle-disable-begin MagicNumber
+                slab[position++] = (byte) (0xe0 | c >> 12);
+                slab[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                slab[position++] = (byte) (0x80 | c & 0x3f);
+                // checkstyle-disable-end
+            }
+        }
+
+        slab[position++] = '"';
+        mPosition = position;
+    }
+
+    private static int writeControl(final byte[] aSlab, final int aPosition, final char aChar) {
+        int position = aPosition;
+        aSlab[position++] = '\\';
+
+        switch (aChar) {
+            case '\b':
+                aSlab[position++] = 'b';
+                break;
+            case '\f':
+                aSlab[position++] = 'f';
+                break;
+            case '\n':
+                aSlab[position++] = 'n';
+                break;
+            case '\r':
+                aSlab[position++] = 'r';
+                break;
+            case '\t':
+                aSlab[position++] = 't';
+                break;
+            default:
+                aSlab[position++] = 'u';
+                aSlab[position++] = '0';
+                aSlab[position++] = '0';
+                aSlab[position++] = HEX[aChar >> 4]; // checkstyle-disable-line MagicNumber
+                aSlab[position++] = HEX[aChar & 0xf]; // checkstyle-disable-line MagicNumber
+        }
+
+        return position;
+    }
+
+    // Continues the current document in a new slab if it doesn't fit anymore.
+    private void ensureCapacity(final int aBytes) {
+        if (mPosition + aBytes > mSlab.length) {
+            final int length = mPosition - mStart;
+            final byte[] slab = new byte[Math.max(SLAB_SIZE, 2 * (length + aBytes))];
+
+            System.arraycopy(mSlab, mStart, slab, 0, length);
+
+            mSlab = slab;
+            mStart = 0;
+            mPosition = length;
+        }
+    }
+
+    /**
+     * A JSON document as a slice of a (shared) byte array.
+     *
+     * @param array the byte array (must not be modified)
+     * @param offset the document's offset
+     * @param length the document's length
+     */
+    public record Document(byte[] array, int offset, int length) {
+
+        @Override
+        public String toString() {
+            return new String(array, offset, length, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
@@ -1,9 +1,12 @@
 package hbz.limetrans.util;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.lmdbjava.Dbi;
 import org.lmdbjava.Env;
 import org.lmdbjava.EnvFlags;
 import org.lmdbjava.EnvInfo;
+import org.lmdbjava.PutFlags;
 import org.lmdbjava.Stat;
 import org.lmdbjava.Txn;
 import org.metafacture.io.FileCompression;
@@ -20,33 +23,57 @@ import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
-public final class LMDB extends AbstractReadOnlyMap<String, String> implements Closeable {
+public final class LMDB extends AbstractReadOnlyMap<String, String> implements Closeable { // checkstyle-disable-line ClassDataAbstractionCoupling|ClassFanOutComplexity
+
+    private static final Logger LOGGER = LogManager.getLogger();
 
     private static final int MAP_SIZE = 10_000; // * 1048576
     private static final int MAX_VALUE_SIZE = 1024 * MAP_SIZE;
+    private static final int MAX_READERS = 1024;
+    private static final int INITIAL_VALUE_SIZE = 1024;
+    private static final long MB = 1024 * 1024;
+
+    private static final int DEFAULT_COMMIT_INTERVAL = 100_000;
 
     private static final String EXTENSION = ".lmdb";
     private static final String SEPARATOR = "\u001D";
 
     private static final Charset CHARSET = Charset.defaultCharset();
 
+    private static final Map<Path, Object> BUILD_LOCKS = new ConcurrentHashMap<>();
+
     private final ByteBuffer mKeyBuffer;
     private final ByteBuffer mValueBuffer;
     private final Dbi<ByteBuffer> mDbi;
     private final Env<ByteBuffer> mEnv;
     private final File mTempFile;
+    private final Queue<Lookup> mLookups = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Lookup> mLookup;
     private final Txn<ByteBuffer> mTxn;
 
     public LMDB(final String aPath) {
+        this(aPath, false);
+    }
+
+    // Writable: opens (or creates) the file for reading and writing with a single write transaction.
+    public LMDB(final String aPath, final boolean aWritable) {
         final File file = new File(aPath);
-        final boolean readonly = file.exists();
+        final boolean readonly = !aWritable && file.exists();
 
         final File realFile;
 
@@ -78,17 +105,36 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
             throw new IllegalArgumentException("Writing to compressed file not supported (yet).");
         }
 
-        mEnv = Env.open(realFile,
-                readonly ? 0 : MAP_SIZE,
-                EnvFlags.MDB_NOLOCK,
-                EnvFlags.MDB_NOSUBDIR,
-                readonly ? EnvFlags.MDB_RDONLY_ENV : null);
+        // Read-only: every thread gets its own read transaction (MDB_NOTLS: not bound to the thread's reader slot).
+        mEnv = Env.create()
+            .setMapSize((readonly ? 0 : MAP_SIZE) * MB)
+            .setMaxReaders(MAX_READERS)
+            .open(realFile,
+                    EnvFlags.MDB_NOLOCK,
+                    EnvFlags.MDB_NOSUBDIR,
+                    readonly ? EnvFlags.MDB_RDONLY_ENV : null,
+                    readonly ? EnvFlags.MDB_NOTLS : null);
 
         mDbi = mEnv.openDbi((byte[]) null);
-        mTxn = readonly ? mEnv.txnRead() : mEnv.txnWrite();
 
-        mKeyBuffer = ByteBuffer.allocateDirect(mEnv.getMaxKeySize());
-        mValueBuffer = ByteBuffer.allocateDirect(MAX_VALUE_SIZE);
+        if (readonly) {
+            mTxn = null;
+            mKeyBuffer = null;
+            mValueBuffer = null;
+
+            mLookup = ThreadLocal.withInitial(() -> {
+                final Lookup lookup = new Lookup(mEnv.txnRead(), mEnv.getMaxKeySize());
+                mLookups.add(lookup);
+                return lookup;
+            });
+        }
+        else {
+            mTxn = mEnv.txnWrite();
+            mKeyBuffer = ByteBuffer.allocateDirect(mEnv.getMaxKeySize());
+            mValueBuffer = ByteBuffer.allocateDirect(MAX_VALUE_SIZE);
+
+            mLookup = null;
+        }
     }
 
     public boolean isReadOnly() {
@@ -114,8 +160,13 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
     @Override
     public void close() {
         try {
-            mTxn.commit();
-            mTxn.close();
+            if (mTxn != null) {
+                mTxn.commit();
+                mTxn.close();
+            }
+
+            mLookups.forEach(r -> r.mTxn.close());
+            mLookups.clear();
         }
         finally {
             mEnv.close();
@@ -142,6 +193,11 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
             return aDefault;
         }
 
+        if (mLookup != null) {
+            final String value = mLookup.get().get(key);
+            return value != null ? value : aDefault;
+        }
+
         try {
             final ByteBuffer val = withBuffer(mKeyBuffer, key, k -> mDbi.get(mTxn, k));
             return val != null ? CHARSET.decode(val).toString() : aDefault;
@@ -152,6 +208,10 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
     }
 
     public String putKV(final String aKey, final String aValue) {
+        if (mLookup != null) {
+            throw new UnsupportedOperationException("Read-only: " + mEnv);
+        }
+
         try {
             withBuffer(mKeyBuffer, aKey, k ->
                     withBuffer(mValueBuffer, aValue, v ->
@@ -164,6 +224,14 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
         return null;
     }
 
+    public boolean removeKV(final String aKey) {
+        if (mLookup != null) {
+            throw new UnsupportedOperationException("Read-only: " + mEnv);
+        }
+
+        return withBuffer(mKeyBuffer, aKey, k -> mDbi.delete(mTxn, k));
+    }
+
     private <T> T withBuffer(final ByteBuffer aBuffer, final String aString, final Function<ByteBuffer, T> aFunction) {
         aBuffer.put(Objects.requireNonNull(aString).getBytes(CHARSET)).flip();
         final T result = aFunction.apply(aBuffer);
@@ -172,38 +240,278 @@ public final class LMDB extends AbstractReadOnlyMap<String, String> implements C
         return result;
     }
 
-    public static void main(final String[] aArgs) {
-        final int argc = aArgs.length;
+    /**
+     * Builds an index file under a temporary name in the same directory and
+     * moves it into place once it is complete, so that an interrupted build
+     * never leaves a partial index behind and concurrent builds don't write
+     * to the same file.
+     *
+     * @param aIndexFile the LMDB file
+     * @param aLoader the loader to fill the index with
+     * @throws IOException if the index could not be loaded or written
+     */
+    public static void build(final Path aIndexFile, final Loader aLoader) throws IOException {
+        final Path directory = aIndexFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        // Hidden, so it won't be taken for an index of its own.
+        final Path tempFile = Files.createTempFile(directory, "." + aIndexFile.getFileName(), ".tmp" + EXTENSION);
+
+        try {
+            try (LMDB lmdb = new LMDB(tempFile.toString(), true)) {
+                aLoader.load(lmdb);
+            }
+
+            Files.move(tempFile, aIndexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Builds an index file (cf. {@link #build(Path, Loader)}) unless it
+     * exists already. Callers within this process are serialized per index
+     * file, so that, e.g., parallel workers loading the same map build it
+     * only once and open it only when it is complete.
+     *
+     * @param aIndexFile the LMDB file
+     * @param aLoader the loader to fill the index with
+     * @return true if the index has been built, false if it existed already
+     * @throws IOException if the index could not be loaded or written
+     */
+    public static boolean buildIfAbsent(final Path aIndexFile, final Loader aLoader) throws IOException {
+        synchronized (BUILD_LOCKS.computeIfAbsent(aIndexFile.toAbsolutePath().normalize(), k -> new Object())) {
+            if (Files.exists(aIndexFile)) {
+                return false;
+            }
+
+            build(aIndexFile, aLoader);
+            return true;
+        }
+    }
+
+    /**
+     * Bulk loads {@code KEY\u001DVALUE} lines into a new LMDB file.
+     *
+     * @param aPath the LMDB file (must not exist yet)
+     * @param aInput the input file, optionally compressed ({@code null} for STDIN)
+     * @param aAppend whether the input is sorted by key (bytewise, e.g. {@code LC_ALL=C sort})
+     * @param aCommitInterval the number of entries per write transaction
+     * @return the number of entries written
+     * @throws IOException if the input could not be read
+     */
+    public static long load(final String aPath, final String aInput, final boolean aAppend, final int aCommitInterval) throws IOException {
+        if (!aPath.endsWith(EXTENSION)) {
+            throw new IllegalArgumentException("Writing to compressed file not supported (yet).");
+        }
+
+        final File file = new File(aPath);
+        if (file.exists()) {
+            throw new IllegalArgumentException("File already exists: " + aPath);
+        }
+
+        try (
+            InputStream stream = aInput != null ? new FileInputStream(aInput) : System.in;
+            InputStream decompressor = FileCompression.AUTO.createDecompressor(stream, true);
+            Reader reader = new InputStreamReader(decompressor, CHARSET);
+            BufferedReader bufferedReader = new BufferedReader(reader);
+            Env<ByteBuffer> env = Env.create()
+                .setMapSize(MAP_SIZE * MB)
+                .open(file, EnvFlags.MDB_NOLOCK, EnvFlags.MDB_NOSUBDIR, EnvFlags.MDB_NOSYNC)
+        ) {
+            final BulkLoader loader = new BulkLoader(env, aAppend, aCommitInterval);
+
+            try {
+                bufferedReader.lines().forEach(loader::put);
+                loader.commit();
+            }
+            finally {
+                loader.abort();
+            }
+
+            env.sync(true);
+
+            LOGGER.info("Loaded {} entries: {} [unsorted={}, skipped={}]",
+                    loader.mCount, aPath, loader.mUnsorted, loader.mSkipped);
+
+            return loader.mCount;
+        }
+    }
+
+    public static void main(final String[] aArgs) throws IOException, Cli.CliException {
+        final Cli cli = new Cli(LMDB.class, "PATH [KEY...]")
+            .addOption("a", "append", "Input is sorted by key (bulk load with MDB_APPEND)")
+            .addOption("c", "commit", "Entries per transaction (default: " + DEFAULT_COMMIT_INTERVAL + ")", false)
+            .addOption("h", "help",   "Print help output")
+            .addOption("i", "input",  "Input file, optionally compressed (default: STDIN)", false);
+
+        if (!cli.parse(aArgs)) {
+            return;
+        }
+
+        final String[] args = cli.getArgs();
+        final int argc = args.length;
         if (argc < 1) {
-            throw new IllegalArgumentException("Usage: " + LMDB.class + " <path> [<key>...]");
+            throw new IllegalArgumentException(cli.getHelp());
         }
 
-        try (LMDB lmdb = new LMDB(aArgs[0])) {
-            if (lmdb.isReadOnly()) {
-                System.out.println(lmdb.info());
-                System.out.println(lmdb.stat());
+        if (!new File(args[0]).exists()) {
+            final Settings settings = cli.getAsSettings();
 
-                for (int i = 1; i < argc; ++i) {
-                    System.out.println(aArgs[i] + "=" + lmdb.get(aArgs[i]));
-                }
+            load(args[0], settings.get("input"), settings.getAsBoolean("append", false),
+                    Integer.parseInt(settings.get("commit", String.valueOf(DEFAULT_COMMIT_INTERVAL))));
+
+            return;
+        }
+
+        try (LMDB lmdb = new LMDB(args[0])) {
+            System.out.println(lmdb.info());
+            System.out.println(lmdb.stat());
+
+            for (int i = 1; i < argc; ++i) {
+                System.out.println(args[i] + "=" + lmdb.get(args[i]));
             }
-            else {
-                try (
-                    Reader reader = new InputStreamReader(System.in);
-                    BufferedReader bufferedReader = new BufferedReader(reader)
-                ) {
-                    bufferedReader.lines().forEach(l -> {
-                        final String[] parts = l.split(SEPARATOR, 2);
-                        if (parts.length == 2) {
-                            lmdb.putKV(parts[0], parts[1]);
-                        }
-                    });
-                }
-                catch (final IOException e) {
-                    throw new UncheckedIOException(e);
-                }
+        }
+    }
+
+    private final class Lookup {
+
+        private final ByteBuffer mKeyBuffer;
+        private final CharsetEncoder mEncoder = CHARSET.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Txn<ByteBuffer> mTxn;
+
+        private byte[] mBytes = new byte[INITIAL_VALUE_SIZE];
+
+        private Lookup(final Txn<ByteBuffer> aTxn, final int aMaxKeySize) {
+            mTxn = aTxn;
+            mKeyBuffer = ByteBuffer.allocateDirect(aMaxKeySize);
+        }
+
+        private String get(final String aKey) {
+            mKeyBuffer.clear();
+
+            final CoderResult result = mEncoder.reset().encode(CharBuffer.wrap(aKey), mKeyBuffer, true);
+            if (result.isOverflow() || mEncoder.flush(mKeyBuffer).isOverflow()) {
+                return null; // longer than any stored key
+            }
+
+            mKeyBuffer.flip();
+
+            final ByteBuffer val = mDbi.get(mTxn, mKeyBuffer);
+            if (val == null) {
+                return null;
+            }
+
+            // Copy into a reused array and let the String constructor decode (no intermediate CharBuffer).
+            final int length = val.remaining();
+            if (mBytes.length < length) {
+                mBytes = new byte[Math.max(length, 2 * mBytes.length)];
+            }
+
+            val.get(mBytes, 0, length);
+            return new String(mBytes, 0, length, CHARSET);
+        }
+
+    }
+
+    private static final class BulkLoader {
+
+        private final ByteBuffer mKeyBuffer;
+        private final ByteBuffer mValueBuffer;
+        private final CharsetEncoder mEncoder = CHARSET.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Dbi<ByteBuffer> mDbi;
+        private final Env<ByteBuffer> mEnv;
+        private final PutFlags[] mFlags;
+        private final int mCommitInterval;
+
+        private Txn<ByteBuffer> mTxn;
+        private int mPending;
+        private long mCount;
+        private long mSkipped;
+        private long mUnsorted;
+
+        private BulkLoader(final Env<ByteBuffer> aEnv, final boolean aAppend, final int aCommitInterval) {
+            mEnv = aEnv;
+            mDbi = aEnv.openDbi((byte[]) null);
+            mFlags = aAppend ? new PutFlags[]{PutFlags.MDB_APPEND} : new PutFlags[0];
+            mCommitInterval = Math.max(aCommitInterval, 1);
+
+            mKeyBuffer = ByteBuffer.allocateDirect(aEnv.getMaxKeySize());
+            mValueBuffer = ByteBuffer.allocateDirect(MAX_VALUE_SIZE);
+
+            mTxn = aEnv.txnWrite();
+        }
+
+        private void put(final String aLine) {
+            final int index = aLine.indexOf(SEPARATOR);
+
+            if (index <= 0) {
+                ++mSkipped;
+                return;
+            }
+
+            if (!encode(aLine, 0, index, mKeyBuffer) || !encode(aLine, index + 1, aLine.length(), mValueBuffer)) {
+                throw new LimetransException("Failed to add " + aLine);
+            }
+
+            try {
+                mDbi.put(mTxn, mKeyBuffer, mValueBuffer, mFlags);
+            }
+            catch (final Dbi.KeyExistsException e) {
+                // Out of order or duplicate key: fall back to a regular put (last value wins).
+                mDbi.put(mTxn, mKeyBuffer, mValueBuffer);
+                ++mUnsorted;
+            }
+
+            ++mCount;
+
+            if (++mPending >= mCommitInterval) {
+                commit();
+                mTxn = mEnv.txnWrite();
+
+                LOGGER.debug("Committed {} entries", mCount);
+            }
+        }
+
+        private void commit() {
+            mTxn.commit();
+            mTxn.close();
+            mTxn = null;
+            mPending = 0;
+        }
+
+        // Releases the open write transaction (if any) when loading failed; uncommitted entries are discarded.
+        private void abort() {
+            if (mTxn != null) {
+                mTxn.close();
+                mTxn = null;
+            }
+        }
+
+        // Encodes straight into the direct buffer, without an intermediate byte array.
+        private boolean encode(final String aString, final int aStart, final int aEnd, final ByteBuffer aBuffer) {
+            aBuffer.clear();
+            mEncoder.reset();
+
+            final CharBuffer input = CharBuffer.wrap(aString, aStart, aEnd);
+            if (mEncoder.encode(input, aBuffer, true).isOverflow() || mEncoder.flush(aBuffer).isOverflow()) {
+                return false;
             }
+
+            aBuffer.flip();
+            return true;
         }
+
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        void load(LMDB aLmdb) throws IOException;
     }
 
 }
@@ -0,0 +1,239 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+
+/**
+ * Read-only string set backed by a memory-mapped open addressing hash table.
+ *
+ * The table is built once from a (compressed) line-based source file and
+ * rebuilt whenever the source's modification time or size changes.
+ *
+ * File layout (little-endian): header, slots (absolute entry offsets; zero
+ * for empty slots), entries (length-prefixed UTF-8 bytes).
+ */
+public final class MappedSet implements Predicate<String> {
+
+    private static final String EXTENSION = ".mset";
+
+    private static final long MAGIC = 0x3154_4553_534d_544cL; // "LTMSSET1"
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int MTIME_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+    private static final int SLOTS_OFFSET = 32;
+    private static final int HEADER_SIZE = 40;
+
+    private static final int SLOT_SIZE = Long.BYTES;
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf2_9ce4_8422_2325L;
+    private static final long FNV_PRIME = 0x100_0000_01b3L;
+    private static final long MIX_MULTIPLIER = 0xff51_afd7_ed55_8ccdL;
+    private static final int MIX_SHIFT = 33;
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final MemorySegment mSegment;
+    private final long mCount;
+    private final long mMask;
+
+    private MappedSet(final MemorySegment aSegment) {
+        mSegment = aSegment;
+        mCount = aSegment.get(LONG, COUNT_OFFSET);
+        mMask = aSegment.get(LONG, SLOTS_OFFSET) - 1;
+    }
+
+    /**
+     * Opens the set for the given source file, building (or rebuilding) the
+     * index file in the given directory (or the system's temporary directory)
+     * first if necessary.
+     *
+     * @param aPath the source file
+     * @param aIndexPath the index directory (may be {@code null})
+     * @param aRequired whether the source file must exist
+     * @param aDescription the description for log messages
+     * @param aLogger the logger
+     * @return the set, or {@code null} if it could not be loaded
+     */
+    public static Predicate<String> load(final String aPath, final String aIndexPath, final boolean aRequired, final String aDescription, final Logger aLogger) {
+        final MappedSet[] set = new MappedSet[1];
+
+        if (!Helpers.load(aPath, aRequired, aDescription, f -> set[0] = open(f, getIndexFile(f, aIndexPath), aDescription, aLogger),
+                    () -> set[0] != null ? set[0].size() : 0, aLogger)) {
+            return null;
+        }
+
+        return set[0] != null ? set[0] : v -> false;
+    }
+
+    public long size() {
+        return mCount;
+    }
+
+    @Override
+    public boolean test(final String aValue) {
+        final byte[] bytes = aValue.getBytes(StandardCharsets.UTF_8);
+
+        for (long i = hash(bytes) & mMask; ; i = (i + 1) & mMask) {
+            final long offset = mSegment.get(LONG, HEADER_SIZE + i * SLOT_SIZE);
+
+            if (offset == 0) {
+                return false;
+            }
+
+            if (equals(mSegment, offset, bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private static MappedSet open(final File aFile, final Path aIndexFile, final String aDescription, final Logger aLogger) throws IOException {
+        final long mtime = aFile.lastModified();
+        final long size = aFile.length();
+
+        MemorySegment segment = Files.exists(aIndexFile) ? map(aIndexFile) : null;
+
+        if (segment == null || !isValid(segment, mtime, size)) {
+            aLogger.info("Building {} index: {}", aDescription, aIndexFile);
+            build(aFile, aIndexFile, mtime, size);
+            segment = map(aIndexFile);
+        }
+
+        if (!isValid(segment, mtime, size)) {
+            throw new IOException("Invalid " + aDescription + " index: " + aIndexFile);
+        }
+
+        return new MappedSet(segment);
+    }
+
+    private static Path getIndexFile(final File aFile, final String aIndexPath) {
+        final String name = "%s.%08x%s".formatted(aFile.getName(), aFile.getAbsolutePath().hashCode(), EXTENSION);
+        return Path.of(aIndexPath != null ? aIndexPath : System.getProperty("java.io.tmpdir"), name);
+    }
+
+    // Unmapped by the garbage collector once the set is no longer referenced.
+    private static MemorySegment map(final Path aIndexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(aIndexFile, StandardOpenOption.READ)) {
+            return channel.size() < HEADER_SIZE ? null :
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+        }
+    }
+
+    private static boolean isValid(final MemorySegment aSegment, final long aMtime, final long aSize) {
+        return aSegment.get(LONG, MAGIC_OFFSET) == MAGIC &&
+            aSegment.get(LONG, MTIME_OFFSET) == aMtime &&
+            aSegment.get(LONG, SIZE_OFFSET) == aSize;
+    }
+
+    // Two passes over the source: the first one sizes the table, the second one fills it.
+    private static void build(final File aFile, final Path aIndexFile, final long aMtime, final long aSize) throws IOException {
+        final long[] stats = new long[2];
+
+        Helpers.readLines(aFile, l -> {
+            ++stats[0];
+            stats[1] += l.getBytes(StandardCharsets.UTF_8).length;
+        });
+
+        final long slots = Long.highestOneBit(Math.max(2 * stats[0], 2) - 1) << 1;
+        final long capacity = HEADER_SIZE + slots * SLOT_SIZE + stats[0] * LENGTH_SIZE + stats[1];
+
+        final Path parent = aIndexFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        final Path tempFile = Files.createTempFile(parent, aIndexFile.getFileName().toString(), ".tmp");
+
+        try {
+            final long end;
+
+            try (
+                FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Arena arena = Arena.ofConfined()
+            ) {
+                final MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity, arena);
+                final long mask = slots - 1;
+                final long[] state = new long[]{HEADER_SIZE + slots * SLOT_SIZE, 0};
+
+                Helpers.readLines(aFile, l -> {
+                    final byte[] bytes = l.getBytes(StandardCharsets.UTF_8);
+
+                    for (long i = hash(bytes) & mask; ; i = (i + 1) & mask) {
+                        final long slot = HEADER_SIZE + i * SLOT_SIZE;
+                        final long offset = segment.get(LONG, slot);
+
+                        if (offset == 0) {
+                            segment.set(INT, state[0], bytes.length);
+                            MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, state[0] + LENGTH_SIZE, bytes.length);
+                            segment.set(LONG, slot, state[0]);
+
+                            state[0] += LENGTH_SIZE + bytes.length;
+                            ++state[1];
+                            break;
+                        }
+
+                        if (equals(segment, offset, bytes)) {
+                            break;
+                        }
+                    }
+                });
+
+                segment.set(LONG, MTIME_OFFSET, aMtime);
+                segment.set(LONG, SIZE_OFFSET, aSize);
+                segment.set(LONG, COUNT_OFFSET, state[1]);
+                segment.set(LONG, SLOTS_OFFSET, slots);
+                segment.set(LONG, MAGIC_OFFSET, MAGIC);
+                segment.force();
+
+                end = state[0];
+            }
+
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+
+            Files.move(tempFile, aIndexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static boolean equals(final MemorySegment aSegment, final long aOffset, final byte[] aBytes) {
+        final int length = aSegment.get(INT, aOffset);
+        final long start = aOffset + LENGTH_SIZE;
+
+        return length == aBytes.length && MemorySegment.mismatch(
+                aSegment, start, start + length, MemorySegment.ofArray(aBytes), 0, length) == -1;
+    }
+
+    // FNV-1a with a final avalanche step (linear probing needs well-spread low bits).
+    private static long hash(final byte[] aBytes) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (final byte b : aBytes) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME; // checkstyle-disable-line MagicNumber
+        }
+
+        hash ^= hash >>> MIX_SHIFT;
+        hash *= MIX_MULTIPLIER;
+        hash ^= hash >>> MIX_SHIFT;
+
+        return hash;
+    }
+
+}
@@ -0,0 +1,296 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects records, bytes and time spent per pipeline stage; see
+ * {@link TimingStreamPipe} for how stage times are measured.
+ */
+public final class Metrics implements Closeable {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String OBJECT_NAME = "hbz.limetrans:type=Metrics,stage=%s";
+    private static final String PROMETHEUS_PREFIX = "limetrans_stage_";
+    private static final String GAUGE_METRIC = "limetrans_gauge";
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final int DEFAULT_INTERVAL = 60;
+
+    // Time spent in nested stages on the current thread, to be excluded from the enclosing stage.
+    private static final ThreadLocal<long[]> CHILD_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final List<ObjectName> mObjectNames = new ArrayList<>();
+    private final Map<String, LongSupplier> mGauges = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Stage> mStages = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final MBeanServer mServer;
+    private final Path mPrometheusPath;
+    private final ScheduledExecutorService mScheduler;
+    private final long mStartTime = System.nanoTime();
+
+    public Metrics(final Settings aSettings) {
+        final String prometheusPath = aSettings.get("prometheus");
+        mPrometheusPath = prometheusPath != null ? Paths.get(prometheusPath) : null;
+
+        mServer = aSettings.getAsBoolean("jmx", true) ? ManagementFactory.getPlatformMBeanServer() : null;
+
+        final int interval = aSettings.getAsInt("interval", DEFAULT_INTERVAL);
+
+        if (interval > 0) {
+            mScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            mScheduler.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+        }
+        else {
+            mScheduler = null;
+        }
+
+        LOGGER.info("Collecting metrics [interval={}s, jmx={}, prometheus={}]", interval, mServer != null, mPrometheusPath);
+    }
+
+    public Stage getStage(final String aName) {
+        return mStages.computeIfAbsent(aName, k -> register(new Stage(k, mStartTime)));
+    }
+
+    // Current values (e.g. limits chosen at runtime), reported alongside the stages.
+    public void addGauge(final String aName, final LongSupplier aSupplier) {
+        mGauges.put(aName, aSupplier);
+    }
+
+    public TimingStreamPipe newTimer(final String aName) {
+        return new TimingStreamPipe(getStage(aName), true);
+    }
+
+    public TimingStreamPipe newCounter(final String aName) {
+        return new TimingStreamPipe(getStage(aName), false);
+    }
+
+    public void report() {
+        final List<Stage> stages = getStages();
+
+        final Map<String, Long> gauges = getGauges();
+
+        stages.forEach(s -> LOGGER.info("Stage {}", s));
+        gauges.forEach((k, v) -> LOGGER.info("Gauge {}: {}", k, v));
+
+        if (mPrometheusPath != null) {
+            writePrometheus(stages, gauges);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mScheduler != null) {
+            mScheduler.shutdownNow();
+        }
+
+        report();
+
+        if (mServer != null) {
+            mObjectNames.forEach(n -> {
+                try {
+                    mServer.unregisterMBean(n);
+                }
+                catch (final JMException e) {
+                    LOGGER.debug("Failed to unregister MBean: " + n, e);
+                }
+            });
+        }
+    }
+
+    private List<Stage> getStages() {
+        synchronized (mStages) {
+            return new ArrayList<>(mStages.values());
+        }
+    }
+
+    private Map<String, Long> getGauges() {
+        final Map<String, Long> gauges = new LinkedHashMap<>();
+
+        synchronized (mGauges) {
+            mGauges.forEach((k, v) -> gauges.put(k, v.getAsLong()));
+        }
+
+        return gauges;
+    }
+
+    private Stage register(final Stage aStage) {
+        if (mServer != null) {
+            try {
+                final ObjectName name = new ObjectName(OBJECT_NAME.formatted(ObjectName.quote(aStage.getName())));
+
+                if (mServer.isRegistered(name)) {
+                    mServer.unregisterMBean(name);
+                }
+
+                mServer.registerMBean(aStage, name);
+                mObjectNames.add(name);
+            }
+            catch (final JMException e) {
+                LOGGER.warn("Failed to register MBean: " + aStage.getName(), e);
+            }
+        }
+
+        return aStage;
+    }
+
+    private void writePrometheus(final List<Stage> aStages, final Map<String, Long> aGauges) {
+        final StringBuilder sb = new StringBuilder();
+
+        appendPrometheus(sb, aStages, "records_total", "Records passed into the stage.", s -> String.valueOf(s.getRecords()));
+        appendPrometheus(sb, aStages, "bytes_total", "Bytes read by the stage.", s -> String.valueOf(s.getBytes()));
+        appendPrometheus(sb, aStages, "seconds_total", "Time spent in the stage itself.", s -> String.valueOf(s.getSeconds()));
+
+        if (!aGauges.isEmpty()) {
+            sb.append("# HELP ").append(GAUGE_METRIC).append(" Current value.\n");
+            sb.append("# TYPE ").append(GAUGE_METRIC).append(" gauge\n");
+
+            aGauges.forEach((k, v) -> sb
+                    .append(GAUGE_METRIC).append("{name=\"").append(k).append("\"} ")
+                    .append(v).append('\n'));
+        }
+
+        try {
+            // Replace atomically so scrapers never see a partial file.
+            final Path tempFile = Files.createTempFile(mPrometheusPath.toAbsolutePath().getParent(), "metrics", ".tmp");
+            Files.writeString(tempFile, sb, StandardCharsets.UTF_8);
+            Files.move(tempFile, mPrometheusPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Failed to write metrics: " + mPrometheusPath, e);
+        }
+    }
+
+    private void appendPrometheus(final StringBuilder aBuilder, final List<Stage> aStages, final String aMetric, final String aHelp, final Function<Stage, String> aFunction) {
+        final String metric = PROMETHEUS_PREFIX + aMetric;
+
+        aBuilder.append("# HELP ").append(metric).append(' ').append(aHelp).append('\n');
+        aBuilder.append("# TYPE ").append(metric).append(" counter\n");
+
+        aStages.forEach(s -> aBuilder
+                .append(metric).append("{stage=\"").append(s.getName()).append("\"} ")
+                .append(aFunction.apply(s)).append('\n'));
+    }
+
+    public interface StageMXBean {
+
+        String getName();
+
+        long getRecords();
+
+        long getBytes();
+
+        double getSeconds();
+
+        double getRecordsPerSecond();
+
+    }
+
+    public static final class Stage implements StageMXBean {
+
+        private final LongAdder mBytes = new LongAdder();
+        private final LongAdder mNanos = new LongAdder();
+        private final LongAdder mRecords = new LongAdder();
+        private final String mName;
+        private final long mStartTime;
+
+        private Stage(final String aName, final long aStartTime) {
+            mName = aName;
+            mStartTime = aStartTime;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public long getRecords() {
+            return mRecords.sum();
+        }
+
+        @Override
+        public long getBytes() {
+            return mBytes.sum();
+        }
+
+        @Override
+        public double getSeconds() {
+            return mNanos.sum() / NANOS_PER_SECOND;
+        }
+
+        // Overall throughput since the start of the run.
+        @Override
+        public double getRecordsPerSecond() {
+            final long elapsed = System.nanoTime() - mStartTime;
+            return elapsed > 0 ? getRecords() * NANOS_PER_SECOND / elapsed : 0;
+        }
+
+        public void addRecords(final long aRecords) {
+            mRecords.add(aRecords);
+        }
+
+        public void addBytes(final long aBytes) {
+            mBytes.add(aBytes);
+        }
+
+        public void addNanos(final long aNanos) {
+            mNanos.add(aNanos);
+        }
+
+        // Runs the given code, excluding time spent in nested stages on the current thread (even if it fails).
+        public void time(final Runnable aRunnable) {
+            final long[] child = CHILD_NANOS.get();
+            final long outer = child[0];
+            final long start = System.nanoTime();
+
+            child[0] = 0;
+
+            try {
+                aRunnable.run();
+            }
+            finally {
+                final long elapsed = System.nanoTime() - start;
+
+                mNanos.add(elapsed - child[0]);
+                child[0] = outer + elapsed;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: records=%d, bytes=%s, seconds=%.3f, records/s=%.1f",
+                    mName, getRecords(), Helpers.byteCountToDisplaySize(getBytes()), getSeconds(), getRecordsPerSecond());
+        }
+
+    }
+
+}
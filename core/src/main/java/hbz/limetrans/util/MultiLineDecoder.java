@@ -4,18 +4,22 @@ import org.metafacture.framework.StreamReceiver;
 import org.metafacture.framework.helpers.DefaultObjectPipe;
 
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 // TODO: JavaDoc, @Description, @In, @Out, @FluxCommand
 
-public final class MultiLineDecoder extends DefaultObjectPipe<String, StreamReceiver> {
+public final class MultiLineDecoder extends DefaultObjectPipe<String, StreamReceiver> implements PushdownStreamPipe.Aware {
 
     public static final String DEFAULT_FIELD_SEPARATOR = ".";
     public static final String DEFAULT_VALUE_SEPARATOR = ":";
 
+    // Characters that make a separator a regular expression (cf. String.split).
+    private static final String REGEX_METACHARACTERS = ".$|()[{^?*+\\";
+
     // checkstyle-disable-begin MemberName
 
+    private PushdownStreamPipe pushdownPipe;
     private String currentEntity;
     private String fieldSeparator = DEFAULT_FIELD_SEPARATOR;
     private String recordEnd;
@@ -24,6 +28,16 @@ public final class MultiLineDecoder extends DefaultObjectPipe<String, StreamRece
     private boolean includeRecordEnd;
     private boolean includeRecordStart;
 
+    private Matcher valueSeparatorMatcher;
+
+    // Index ranges of the current line (cf. scanLine).
+    private int fieldEnd;
+    private int keyEnd;
+    private int lineEnd;
+    private int lineStart;
+    private int subfieldStart;
+    private int valueStart;
+
     // checkstyle-disable-end
 
     // checkstyle-disable-begin ParameterName
@@ -88,92 +102,161 @@ public final class MultiLineDecoder extends DefaultObjectPipe<String, StreamRece
 
     public void setValueSeparator(final String valueSeparator) {
         this.valueSeparator = Objects.requireNonNull(valueSeparator);
+
+        valueSeparatorMatcher = isLiteral(valueSeparator) ? null : Pattern.compile(valueSeparator).matcher("");
     }
 
     public String getValueSeparator() {
         return valueSeparator;
     }
 
+    @Override
+    public void setPushdownPipe(final PushdownStreamPipe pushdownPipe) {
+        this.pushdownPipe = pushdownPipe;
+    }
+
     public Row parseRow(final String line) {
-        final String[] p = line.split(valueSeparator, 2);
-        if (p.length != 2) {
+        if (!scanLine(line, 0, line.length())) {
             return null;
         }
 
-        final String field;
-        final String subfield;
-
-        final int index = fieldSeparator != null ? p[0].indexOf(fieldSeparator) : -1;
-        if (index < 0) {
-            field = p[0];
-            subfield = null;
-        }
-        else {
-            field = p[0].substring(0, index);
-            subfield = p[0].substring(index + 1);
-        }
+        final String field = line.substring(lineStart, fieldEnd);
 
-        return new Row(field, subfield, p[1],
+        return new Row(field, subfieldStart < 0 ? null : line.substring(subfieldStart, keyEnd), line.substring(valueStart, lineEnd),
                 Objects.equals(recordStart, field),
                 Objects.equals(recordEnd, field),
                 Objects.equals(currentEntity, field));
     }
 
     public void parseRecord(final String record, final StreamReceiver receiver) {
-        if (record.trim().isEmpty()) {
+        if (isBlank(record)) {
             return;
         }
 
-        final AtomicBoolean endRecord = new AtomicBoolean(true);
-        final AtomicBoolean startRecord = new AtomicBoolean(recordStart == null);
+        final int length = record.length();
 
-        record.lines().map(this::parseRow).filter(row -> row != null).forEach(row -> {
-            if (startRecord.get() || row.isRecordStart()) {
-                receiver.startRecord(row.value());
-                startRecord.set(false);
+        boolean endRecord = true;
+        boolean startRecord = recordStart == null;
+        boolean skip = false;
 
-                if (includeRecordStart) {
-                    emitField(row, receiver);
-                }
+        int start = 0;
+
+        // Lines are terminated by LF, CR or CRLF (cf. String.lines).
+        while (start < length) {
+            int end = start;
+
+            while (end < length && !isLineTerminator(record.charAt(end))) {
+                ++end;
             }
-            else if (row.isRecordEnd()) {
-                if (includeRecordEnd) {
-                    emitField(row, receiver);
+
+            // Lines of a rejected record aren't parsed, except for the record boundaries.
+            if ((!skip || isRecordBoundary(record, start, end)) && scanLine(record, start, end)) {
+                if (startRecord || isField(record, recordStart)) {
+                    receiver.startRecord(record.substring(valueStart, lineEnd));
+                    startRecord = false;
+
+                    if (includeRecordStart) {
+                        emitField(record, receiver);
+                    }
                 }
+                else if (isField(record, recordEnd)) {
+                    if (includeRecordEnd) {
+                        emitField(record, receiver);
+                    }
 
-                endRecord(receiver);
-                endRecord.set(false);
-            }
-            else {
-                emitField(row, receiver);
+                    endRecord(receiver);
+                    endRecord = false;
+                }
+                else {
+                    emitField(record, receiver);
+                }
+
+                skip = endRecord && pushdownPipe != null && pushdownPipe.isRejected();
             }
-        });
 
-        if (endRecord.get()) {
+            start = end + (end + 1 < length && record.charAt(end) == '\r' && record.charAt(end + 1) == '\n' ? 2 : 1);
+        }
+
+        if (endRecord) {
             endRecord(receiver);
         }
     }
 
-    private void emitField(final MultiLineDecoder.Row row, final StreamReceiver receiver) {
-        final String field = row.field();
-        final String value = row.value();
+    // Sets the index ranges of the given line's field, subfield and value; returns false if it has no value separator.
+    private boolean scanLine(final String string, final int start, final int end) {
+        final int separatorStart;
+        final int separatorEnd;
 
-        final String subfield = row.subfield();
-        if (subfield != null) {
-            if (!row.isCurrentEntity()) {
+        if (valueSeparatorMatcher == null) {
+            separatorStart = indexOf(string, valueSeparator, start, end);
+            separatorEnd = separatorStart + valueSeparator.length();
+        }
+        else {
+            final Matcher matcher = valueSeparatorMatcher.reset(string).region(start, end);
+
+            // A zero-width match at the beginning doesn't split (cf. String.split).
+            boolean found = matcher.find();
+            if (found && matcher.end() == start) {
+                found = matcher.find();
+            }
+
+            separatorStart = found ? matcher.start() : -1;
+            separatorEnd = found ? matcher.end() : -1;
+        }
+
+        if (separatorStart < 0) {
+            return false;
+        }
+
+        lineStart = start;
+        lineEnd = end;
+        keyEnd = separatorStart;
+        valueStart = separatorEnd;
+
+        final int index = fieldSeparator != null ? indexOf(string, fieldSeparator, start, keyEnd) : -1;
+        if (index < 0) {
+            fieldEnd = keyEnd;
+            subfieldStart = -1;
+        }
+        else {
+            fieldEnd = index;
+            subfieldStart = index + 1;
+        }
+
+        return true;
+    }
+
+    private boolean isField(final String string, final String field) {
+        return field != null && fieldEnd - lineStart == field.length() && string.startsWith(field, lineStart);
+    }
+
+    private boolean isRecordBoundary(final String string, final int start, final int end) {
+        return startsWith(string, start, end, recordEnd) || startsWith(string, start, end, recordStart);
+    }
+
+    private boolean startsWith(final String string, final int start, final int end, final String field) {
+        return field != null && end - start >= field.length() + valueSeparator.length() &&
+            string.startsWith(field, start) && string.startsWith(valueSeparator, start + field.length());
+    }
+
+    private void emitField(final String string, final StreamReceiver receiver) {
+        final String value = string.substring(valueStart, lineEnd);
+
+        if (subfieldStart >= 0) {
+            if (!isField(string, currentEntity)) {
                 endEntity(receiver);
             }
 
             if (currentEntity == null) {
-                receiver.startEntity(field);
-                currentEntity = field;
+                currentEntity = string.substring(lineStart, fieldEnd);
+                receiver.startEntity(currentEntity);
             }
 
-            receiver.literal(subfield, value);
+            receiver.literal(string.substring(subfieldStart, keyEnd), value);
         }
         else {
             endEntity(receiver);
-            receiver.literal(field, value);
+            receiver.literal(string.substring(lineStart, keyEnd), value);
         }
     }
 
@@ -200,6 +283,52 @@ public final class MultiLineDecoder extends DefaultObjectPipe<String, StreamRece
         currentEntity = null;
     }
 
+    private static int indexOf(final String string, final String search, final int start, final int end) {
+        final int length = search.length();
+        if (length == 0) {
+            return start;
+        }
+
+        final char first = search.charAt(0);
+
+        for (int i = start; i <= end - length; ++i) {
+            if (string.charAt(i) == first && string.startsWith(search, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isLiteral(final String string) {
+        if (string.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < string.length(); ++i) {
+            if (REGEX_METACHARACTERS.indexOf(string.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    // Same as trim().isEmpty(), without copying the record.
+    private static boolean isBlank(final String string) {
+        for (int i = 0; i < string.length(); ++i) {
+            if (string.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     public record Row(String field, String subfield, String value, boolean isRecordStart, boolean isRecordEnd, boolean isCurrentEntity) {
     }
 
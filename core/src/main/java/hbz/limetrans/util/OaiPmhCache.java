@@ -0,0 +1,219 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache for OAI-PMH responses (cf. {@link OaiPmhHarvester}).
+ *
+ * Responses are stored gzip compressed, keyed by the hash of the request URI
+ * (i.e., the repository, verb, {@code set}, {@code metadataPrefix}, date
+ * range and resumption token). Entries older than {@code ttl} hours are only
+ * used if the repository fails to respond (within {@code timeout} seconds,
+ * if given); once the cache grows beyond
+ * {@code max-size} megabytes, the oldest entries are evicted.
+ */
+public final class OaiPmhCache {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final String DEFAULT_DIRECTORY = "limetrans-oai-pmh-cache";
+    private static final String EXTENSION = ".xml.gz";
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private static final int DEFAULT_MAX_SIZE = 1024;
+    private static final int DEFAULT_TTL = 24;
+
+    private final Duration mTimeout;
+    private final Path mDirectory;
+    private final long mMaxSize;
+    private final long mTtl;
+
+    private long mSize;
+
+    public OaiPmhCache(final Settings aSettings) {
+        mDirectory = Paths.get(aSettings.get("path", Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY).toString()));
+        mTtl = aSettings.getAsInt("ttl", DEFAULT_TTL) * HOUR;
+        mMaxSize = aSettings.getAsInt("max-size", DEFAULT_MAX_SIZE) * MEGABYTE;
+
+        final Integer timeout = aSettings.getAsInt("timeout", null);
+        mTimeout = timeout != null ? Duration.ofSeconds(timeout) : null;
+
+        try {
+            Files.createDirectories(mDirectory);
+
+            try (Stream<Path> stream = list()) {
+                mSize = stream.mapToLong(this::size).sum();
+            }
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        LOGGER.info("Using OAI-PMH cache: {} [size={}]", mDirectory, Helpers.byteCountToDisplaySize(mSize));
+    }
+
+    /**
+     * Returns the request timeout after which an expired response is used
+     * instead (setting {@code timeout}, in seconds).
+     *
+     * @param aDefault the timeout to use if none has been configured
+     * @return the timeout
+     */
+    public Duration getTimeout(final Duration aDefault) {
+        return mTimeout != null ? mTimeout : aDefault;
+    }
+
+    /**
+     * Checks whether the cached response for the given request is missing or
+     * older than the configured TTL.
+     *
+     * @param aUri the request URI
+     * @return true if the response has to be requested again
+     */
+    public boolean isExpired(final URI aUri) {
+        final long lastModified = lastModified(getFile(aUri));
+        return lastModified == 0 || System.currentTimeMillis() - lastModified >= mTtl;
+    }
+
+    /**
+     * Returns the cached response for the given request, regardless of age.
+     *
+     * @param aUri the request URI
+     * @return the response, or {@code null} if there is none
+     */
+    public byte[] get(final URI aUri) {
+        final Path file = getFile(aUri);
+
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            return input.readAllBytes();
+        }
+        catch (final NoSuchFileException e) {
+            return null;
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Failed to read cached OAI-PMH response: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the response for the given request.
+     *
+     * @param aUri the request URI
+     * @param aResponse the response
+     */
+    public void put(final URI aUri, final byte[] aResponse) {
+        final Path file = getFile(aUri);
+
+        try {
+            final Path tempFile = Files.createTempFile(mDirectory, file.getFileName().toString(), ".tmp");
+
+            try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(tempFile))) {
+                output.write(aResponse);
+            }
+
+            final long size = Files.size(tempFile);
+
+            synchronized (this) {
+                final long previousSize = Files.exists(file) ? Files.size(file) : 0;
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                mSize += size - previousSize;
+
+                if (mSize > mMaxSize) {
+                    evict();
+                }
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Failed to cache OAI-PMH response: " + file, e);
+        }
+    }
+
+    // Removes the oldest entries until the cache has shrunk to 90% of its maximum size.
+    private void evict() throws IOException {
+        final long target = mMaxSize - mMaxSize / 10; // checkstyle-disable-line MagicNumber
+        final List<Path> files = new ArrayList<>();
+
+        try (Stream<Path> stream = list()) {
+            stream.sorted(Comparator.comparingLong(this::lastModified)).forEach(files::add);
+        }
+
+        int count = 0;
+
+        for (final Path file : files) {
+            if (mSize <= target) {
+                break;
+            }
+
+            mSize -= size(file);
+            Files.deleteIfExists(file);
+            ++count;
+        }
+
+        LOGGER.info("Evicted {} OAI-PMH cache entries [size={}]", count, Helpers.byteCountToDisplaySize(mSize));
+    }
+
+    private Stream<Path> list() throws IOException {
+        return Files.list(mDirectory).filter(p -> p.getFileName().toString().endsWith(EXTENSION));
+    }
+
+    private long size(final Path aFile) {
+        return attributes(aFile).map(BasicFileAttributes::size).orElse(0L);
+    }
+
+    private long lastModified(final Path aFile) {
+        return attributes(aFile).map(a -> a.lastModifiedTime().toMillis()).orElse(0L);
+    }
+
+    private Optional<BasicFileAttributes> attributes(final Path aFile) {
+        try {
+            return Optional.of(Files.readAttributes(aFile, BasicFileAttributes.class));
+        }
+        catch (final IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path getFile(final URI aUri) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new LimetransException(e);
+        }
+
+        return mDirectory.resolve(HexFormat.of().formatHex(digest.digest(aUri.toString().getBytes(StandardCharsets.UTF_8))) + EXTENSION);
+    }
+
+}
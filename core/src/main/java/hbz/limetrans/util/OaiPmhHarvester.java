@@ -0,0 +1,330 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Harvests a single {@code from}-{@code until} window of an OAI-PMH
+ * repository page by page ({@code ListRecords}), following resumption tokens.
+ *
+ * Unlike metafacture's {@code OaiPmhOpener}, each page is passed on as soon
+ * as it has been received, along with the resumption token for the next
+ * page, so that an interrupted harvest can be continued from the last page
+ * that has been processed.
+ *
+ * With a cache (see {@link #setCache(OaiPmhCache)}), pages are served from
+ * the cache while they haven't expired; expired pages are used if the
+ * repository fails to respond in time. Once a window has been started from
+ * the cache, its remaining pages are taken from the cache regardless of age,
+ * since resumption tokens are only valid with the response they came from.
+ */
+public final class OaiPmhHarvester {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String NAMESPACE = "http://www.openarchives.org/OAI/2.0/";
+
+    private static final String ERROR_ELEMENT = "error";
+    private static final String NO_RECORDS_MATCH = "noRecordsMatch";
+    private static final String TOKEN_ELEMENT = "resumptionToken";
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    private static final int DAY_LENGTH = "yyyy-MM-dd".length();
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int MAX_RETRIES = 5;
+    private static final int MAX_RETRY_SECONDS = 300;
+    private static final int RETRY_SECONDS = 10;
+
+    private final HttpClient mClient;
+    private final String mMetadataPrefix;
+    private final String mSetSpec;
+    private final String mUri;
+    private final XMLInputFactory mFactory = XMLInputFactory.newFactory();
+
+    private OaiPmhCache mCache;
+
+    public OaiPmhHarvester(final String aUri, final String aMetadataPrefix, final String aSetSpec) {
+        mUri = aUri;
+        mMetadataPrefix = aMetadataPrefix;
+        mSetSpec = aSetSpec;
+
+        mClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(TIMEOUT)
+            .build();
+
+        mFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        mFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        mFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    /**
+     * Sets the cache to serve and store responses with.
+     *
+     * @param aCache the cache (may be {@code null})
+     */
+    public void setCache(final OaiPmhCache aCache) {
+        mCache = aCache;
+    }
+
+    /**
+     * Splits the given date range into (at most) the given number of
+     * consecutive, non-overlapping windows. OAI-PMH date ranges are
+     * inclusive, in either day ({@code yyyy-MM-dd}) or seconds
+     * ({@code yyyy-MM-ddThh:mm:ssZ}) granularity.
+     *
+     * @param aFrom the start of the range (inclusive)
+     * @param aUntil the end of the range (inclusive; defaults to the current date/time)
+     * @param aCount the number of windows
+     * @return the windows; a single window for the whole range if it can't be split
+     */
+    public static List<Window> split(final String aFrom, final String aUntil, final int aCount) {
+        if (aFrom == null || aCount < 2) {
+            return List.of(new Window(aFrom, aUntil));
+        }
+
+        if (aFrom.length() == DAY_LENGTH) {
+            final LocalDate until = aUntil != null ? LocalDate.parse(aUntil.substring(0, DAY_LENGTH)) : LocalDate.now(ZoneOffset.UTC);
+            return split(LocalDate.parse(aFrom).toEpochDay(), until.toEpochDay(), aCount, d -> LocalDate.ofEpochDay(d).toString());
+        }
+        else {
+            final Instant until = aUntil != null ? Instant.parse(aUntil) : Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            return split(Instant.parse(aFrom).getEpochSecond(), until.getEpochSecond(), aCount, s -> Instant.ofEpochSecond(s).toString());
+        }
+    }
+
+    private static List<Window> split(final long aFrom, final long aUntil, final int aCount, final LongFunction<String> aFormat) {
+        final long units = aUntil - aFrom + 1;
+
+        if (units < 1) {
+            return List.of(new Window(aFormat.apply(aFrom), aFormat.apply(aUntil)));
+        }
+
+        final long count = Math.min(aCount, units);
+        final List<Window> windows = new ArrayList<>();
+
+        for (long i = 0; i < count; ++i) {
+            windows.add(new Window(aFormat.apply(aFrom + units * i / count), aFormat.apply(aFrom + units * (i + 1) / count - 1)));
+        }
+
+        return windows;
+    }
+
+    /**
+     * Harvests the given window.
+     *
+     * @param aWindow the window
+     * @param aToken the resumption token to continue with (may be {@code null})
+     * @param aPageConsumer receives the response of each page
+     * @param aTokenConsumer receives the resumption token for the next page
+     *                       after each page ({@code null} after the last one)
+     * @throws IOException if a page could not be retrieved
+     */
+    public void harvest(final Window aWindow, final String aToken, final Consumer<Reader> aPageConsumer, final Consumer<String> aTokenConsumer) throws IOException {
+        String token = aToken;
+        boolean cached = false;
+
+        do {
+            final URI uri = token != null ? getUri("resumptionToken", token) : getUri(aWindow);
+            final Page page = load(uri, cached);
+            final Response response = parse(page.body());
+
+            if (response.error() != null) {
+                if (NO_RECORDS_MATCH.equals(response.error())) {
+                    LOGGER.info("No records: {}", aWindow);
+                    store(uri, page);
+                    aTokenConsumer.accept(null);
+                    return;
+                }
+
+                throw new IOException("OAI-PMH error: " + response.error() + " [" + aWindow + "]");
+            }
+
+            store(uri, page);
+            cached = page.cached();
+
+            aPageConsumer.accept(new InputStreamReader(new ByteArrayInputStream(page.body()), StandardCharsets.UTF_8));
+
+            token = response.token();
+            aTokenConsumer.accept(token);
+        }
+        while (token != null);
+    }
+
+    private URI getUri(final Window aWindow) {
+        final StringBuilder sb = new StringBuilder("metadataPrefix=").append(encode(mMetadataPrefix));
+
+        append(sb, "set", mSetSpec);
+        append(sb, "from", aWindow.from());
+        append(sb, "until", aWindow.until());
+
+        return getUri(sb.toString());
+    }
+
+    private URI getUri(final String aKey, final String aValue) {
+        return getUri(aKey + "=" + encode(aValue));
+    }
+
+    private URI getUri(final String aQuery) {
+        return URI.create(mUri + (mUri.contains("?") ? "&" : "?") + "verb=ListRecords&" + aQuery);
+    }
+
+    private void append(final StringBuilder aBuilder, final String aKey, final String aValue) {
+        if (aValue != null) {
+            aBuilder.append('&').append(aKey).append('=').append(encode(aValue));
+        }
+    }
+
+    private String encode(final String aValue) {
+        return URLEncoder.encode(aValue, StandardCharsets.UTF_8);
+    }
+
+    private Page load(final URI aUri, final boolean aStale) throws IOException {
+        if (mCache != null && (aStale || !mCache.isExpired(aUri))) {
+            final byte[] body = mCache.get(aUri);
+
+            if (body != null) {
+                return new Page(body, true);
+            }
+        }
+
+        try {
+            return new Page(fetch(aUri, mCache != null ? mCache.getTimeout(TIMEOUT) : TIMEOUT), false);
+        }
+        catch (final IOException e) {
+            final byte[] body = mCache != null ? mCache.get(aUri) : null;
+
+            if (body == null) {
+                throw e;
+            }
+
+            LOGGER.warn("Using expired cached response: {} ({})", aUri, e.getMessage());
+            return new Page(body, true);
+        }
+    }
+
+    private void store(final URI aUri, final Page aPage) {
+        if (mCache != null && !aPage.cached()) {
+            mCache.put(aUri, aPage.body());
+        }
+    }
+
+    // Retries (with delay) while the repository asks for it (cf. OAI-PMH flow control).
+    private byte[] fetch(final URI aUri, final Duration aTimeout) throws IOException {
+        final HttpRequest request = HttpRequest.newBuilder(aUri).timeout(aTimeout).GET().build();
+
+        for (int i = 0; ; ++i) {
+            final HttpResponse<byte[]> response;
+
+            try {
+                response = mClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Harvesting interrupted: " + aUri, e);
+            }
+
+            final int status = response.statusCode();
+
+            if (status == HTTP_OK) {
+                return response.body();
+            }
+            else if (status != HTTP_UNAVAILABLE || i >= MAX_RETRIES) {
+                throw new IOException("Unexpected HTTP status " + status + ": " + aUri);
+            }
+
+            final long seconds = response.headers().firstValue("Retry-After")
+                .map(this::parseSeconds).orElse((long) RETRY_SECONDS);
+
+            LOGGER.warn("Repository unavailable, retrying in {} seconds: {}", seconds, aUri);
+            sleep(seconds);
+        }
+    }
+
+    private long parseSeconds(final String aValue) {
+        try {
+            return Math.min(Math.max(Long.parseLong(aValue.trim()), 1), MAX_RETRY_SECONDS);
+        }
+        catch (final NumberFormatException e) {
+            return RETRY_SECONDS;
+        }
+    }
+
+    private void sleep(final long aSeconds) throws IOException {
+        try {
+            Thread.sleep(Duration.ofSeconds(aSeconds).toMillis());
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Harvesting interrupted", e);
+        }
+    }
+
+    private Response parse(final byte[] aPage) throws IOException {
+        String error = null;
+        String token = null;
+
+        try {
+            final XMLStreamReader reader = mFactory.createXMLStreamReader(new ByteArrayInputStream(aPage));
+
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamReader.START_ELEMENT && NAMESPACE.equals(reader.getNamespaceURI())) {
+                        final String name = reader.getLocalName();
+
+                        if (ERROR_ELEMENT.equals(name)) {
+                            error = reader.getAttributeValue(null, "code");
+                        }
+                        else if (TOKEN_ELEMENT.equals(name)) {
+                            token = reader.getElementText().trim();
+                        }
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException e) {
+            throw new IOException("Invalid OAI-PMH response", e);
+        }
+
+        // An empty resumption token marks the last page.
+        return new Response(error, token == null || token.isEmpty() ? null : token);
+    }
+
+    public record Window(String from, String until) {
+    }
+
+    private record Page(byte[] body, boolean cached) {
+    }
+
+    private record Response(String error, String token) {
+    }
+
+}
@@ -7,13 +7,59 @@ import org.metafacture.framework.Sender;
 import org.metafacture.framework.StreamReceiver;
 import org.metafacture.xml.XmlDecoder;
 
-public class OaiPmhQueue extends AbstractInputQueue {
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Harvests records from an OAI-PMH repository.
+ *
+ * With {@code windows}, the {@code from}-{@code until} range is split into
+ * that many sub-windows, which are harvested by up to {@code workers} threads
+ * at once; their records are passed on in window order. With {@code state},
+ * the resumption token of each window is recorded once the records of the
+ * preceding page have been passed on, so that an interrupted harvest can be
+ * continued; the state file is removed after a successful harvest. With
+ * {@code cache}, responses are stored on disk (see {@link OaiPmhCache}).
+ *
+ * State file format (one entry per line, tab-separated): {@code fingerprint
+ * HASH}, {@code window FROM UNTIL}, {@code completed INDEX},
+ * {@code token INDEX TOKEN}.
+ */
+public class OaiPmhQueue extends AbstractInputQueue { // checkstyle-disable-line ClassDataAbstractionCoupling
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String COMPLETED_KEY = "completed";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String TOKEN_KEY = "token";
+    private static final String WINDOW_KEY = "window";
+
+    private final List<OaiPmhHarvester.Window> mWindows = new ArrayList<>();
+    private final Map<Integer, String> mTokens = new HashMap<>();
+    private final OaiPmhCache mCache;
+    private final Path mStatePath;
+    private final Set<Integer> mCompleted = new HashSet<>();
     private final String mDateFrom;
     private final String mDateUntil;
+    private final String mFingerprint;
     private final String mMetadataPrefix;
     private final String mSetSpec;
     private final String mUri;
+    private final int mWorkers;
 
     public OaiPmhQueue(final Settings aSettings) {
         super(aSettings);
@@ -23,15 +69,71 @@ public class OaiPmhQueue extends AbstractInputQueue {
         mMetadataPrefix = aSettings.get("metadataPrefix", "marcxml");
         mSetSpec = aSettings.get("set");
         mUri = aSettings.get("uri");
+        mWorkers = aSettings.getAsInt("workers", 1);
+
+        final int windows = aSettings.getAsInt("windows", 1);
+        final String statePath = aSettings.get("state");
+
+        mStatePath = statePath != null ? Paths.get(statePath) : null;
+        mCache = aSettings.containsSetting("cache") ? new OaiPmhCache(aSettings.getAsSettings("cache")) : null;
+        mFingerprint = String.join(SEPARATOR, Objects.toString(mUri), mMetadataPrefix,
+                Objects.toString(mSetSpec), Objects.toString(mDateFrom), Objects.toString(mDateUntil), String.valueOf(windows));
+
+        if (!loadState()) {
+            mWindows.addAll(OaiPmhHarvester.split(mDateFrom, mDateUntil, windows));
+        }
     }
 
     @Override
     public int size() {
-        return mUri == null ? 0 : 1;
+        return mUri == null ? 0 : mWindows.size() - mCompleted.size();
+    }
+
+    @Override
+    protected String getStageName() {
+        return "input.OAIPMH";
     }
 
     @Override
     public <T extends StreamReceiver & Sender<StreamReceiver>> LifeCycle process(final StreamReceiver aReceiver, final T aSender) {
+        if (mWindows.size() == 1 && mStatePath == null && mCache == null) {
+            return processWithOpener(aReceiver, aSender);
+        }
+
+        final StreamReceiver receiver = getReceiver(aReceiver, aSender, true);
+
+        final List<RecordQueue> recordQueues = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(mWorkers, 1));
+
+        try {
+            // Windows are harvested in order, so the head window's task is always running.
+            for (int i = 0; i < mWindows.size(); ++i) {
+                if (!mCompleted.contains(i)) {
+                    final RecordQueue recordQueue = new RecordQueue();
+                    recordQueues.add(recordQueue);
+
+                    final int index = i;
+                    executor.execute(() -> harvest(index, recordQueue));
+                }
+            }
+
+            for (final RecordQueue recordQueue : recordQueues) {
+                execute(() -> recordQueue.replay(receiver));
+                recordQueue.discard();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        finishState();
+
+        getLogger().info("Finished processing OAI-PMH URI [windows={}, workers={}]", mWindows.size(), mWorkers);
+
+        return receiver;
+    }
+
+    private <T extends StreamReceiver & Sender<StreamReceiver>> LifeCycle processWithOpener(final StreamReceiver aReceiver, final T aSender) {
         final OaiPmhOpener opener = new OaiPmhOpener();
 
         opener.setDateFrom(mDateFrom);
@@ -39,15 +141,10 @@ public class OaiPmhQueue extends AbstractInputQueue {
         opener.setMetadataPrefix(mMetadataPrefix);
         opener.setSetSpec(mSetSpec);
 
-        Sender<StreamReceiver> result = opener
+        opener
             .setReceiver(new XmlDecoder())
-            .setReceiver(new MarcXmlHandler());
-
-        if (aSender != null) {
-            result = result.setReceiver(aSender);
-        }
-
-        result.setReceiver(aReceiver);
+            .setReceiver(new MarcXmlHandler())
+            .setReceiver(getReceiver(aReceiver, aSender, true));
 
         if (!isEmpty()) {
             process("OAI-PMH URI: " + mUri, opener, mUri);
@@ -58,4 +155,148 @@ public class OaiPmhQueue extends AbstractInputQueue {
         return opener;
     }
 
+    private void harvest(final int aIndex, final RecordQueue aRecordQueue) {
+        final OaiPmhHarvester.Window window = mWindows.get(aIndex);
+
+        final XmlDecoder decoder = new XmlDecoder();
+        decoder
+            .setReceiver(new MarcXmlHandler())
+            .setReceiver(aRecordQueue);
+
+        final String token;
+
+        synchronized (mTokens) {
+            token = mTokens.get(aIndex);
+        }
+
+        try {
+            process("OAI-PMH URI: " + mUri + " " + window + (token != null ? " [resuming]" : ""), () -> {
+                try {
+                    final OaiPmhHarvester harvester = new OaiPmhHarvester(mUri, mMetadataPrefix, mSetSpec);
+                    harvester.setCache(mCache);
+
+                    harvester.harvest(window, token, decoder::process, t -> aRecordQueue.mark(() -> updateState(aIndex, t)));
+                }
+                catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        finally {
+            aRecordQueue.finish();
+        }
+    }
+
+    private boolean loadState() {
+        if (mStatePath == null || !Files.exists(mStatePath)) {
+            return false;
+        }
+
+        final List<String> lines;
+
+        try {
+            lines = Files.readAllLines(mStatePath, StandardCharsets.UTF_8);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (lines.isEmpty() || !(FINGERPRINT_KEY + SEPARATOR + mFingerprint).equals(lines.get(0))) {
+            getLogger().warn("Ignoring OAI-PMH state for different settings: {}", mStatePath);
+            return false;
+        }
+
+        for (final String line : lines.subList(1, lines.size())) {
+            final String[] parts = line.split(SEPARATOR, -1);
+
+            switch (parts[0]) {
+                case WINDOW_KEY    -> mWindows.add(new OaiPmhHarvester.Window(toValue(parts[1]), toValue(parts[2])));
+                case COMPLETED_KEY -> mCompleted.add(Integer.valueOf(parts[1]));
+                case TOKEN_KEY     -> mTokens.put(Integer.valueOf(parts[1]), parts[2]);
+                default            -> throw new LimetransException("Invalid OAI-PMH state: " + mStatePath + ": " + line);
+            }
+        }
+
+        getLogger().info("Resuming OAI-PMH harvest: {} [windows={}, completed={}]", mStatePath, mWindows.size(), mCompleted.size());
+        return true;
+    }
+
+    // Called by the replaying thread once the records of the preceding page have been passed on.
+    private void updateState(final int aIndex, final String aToken) {
+        synchronized (mTokens) {
+            if (aToken != null) {
+                mTokens.put(aIndex, aToken);
+            }
+            else {
+                mTokens.remove(aIndex);
+                mCompleted.add(aIndex);
+            }
+        }
+
+        saveState();
+    }
+
+    private void saveState() {
+        if (mStatePath == null) {
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        appendState(sb, FINGERPRINT_KEY, mFingerprint);
+
+        for (final OaiPmhHarvester.Window window : mWindows) {
+            appendState(sb, WINDOW_KEY, toState(window.from()), toState(window.until()));
+        }
+
+        synchronized (mTokens) {
+            mCompleted.forEach(i -> appendState(sb, COMPLETED_KEY, String.valueOf(i)));
+            mTokens.forEach((k, v) -> appendState(sb, TOKEN_KEY, String.valueOf(k), v));
+        }
+
+        try {
+            final Path tempFile = mStatePath.resolveSibling(mStatePath.getFileName() + ".tmp");
+            Files.writeString(tempFile, sb, StandardCharsets.UTF_8);
+            Files.move(tempFile, mStatePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void finishState() {
+        if (mStatePath == null) {
+            return;
+        }
+
+        if (isFailed()) {
+            getLogger().warn("Keeping OAI-PMH state: {} [completed={}, windows={}]", mStatePath, mCompleted.size(), mWindows.size());
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(mStatePath);
+        }
+        catch (final IOException e) {
+            getLogger().error("Failed to remove OAI-PMH state: " + mStatePath, e);
+        }
+    }
+
+    private void appendState(final StringBuilder aBuilder, final String aKey, final String... aValues) {
+        aBuilder.append(aKey);
+
+        for (final String value : aValues) {
+            aBuilder.append(SEPARATOR).append(value);
+        }
+
+        aBuilder.append('\n');
+    }
+
+    private String toState(final String aValue) {
+        return aValue != null ? aValue : "";
+    }
+
+    private String toValue(final String aState) {
+        return aState.isEmpty() ? null : aState;
+    }
+
 }
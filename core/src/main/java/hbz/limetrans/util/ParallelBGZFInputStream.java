@@ -0,0 +1,243 @@
+package hbz.limetrans.util;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+public class ParallelBGZFInputStream extends InputStream {
+
+    private static final int HEADER_LENGTH = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
+    private static final int FOOTER_LENGTH = BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+
+    // checkstyle-disable-begin MagicNumber
+    private static final byte[] HEADER_PREFIX = new byte[]{
+        31, (byte) 139, 8, 4,  // ID1, ID2, CM, FLG
+        0, 0, 0, 0, 0, 0,      // MTIME, XFL, OS (ignored)
+        6, 0, 66, 67, 2, 0     // XLEN, SI1, SI2, SLEN
+    };
+    private static final int[] HEADER_IGNORE = new int[]{4, 5, 6, 7, 8, 9};
+    private static final int BLOCK_SIZE_OFFSET = 16;
+    // checkstyle-disable-end
+
+    private static final int BYTE_MASK = 0xff;
+    private static final int BYTE_SHIFT = 8;
+
+    private static final int READ_AHEAD_FACTOR = 4;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final Deque<Future<byte[]>> mBlocks = new ArrayDeque<>();
+    private final ExecutorService mExecutor;
+    private final InputStream mInputStream;
+    private final int mReadAhead;
+
+    private byte[] mBlock;
+    private boolean mEndOfInput;
+    private int mPosition;
+
+    /**
+     * Inflates the blocks of the given stream on the given executor, which
+     * may be shared between streams (cf. {@link #newExecutor(int)}).
+     *
+     * @param aInputStream the BGZF compressed stream
+     * @param aExecutor the executor (not shut down when the stream is closed)
+     * @param aWorkers the number of threads of the executor
+     */
+    public ParallelBGZFInputStream(final InputStream aInputStream, final ExecutorService aExecutor, final int aWorkers) {
+        mInputStream = aInputStream;
+        mExecutor = aExecutor;
+        mReadAhead = aWorkers * READ_AHEAD_FACTOR;
+    }
+
+    public static ExecutorService newExecutor(final int aWorkers) {
+        return Executors.newFixedThreadPool(aWorkers, r -> {
+            final Thread thread = new Thread(r, "bgzf-inflate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static boolean isBGZF(final InputStream aInputStream) throws IOException {
+        if (!aInputStream.markSupported()) {
+            throw new IllegalArgumentException("Input stream must support mark/reset");
+        }
+
+        aInputStream.mark(HEADER_LENGTH);
+
+        try {
+            final byte[] header = aInputStream.readNBytes(HEADER_LENGTH);
+            return header.length == HEADER_LENGTH && isHeader(header);
+        }
+        finally {
+            aInputStream.reset();
+        }
+    }
+
+    private static boolean isHeader(final byte[] aHeader) {
+        for (int i = 0, j = 0; i < HEADER_PREFIX.length; ++i) {
+            if (j < HEADER_IGNORE.length && HEADER_IGNORE[j] == i) {
+                ++j;
+            }
+            else if (i == 3 ? (aHeader[i] & HEADER_PREFIX[i]) == 0 : aHeader[i] != HEADER_PREFIX[i]) { // checkstyle-disable-line MagicNumber
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+
+        final int result = mBlock[mPosition] & BYTE_MASK;
+        ++mPosition;
+
+        return result;
+    }
+
+    @Override
+    public int read(final byte[] aBuffer, final int aOffset, final int aLength) throws IOException {
+        if (aLength == 0) {
+            return 0;
+        }
+
+        if (!nextBlock()) {
+            return -1;
+        }
+
+        final int length = Math.min(aLength, mBlock.length - mPosition);
+        System.arraycopy(mBlock, mPosition, aBuffer, aOffset, length);
+        mPosition += length;
+
+        return length;
+    }
+
+    @Override
+    public int available() {
+        return mBlock != null ? mBlock.length - mPosition : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mBlocks.forEach(f -> f.cancel(true));
+            mBlocks.clear();
+        }
+        finally {
+            mInputStream.close();
+        }
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (mBlock == null || mPosition >= mBlock.length) {
+            readAhead();
+
+            final Future<byte[]> future = mBlocks.poll();
+            if (future == null) {
+                return false;
+            }
+
+            try {
+                mBlock = future.get();
+                mPosition = 0;
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("BGZF inflation interrupted", e);
+            }
+            catch (final ExecutionException e) {
+                throw new IOException("BGZF inflation failed", e.getCause());
+            }
+        }
+
+        return true;
+    }
+
+    private void readAhead() throws IOException {
+        while (!mEndOfInput && mBlocks.size() < mReadAhead) {
+            final byte[] block = readBlock();
+
+            if (block != null) {
+                mBlocks.add(mExecutor.submit(() -> inflate(block)));
+            }
+            else {
+                mEndOfInput = true;
+            }
+        }
+    }
+
+    private byte[] readBlock() throws IOException {
+        final byte[] header = mInputStream.readNBytes(HEADER_LENGTH);
+
+        if (header.length == 0) {
+            return null;
+        }
+
+        if (header.length < HEADER_LENGTH || !isHeader(header)) {
+            throw new IOException("Invalid BGZF block header");
+        }
+
+        final int blockSize = getUnsignedShort(header, BLOCK_SIZE_OFFSET) + 1;
+        final byte[] block = new byte[blockSize];
+
+        System.arraycopy(header, 0, block, 0, HEADER_LENGTH);
+
+        if (mInputStream.readNBytes(block, HEADER_LENGTH, blockSize - HEADER_LENGTH) != blockSize - HEADER_LENGTH) {
+            throw new EOFException("Premature end of BGZF block");
+        }
+
+        return block;
+    }
+
+    private static byte[] inflate(final byte[] aBlock) throws DataFormatException, IOException {
+        final int footer = aBlock.length - FOOTER_LENGTH;
+        final byte[] result = new byte[getInt(aBlock, footer + Integer.BYTES)];
+
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(aBlock, HEADER_LENGTH, footer - HEADER_LENGTH);
+
+        int length = 0;
+        while (length < result.length) {
+            final int inflated = inflater.inflate(result, length, result.length - length);
+
+            if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                throw new EOFException("Premature end of BGZF block data");
+            }
+
+            length += inflated;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(result);
+
+        if ((int) crc.getValue() != getInt(aBlock, footer)) {
+            throw new IOException("BGZF block CRC mismatch");
+        }
+
+        return result;
+    }
+
+    private static int getUnsignedShort(final byte[] aBytes, final int aOffset) {
+        return aBytes[aOffset] & BYTE_MASK | (aBytes[aOffset + 1] & BYTE_MASK) << BYTE_SHIFT;
+    }
+
+    private static int getInt(final byte[] aBytes, final int aOffset) {
+        return getUnsignedShort(aBytes, aOffset) | getUnsignedShort(aBytes, aOffset + 2) << 2 * BYTE_SHIFT;
+    }
+
+}
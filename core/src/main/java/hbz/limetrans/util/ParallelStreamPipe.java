@@ -0,0 +1,231 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.metafacture.flowcontrol.StreamBuffer;
+import org.metafacture.framework.StreamPipe;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+import org.metafacture.plumbing.IdentityStreamPipe;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fans records out to a number of worker pipes and merges their output back
+ * into a single stream; the receiver is only ever called from the thread that
+ * feeds this pipe.
+ */
+public class ParallelStreamPipe extends DefaultStreamPipe<StreamReceiver> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int PENDING_FACTOR = 4;
+
+    private final CompletionService<StreamBuffer> mCompletionService;
+    private final Deque<Future<StreamBuffer>> mPending = new ArrayDeque<>();
+    private final ExecutorService mExecutor;
+    private final Queue<Worker> mIdleWorkers = new ConcurrentLinkedQueue<>();
+    private final Queue<Worker> mWorkers = new ConcurrentLinkedQueue<>();
+    private final Supplier<StreamPipe<StreamReceiver>> mSupplier;
+    private final boolean mOrdered;
+    private final int mMaxPending;
+
+    private StreamBuffer mCurrentBuffer;
+    private int mPendingCount;
+
+    public ParallelStreamPipe(final Supplier<StreamPipe<StreamReceiver>> aSupplier, final int aWorkers, final boolean aOrdered) {
+        if (aWorkers < 1) {
+            throw new IllegalArgumentException("Invalid number of workers: " + aWorkers);
+        }
+
+        mSupplier = aSupplier;
+        mOrdered = aOrdered;
+        mMaxPending = aWorkers * PENDING_FACTOR;
+
+        final AtomicInteger counter = new AtomicInteger();
+
+        mExecutor = Executors.newFixedThreadPool(aWorkers, r -> {
+            final Thread thread = new Thread(r, "transformation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mCompletionService = new ExecutorCompletionService<>(mExecutor);
+    }
+
+    public static int getWorkers(final Integer aWorkers) {
+        return aWorkers == null || aWorkers < 1 ? Runtime.getRuntime().availableProcessors() : aWorkers;
+    }
+
+    /**
+     * Waits for all records submitted so far and passes on their output.
+     */
+    public void flush() {
+        drain();
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mCurrentBuffer = new StreamBuffer();
+        mCurrentBuffer.startRecord(aIdentifier);
+    }
+
+    @Override
+    public void endRecord() {
+        final StreamBuffer buffer = mCurrentBuffer;
+        mCurrentBuffer = null;
+
+        buffer.endRecord();
+        submit(() -> transform(buffer));
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        mCurrentBuffer.startEntity(aName);
+    }
+
+    @Override
+    public void endEntity() {
+        mCurrentBuffer.endEntity();
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        mCurrentBuffer.literal(aName, aValue);
+    }
+
+    @Override
+    protected void onResetStream() {
+        drain();
+        mCurrentBuffer = null;
+    }
+
+    @Override
+    protected void onCloseStream() {
+        try {
+            drain();
+
+            // Pipes may emit pending output when closed (e.g. Metamorph's `flushWith="stream"`)
+            mWorkers.forEach(w -> replay(w.close()));
+
+            LOGGER.info("Finished parallel transformation [workers={}, ordered={}]", mWorkers.size(), mOrdered);
+        }
+        finally {
+            mExecutor.shutdownNow();
+
+            mIdleWorkers.clear();
+            mWorkers.clear();
+        }
+    }
+
+    private void submit(final Callable<StreamBuffer> aTask) {
+        if (mOrdered) {
+            mPending.add(mExecutor.submit(aTask));
+        }
+        else {
+            mCompletionService.submit(aTask);
+        }
+
+        ++mPendingCount;
+
+        while (mPendingCount >= mMaxPending) {
+            emitNext();
+        }
+    }
+
+    private void drain() {
+        while (mPendingCount > 0) {
+            emitNext();
+        }
+    }
+
+    private void emitNext() {
+        try {
+            final Future<StreamBuffer> future = mOrdered ? mPending.remove() : mCompletionService.take();
+            --mPendingCount;
+
+            replay(future.get());
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LimetransException("Parallel transformation interrupted", e);
+        }
+        catch (final ExecutionException e) {
+            throw new LimetransException("Parallel transformation failed", e.getCause());
+        }
+    }
+
+    private void replay(final StreamBuffer aBuffer) {
+        aBuffer.setReceiver(getReceiver());
+        aBuffer.replay();
+        aBuffer.clear();
+    }
+
+    private StreamBuffer transform(final StreamBuffer aBuffer) {
+        Worker worker = mIdleWorkers.poll();
+
+        if (worker == null) {
+            worker = new Worker(mSupplier.get());
+            mWorkers.add(worker);
+        }
+
+        final StreamBuffer output;
+
+        try {
+            output = worker.transform(aBuffer);
+        }
+        catch (final RuntimeException e) {
+            // The pipe may have been left in the middle of a record, so it must not be reused.
+            mWorkers.remove(worker);
+            throw e;
+        }
+
+        mIdleWorkers.add(worker);
+        return output;
+    }
+
+    private static final class Worker {
+
+        private final IdentityStreamPipe mOutput = new IdentityStreamPipe();
+        private final StreamPipe<StreamReceiver> mPipe;
+
+        private Worker(final StreamPipe<StreamReceiver> aPipe) {
+            mPipe = aPipe;
+            mPipe.setReceiver(mOutput);
+        }
+
+        private StreamBuffer transform(final StreamBuffer aBuffer) {
+            final StreamBuffer output = new StreamBuffer();
+            mOutput.setReceiver(output);
+
+            aBuffer.setReceiver(mPipe);
+            aBuffer.replay();
+            aBuffer.clear();
+
+            return output;
+        }
+
+        private StreamBuffer close() {
+            final StreamBuffer output = new StreamBuffer();
+            mOutput.setReceiver(output);
+
+            mPipe.closeStream();
+
+            return output;
+        }
+
+    }
+
+}
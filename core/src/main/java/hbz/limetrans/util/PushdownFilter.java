@@ -0,0 +1,57 @@
+package hbz.limetrans.util;
+
+/**
+ * Record filter that can be decided right after decoding, before a record's
+ * events are passed on (cf. {@link PushdownStreamPipe}).
+ *
+ * Only the literals the filter is interested in have to be scanned, so that
+ * a record lacking the fields a positive condition asks for is rejected
+ * without any further processing.
+ */
+public interface PushdownFilter {
+
+    /**
+     * Creates a scanner with its own state, for use by a single decoder chain.
+     *
+     * @return the scanner
+     */
+    Scanner newScanner();
+
+    enum Outcome {
+        PENDING, PASS, DROP
+    }
+
+    interface Scanner {
+
+        /**
+         * Checks whether literals of the given entity may affect the outcome.
+         * Literal names must not contain the entity separator ({@code .}).
+         *
+         * @param aEntity the entity path (entity names joined with {@code .}),
+         *                or {@code null} for literals outside of entities
+         * @return true if the entity's literals have to be scanned
+         */
+        boolean isRelevant(String aEntity);
+
+        void startRecord();
+
+        /**
+         * Scans a literal of a relevant entity.
+         *
+         * @param aEntity the entity path (may be {@code null})
+         * @param aName the literal name
+         * @param aValue the literal value
+         * @return the outcome as far as it is decided by now
+         */
+        Outcome literal(String aEntity, String aName, String aValue);
+
+        /**
+         * Decides on the record once all its relevant literals have been scanned.
+         *
+         * @return {@code PASS} or {@code DROP}
+         */
+        Outcome endRecord();
+
+    }
+
+}
@@ -0,0 +1,172 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies a {@link PushdownFilter} directly after decoding: a record's events
+ * are held back (and its relevant literals scanned) until the outcome is
+ * decided. Passed records are emitted unchanged; rejected ones are reduced to
+ * their start and end events, so that record counts (e.g., for metrics and
+ * checkpoints) stay intact while the actual filter discards them as usual.
+ *
+ * Decoders that are {@link Aware} of the pipe may skip the remainder of a
+ * rejected record altogether (cf. {@link #isRejected()}).
+ */
+public final class PushdownStreamPipe extends DefaultStreamPipe<StreamReceiver> {
+
+    private static final char ENTITY_SEPARATOR = '.';
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final EventBuffer mBuffer = new EventBuffer();
+    private final PushdownFilter.Scanner mScanner;
+    private final UnaryOperator<String> mNormalizer;
+    private final boolean mTopLevelRelevant;
+
+    private PushdownFilter.Outcome mOutcome = PushdownFilter.Outcome.PASS;
+    private String mIdentifier;
+    private String[] mEntities = new String[INITIAL_DEPTH];
+    private boolean[] mRelevant = new boolean[INITIAL_DEPTH];
+    private int mDepth;
+
+    /**
+     * Creates a pipe.
+     *
+     * @param aScanner the scanner
+     * @param aNormalizer the normalization applied to values before the actual
+     *                    filter receives them (may be {@code null})
+     */
+    public PushdownStreamPipe(final PushdownFilter.Scanner aScanner, final UnaryOperator<String> aNormalizer) {
+        mScanner = aScanner;
+        mNormalizer = aNormalizer;
+        mTopLevelRelevant = aScanner.isRelevant(null);
+    }
+
+    /**
+     * Returns whether the current record has been rejected.
+     *
+     * @return true if the rest of the record can be skipped
+     */
+    public boolean isRejected() {
+        return mOutcome == PushdownFilter.Outcome.DROP;
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mScanner.startRecord();
+
+        mIdentifier = aIdentifier;
+        mOutcome = PushdownFilter.Outcome.PENDING;
+        mRelevant[0] = mTopLevelRelevant;
+        mDepth = 0;
+    }
+
+    @Override
+    public void endRecord() {
+        if (mOutcome == PushdownFilter.Outcome.PENDING) {
+            decide(mScanner.endRecord());
+        }
+
+        if (mOutcome == PushdownFilter.Outcome.DROP) {
+            getReceiver().startRecord(mIdentifier);
+        }
+
+        getReceiver().endRecord();
+
+        mIdentifier = null;
+        mOutcome = PushdownFilter.Outcome.PASS;
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        switch (mOutcome) {
+            case PASS:
+                getReceiver().startEntity(aName);
+                break;
+            case PENDING:
+                mBuffer.startEntity(aName);
+
+                if (mDepth + 1 == mEntities.length) {
+                    mEntities = Arrays.copyOf(mEntities, mEntities.length * 2);
+                    mRelevant = Arrays.copyOf(mRelevant, mRelevant.length * 2);
+                }
+
+                final String entity = mDepth == 0 ? aName : mEntities[mDepth] + ENTITY_SEPARATOR + aName;
+
+                mEntities[++mDepth] = entity;
+                mRelevant[mDepth] = mScanner.isRelevant(entity);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endEntity() {
+        switch (mOutcome) {
+            case PASS:
+                getReceiver().endEntity();
+                break;
+            case PENDING:
+                mBuffer.endEntity();
+                mEntities[mDepth--] = null;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        switch (mOutcome) {
+            case PASS:
+                getReceiver().literal(aName, aValue);
+                break;
+            case PENDING:
+                mBuffer.literal(aName, aValue);
+
+                if (mRelevant[mDepth]) {
+                    decide(mScanner.literal(mEntities[mDepth], aName,
+                                mNormalizer != null && aValue != null ? mNormalizer.apply(aValue) : aValue));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        mBuffer.clear();
+        mIdentifier = null;
+        mOutcome = PushdownFilter.Outcome.PASS;
+    }
+
+    private void decide(final PushdownFilter.Outcome aOutcome) {
+        switch (aOutcome) {
+            case PASS:
+                getReceiver().startRecord(mIdentifier);
+                mBuffer.replay(getReceiver());
+                mBuffer.clear();
+                break;
+            case DROP:
+                mBuffer.clear();
+                break;
+            default:
+                break;
+        }
+
+        mOutcome = aOutcome;
+    }
+
+    public interface Aware {
+
+        void setPushdownPipe(PushdownStreamPipe aPipe);
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package hbz.limetrans.util;
+
+import org.metafacture.flowcontrol.StreamBuffer;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-over of complete records from a decoding thread to the thread
+ * that passes them on (cf. {@link FileQueue}, {@link OaiPmhQueue}).
+ *
+ * Markers (see {@link #mark(Runnable)}) are run by the replaying thread once
+ * all records queued before them have been passed on.
+ */
+/*package-private*/ final class RecordQueue extends DefaultStreamReceiver {
+
+    private static final int CAPACITY = 1000;
+
+    private static final Consumer<StreamReceiver> END = r -> { };
+
+    private final BlockingQueue<Consumer<StreamReceiver>> mQueue = new ArrayBlockingQueue<>(CAPACITY);
+
+    private StreamBuffer mBuffer;
+    private boolean mFinished;
+
+    /*package-private*/ RecordQueue() {
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mBuffer = new StreamBuffer();
+        mBuffer.startRecord(aIdentifier);
+    }
+
+    @Override
+    public void endRecord() {
+        final StreamBuffer buffer = mBuffer;
+        mBuffer = null;
+
+        buffer.endRecord();
+        put(r -> {
+            buffer.setReceiver(r);
+            buffer.replay();
+        });
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        mBuffer.startEntity(aName);
+    }
+
+    @Override
+    public void endEntity() {
+        mBuffer.endEntity();
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        mBuffer.literal(aName, aValue);
+    }
+
+    /*package-private*/ void mark(final Runnable aRunnable) {
+        put(r -> aRunnable.run());
+    }
+
+    /*package-private*/ void finish() {
+        put(END);
+    }
+
+    /*package-private*/ void replay(final StreamReceiver aReceiver) {
+        while (!mFinished) {
+            take().accept(aReceiver);
+        }
+    }
+
+    /*package-private*/ void discard() {
+        while (!mFinished) {
+            take();
+        }
+    }
+
+    private void put(final Consumer<StreamReceiver> aEntry) {
+        try {
+            mQueue.put(aEntry);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LimetransException("Decoding interrupted", e);
+        }
+    }
+
+    private Consumer<StreamReceiver> take() {
+        try {
+            final Consumer<StreamReceiver> entry = mQueue.take();
+
+            if (entry == END) {
+                mFinished = true;
+            }
+
+            return entry;
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LimetransException("Decoding interrupted", e);
+        }
+    }
+
+}
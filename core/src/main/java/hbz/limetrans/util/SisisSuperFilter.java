@@ -3,11 +3,36 @@ package hbz.limetrans.util;
 import org.metafacture.flowcontrol.StreamBuffer;
 import org.metafacture.framework.StreamReceiver;
 import org.metafacture.framework.helpers.DefaultStreamPipe;
-
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
+/**
+ * Enriches subordinate records with the titles and identifiers of their
+ * superordinate records.
+ *
+ * Since the linkage can only be resolved once all records have been seen,
+ * records are held back until the end of the stream. By default, they are
+ * buffered on the heap; in spill mode, they are written to a temporary event
+ * file instead and only the linkage maps (and the file offsets) are kept in
+ * memory.
+ */
 public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
 
     private static final String REF_ID_ENTITY = "0004";
@@ -36,6 +61,7 @@ public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
     private static final String SUPER_PREFIX = "(DE-600)";
 
     private final Map<String, StreamBuffer> mEntries = new TreeMap<>();
+    private final Map<String, Long> mOffsets = new TreeMap<>();
 
     private final Map<String, String> mRecIdMap = new HashMap<>();
     private final Map<String, String> mRecTiMap = new HashMap<>();
@@ -47,27 +73,54 @@ public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
     private final Map<String, Map<String, String>> mTiAddendumMap = new HashMap<>();
     private final Map<String, Map<String, String>> mTiMainMap = new HashMap<>();
 
-    private StreamBuffer mCurrentBuffer;
+    private final boolean mSpill;
+
+    private SpillFile mSpillFile;
+    private StreamReceiver mCurrentBuffer;
     private String mCurrentEntity;
     private String mCurrentIdentifier;
 
     public SisisSuperFilter() {
+        this(false);
+    }
+
+    /**
+     * Creates a filter that optionally spills buffered records to disk.
+     *
+     * @param aSpill whether to keep buffered records in a temporary file
+     */
+    public SisisSuperFilter(final boolean aSpill) {
+        mSpill = aSpill;
     }
 
     @Override
     public void startRecord(final String aIdentifier) {
         mCurrentIdentifier = aIdentifier;
 
-        mCurrentBuffer = new StreamBuffer();
-        mCurrentBuffer.setReceiver(getReceiver());
-        mCurrentBuffer.startRecord(aIdentifier);
+        if (mSpill) {
+            if (mSpillFile == null) {
+                mSpillFile = new SpillFile();
+            }
+
+            mOffsets.put(aIdentifier, mSpillFile.getPosition());
+            mCurrentBuffer = mSpillFile;
+        }
+        else {
+            final StreamBuffer buffer = new StreamBuffer();
+            buffer.setReceiver(getReceiver());
+            buffer.startRecord(aIdentifier);
 
-        mEntries.put(aIdentifier, mCurrentBuffer);
+            mEntries.put(aIdentifier, buffer);
+            mCurrentBuffer = buffer;
+        }
     }
 
     @Override
     public void endRecord() {
         // keep records "open"
+        if (mSpillFile != null) {
+            mSpillFile.endRecord();
+        }
     }
 
     @Override
@@ -117,27 +170,35 @@ public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
 
     @Override
     protected void onCloseStream() {
-        mEntries.forEach((k, v) -> {
-            final String refId = mRefIdMap.get(k);
-            if (refId != null && !mSupIdMap.containsKey(k)) {
-                v.replay();
+        if (mSpillFile != null) {
+            mSpillFile.finish();
+            mOffsets.forEach((k, v) -> enrich(k, () -> mSpillFile.replay(k, v, getReceiver())));
+        }
+        else {
+            mEntries.forEach((k, v) -> enrich(k, v::replay));
+        }
 
-                emit(REC_TI_ENTITY, mTiMainMap.get(refId));
-                emit(TI_ADDENDUM_ENTITY, mTiAddendumMap.get(refId));
+        reset();
+    }
 
-                emit(SUP_TI_ENTITY, SUP_TI_LITERAL, mSupTiMap.getOrDefault(k, false) ? null : mRecTiMap.get(refId));
+    private void enrich(final String aIdentifier, final Runnable aReplay) {
+        final String refId = mRefIdMap.get(aIdentifier);
+        if (refId != null && !mSupIdMap.containsKey(aIdentifier)) {
+            aReplay.run();
 
-                final String recId = mRecIdMap.get(refId);
-                if (recId != null) {
-                    emit(SUP_ID_OUT_ENTITY, SUP_ID_OUT_LITERAL, SUPER_PREFIX + recId);
-                    emit(SUPREC_ENTITY, SUPREC_LITERAL, mSupIdMap.get(refId));
-                }
+            emit(REC_TI_ENTITY, mTiMainMap.get(refId));
+            emit(TI_ADDENDUM_ENTITY, mTiAddendumMap.get(refId));
+
+            emit(SUP_TI_ENTITY, SUP_TI_LITERAL, mSupTiMap.getOrDefault(aIdentifier, false) ? null : mRecTiMap.get(refId));
 
-                getReceiver().endRecord();
+            final String recId = mRecIdMap.get(refId);
+            if (recId != null) {
+                emit(SUP_ID_OUT_ENTITY, SUP_ID_OUT_LITERAL, SUPER_PREFIX + recId);
+                emit(SUPREC_ENTITY, SUPREC_LITERAL, mSupIdMap.get(refId));
             }
-        });
 
-        reset();
+            getReceiver().endRecord();
+        }
     }
 
     private void emit(final String aEntity, final Map<String, String> aMap) {
@@ -163,6 +224,12 @@ public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
     private void reset() {
         mEntries.values().forEach(StreamBuffer::clear);
         mEntries.clear();
+        mOffsets.clear();
+
+        if (mSpillFile != null) {
+            mSpillFile.close();
+            mSpillFile = null;
+        }
 
         mRecIdMap.clear();
         mRecTiMap.clear();
@@ -179,4 +246,211 @@ public class SisisSuperFilter extends DefaultStreamPipe<StreamReceiver> {
         mCurrentIdentifier = null;
     }
 
+    /**
+     * Compact event file: one tag byte per event, followed by its
+     * length-prefixed UTF-8 strings. Records are terminated by an end tag;
+     * their identifiers are kept in memory along with their offsets.
+     */
+    private static final class SpillFile extends DefaultStreamReceiver implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private static final int START_ENTITY = 1;
+        private static final int END_ENTITY = 2;
+        private static final int LITERAL = 3;
+        private static final int END_RECORD = 4;
+
+        private static final int LENGTH_BITS = 7;
+        private static final int LENGTH_MASK = 0x7F;
+        private static final int LENGTH_MORE = 0x80;
+
+        private final Path mPath;
+        private final OutputStream mOutput;
+
+        private FileChannel mChannel;
+        private InputStream mInput;
+        private long mInputPosition;
+        private long mPosition;
+
+        private SpillFile() {
+            try {
+                mPath = Files.createTempFile("sisis-super-", ".events");
+                mOutput = new BufferedOutputStream(Files.newOutputStream(mPath), BUFFER_SIZE);
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long getPosition() {
+            return mPosition;
+        }
+
+        @Override
+        public void startEntity(final String aName) {
+            write(START_ENTITY);
+            writeString(aName);
+        }
+
+        @Override
+        public void endEntity() {
+            write(END_ENTITY);
+        }
+
+        @Override
+        public void literal(final String aName, final String aValue) {
+            write(LITERAL);
+            writeString(aName);
+            writeString(aValue);
+        }
+
+        @Override
+        public void endRecord() {
+            write(END_RECORD);
+        }
+
+        private void finish() {
+            try {
+                mOutput.flush();
+                mChannel = FileChannel.open(mPath, StandardOpenOption.READ);
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void replay(final String aIdentifier, final long aOffset, final StreamReceiver aReceiver) {
+            try {
+                seek(aOffset);
+
+                aReceiver.startRecord(aIdentifier);
+
+                while (true) {
+                    switch (read()) {
+                        case START_ENTITY -> aReceiver.startEntity(readString());
+                        case END_ENTITY   -> aReceiver.endEntity();
+                        case LITERAL      -> aReceiver.literal(readString(), readString());
+                        case END_RECORD   -> {
+                            return;
+                        }
+                        default           -> throw new LimetransException("Corrupt spill file: " + mPath);
+                    }
+                }
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                mOutput.close();
+
+                if (mChannel != null) {
+                    mChannel.close();
+                }
+
+                Files.deleteIfExists(mPath);
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Records are usually replayed in file order, so reading just continues (or skips ahead).
+        private void seek(final long aOffset) throws IOException {
+            if (mInput != null && aOffset >= mInputPosition) {
+                mInput.skipNBytes(aOffset - mInputPosition);
+            }
+            else {
+                mInput = new BufferedInputStream(Channels.newInputStream(mChannel.position(aOffset)), BUFFER_SIZE);
+            }
+
+            mInputPosition = aOffset;
+        }
+
+        private void write(final int aByte) {
+            try {
+                mOutput.write(aByte);
+                ++mPosition;
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeString(final String aString) {
+            if (aString == null) {
+                writeLength(0);
+                return;
+            }
+
+            final byte[] bytes = aString.getBytes(StandardCharsets.UTF_8);
+            writeLength(bytes.length + 1);
+
+            try {
+                mOutput.write(bytes);
+                mPosition += bytes.length;
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Variable-length encoding, 7 bits per byte.
+        private void writeLength(final int aLength) {
+            int length = aLength;
+
+            while ((length & ~LENGTH_MASK) != 0) {
+                write(length & LENGTH_MASK | LENGTH_MORE);
+                length >>>= LENGTH_BITS;
+            }
+
+            write(length);
+        }
+
+        private int read() throws IOException {
+            final int b = mInput.read();
+
+            if (b < 0) {
+                throw new EOFException(mPath.toString());
+            }
+
+            ++mInputPosition;
+            return b;
+        }
+
+        private String readString() throws IOException {
+            final int length = readLength();
+
+            if (length == 0) {
+                return null;
+            }
+
+            final byte[] bytes = mInput.readNBytes(length - 1);
+
+            if (bytes.length < length - 1) {
+                throw new EOFException(mPath.toString());
+            }
+
+            mInputPosition += bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readLength() throws IOException {
+            int length = 0;
+
+            for (int shift = 0; ; shift += LENGTH_BITS) {
+                final int b = read();
+                length |= (b & LENGTH_MASK) << shift;
+
+                if ((b & LENGTH_MORE) == 0) {
+                    return length;
+                }
+            }
+        }
+
+    }
+
 }
@@ -7,15 +7,22 @@ import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
 import java.util.stream.Collectors;
 
 public final class SisisSupplement extends AbstractReadOnlyMap<String, String> implements Closeable {
 
+    public static final String DEFAULT_ID_KEY = "0010";
+
     private static final Logger LOGGER = LogManager.getLogger();
 
     private static final String ENCODING = "UTF-8";
@@ -25,26 +32,48 @@ public final class SisisSupplement extends AbstractReadOnlyMap<String, String> i
     private static final String RECORD_START = "0000";
     private static final String RECORD_END = "9999";
 
-    private static final String DEFAULT_ID_KEY = "0010";
+    private static final String ALGORITHM = "SHA-256";
+    private static final String EXTENSION = ".lmdb";
+
+    private static final int HASH_LENGTH = 16;
 
-    private final Map<String, String> mMap = new HashMap<>();
+    private final LMDB mLmdb;
     private final String mIdKey;
     private final String mSourceKey;
 
     public SisisSupplement(final String aPath, final String aSourceKey) {
-        this(aPath, aSourceKey, DEFAULT_ID_KEY);
+        this(aPath, aSourceKey, DEFAULT_ID_KEY, null);
     }
 
     public SisisSupplement(final String aPath, final String aSourceKey, final String aIdKey) {
+        this(aPath, aSourceKey, aIdKey, null);
+    }
+
+    /**
+     * Creates a supplement map backed by an LMDB index which is built on first
+     * load and reused as long as the supplement file (path, mtime and size)
+     * and the keys do not change. Indexes for earlier versions of the file
+     * are deleted once the new one has been built.
+     *
+     * @param aPath the supplement file
+     * @param aSourceKey the field to collect
+     * @param aIdKey the ID field
+     * @param aIndexPath the index directory (defaults to the system's temporary directory)
+     */
+    public SisisSupplement(final String aPath, final String aSourceKey, final String aIdKey, final String aIndexPath) {
         mSourceKey = aSourceKey;
         mIdKey = aIdKey;
 
+        LMDB lmdb = null;
+
         try {
-            load(new File(aPath));
+            lmdb = open(new File(aPath), aIndexPath);
         }
         catch (final IOException e) {
             LOGGER.error("Loading supplement failed: " + aPath + ": " + e.getMessage(), e);
         }
+
+        mLmdb = lmdb;
     }
 
     public static MultiLineDecoder getDecoder() {
@@ -56,7 +85,63 @@ public final class SisisSupplement extends AbstractReadOnlyMap<String, String> i
         return decoder;
     }
 
-    private void load(final File aFile) throws IOException {
+    private LMDB open(final File aFile, final String aIndexPath) throws IOException {
+        if (!aFile.exists()) {
+            throw new IOException("File not found");
+        }
+
+        // <name>.<path and keys>.<mtime and size>.lmdb
+        final String prefix = aFile.getName() + "." + hash(aFile.getAbsolutePath(), mIdKey, mSourceKey) + ".";
+
+        final Path indexFile = Path.of(aIndexPath != null ? aIndexPath : System.getProperty("java.io.tmpdir"),
+                prefix + hash(String.valueOf(aFile.lastModified()), String.valueOf(aFile.length())) + EXTENSION);
+
+        final boolean built = LMDB.buildIfAbsent(indexFile, l -> {
+            LOGGER.info("Building supplement index: {}: {}", aFile, indexFile);
+            load(aFile, l);
+        });
+
+        if (built) {
+            deleteSuperseded(indexFile, prefix);
+        }
+        else {
+            LOGGER.info("Opening supplement index: {}", indexFile);
+        }
+
+        return new LMDB(indexFile.toString());
+    }
+
+    private void deleteSuperseded(final Path aIndexFile, final String aPrefix) {
+        final String name = aIndexFile.getFileName().toString();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(aIndexFile.toAbsolutePath().getParent(), p -> {
+            final String fileName = p.getFileName().toString();
+            return fileName.startsWith(aPrefix) && fileName.endsWith(EXTENSION) && !fileName.equals(name);
+        })) {
+            for (final Path path : stream) {
+                LOGGER.info("Deleting superseded supplement index: {}", path);
+                Files.deleteIfExists(path);
+            }
+        }
+        catch (final IOException e) {
+            LOGGER.warn("Failed to delete superseded supplement indexes: " + aPrefix, e);
+        }
+    }
+
+    private String hash(final String... aValues) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new LimetransException(e);
+        }
+
+        return HexFormat.of().formatHex(digest.digest(String.join("\u0000", aValues).getBytes(StandardCharsets.UTF_8)), 0, HASH_LENGTH / 2);
+    }
+
+    private void load(final File aFile, final LMDB aLmdb) throws IOException {
         final Scanner scanner = new Scanner(aFile, ENCODING);
         scanner.useDelimiter(LINE_DELIMITER);
 
@@ -82,15 +167,15 @@ public final class SisisSupplement extends AbstractReadOnlyMap<String, String> i
 
             if (row.isRecordEnd()) {
                 if (!entry.isEmpty()) {
-                    if (id == null) {
+                    if (id == null || id.isEmpty()) {
                         LOGGER.warn("missing ID {}: {}: {}", location, mIdKey, entry);
                     }
                     else {
-                        if (mMap.containsKey(id)) {
+                        if (aLmdb.get(id) != null) {
                             LOGGER.warn("duplicate ID {}: {}={}", location, mIdKey, id);
                         }
 
-                        mMap.put(id, entry.stream().collect(Collectors.joining(SEPARATOR)));
+                        aLmdb.putKV(id, entry.stream().collect(Collectors.joining(SEPARATOR)));
                     }
 
                     entry.clear();
@@ -114,12 +199,14 @@ public final class SisisSupplement extends AbstractReadOnlyMap<String, String> i
     }
 
     public long count() {
-        return mMap.size();
+        return mLmdb != null ? mLmdb.count() : 0;
     }
 
     @Override
     public void close() {
-        // nothing to do
+        if (mLmdb != null) {
+            mLmdb.close();
+        }
     }
 
     @Override
@@ -129,7 +216,7 @@ public final class SisisSupplement extends AbstractReadOnlyMap<String, String> i
 
     @Override
     public String getOrDefault(final Object aKey, final String aDefault) {
-        return mMap.getOrDefault(aKey, aDefault);
+        return mLmdb != null ? mLmdb.getOrDefault(aKey, aDefault) : aDefault;
     }
 
     public static void main(final String[] aArgs) {
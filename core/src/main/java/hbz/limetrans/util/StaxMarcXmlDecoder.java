@@ -0,0 +1,187 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+// Emits the same events as XmlDecoder + MarcXmlHandler, but pulls them straight from a StAX stream.
+// Records rejected by the pushdown pipe are skipped without reading their remaining fields.
+public final class StaxMarcXmlDecoder extends DefaultObjectPipe<Reader, StreamReceiver> implements PushdownStreamPipe.Aware {
+
+    public static final String NAMESPACE = "http://www.loc.gov/MARC21/slim";
+
+    private static final String CONTROLFIELD = "controlfield";
+    private static final String DATAFIELD = "datafield";
+    private static final String LEADER = "leader";
+    private static final String RECORD = "record";
+    private static final String SUBFIELD = "subfield";
+
+    private static final String CODE = "code";
+    private static final String IND1 = "ind1";
+    private static final String IND2 = "ind2";
+    private static final String TAG = "tag";
+    private static final String TYPE = "type";
+
+    private static final int MAX_NAMES = 10_000;
+
+    private final Map<String, String> mNames = new HashMap<>();
+    private final XMLInputFactory mFactory = XMLInputFactory.newFactory();
+
+    private PushdownStreamPipe mPushdownPipe;
+    private String mNamespace = NAMESPACE;
+
+    public StaxMarcXmlDecoder() {
+        mFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        mFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        mFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public void setNamespace(final String aNamespace) {
+        mNamespace = aNamespace;
+    }
+
+    public String getNamespace() {
+        return mNamespace;
+    }
+
+    @Override
+    public void setPushdownPipe(final PushdownStreamPipe aPipe) {
+        mPushdownPipe = aPipe;
+    }
+
+    @Override
+    public void process(final Reader aReader) {
+        try {
+            final XMLStreamReader reader = mFactory.createXMLStreamReader(aReader);
+
+            try {
+                decode(reader, getReceiver());
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private void decode(final XMLStreamReader aReader, final StreamReceiver aReceiver) throws XMLStreamException {
+        while (aReader.hasNext()) {
+            switch (aReader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    startElement(aReader, aReceiver);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    endElement(aReader, aReceiver);
+                    break;
+                default:
+                    // nothing to do
+                    break;
+            }
+        }
+    }
+
+    private void startElement(final XMLStreamReader aReader, final StreamReceiver aReceiver) throws XMLStreamException {
+        switch (aReader.getLocalName()) {
+            case SUBFIELD:
+                aReceiver.literal(intern(getAttribute(aReader, CODE)), aReader.getElementText().trim());
+                skipIfRejected(aReader, aReceiver, true);
+                break;
+            case DATAFIELD:
+                aReceiver.startEntity(intern(getAttribute(aReader, TAG) +
+                            getAttribute(aReader, IND1) + getAttribute(aReader, IND2)));
+                break;
+            case CONTROLFIELD:
+                aReceiver.literal(intern(getAttribute(aReader, TAG)), aReader.getElementText());
+                skipIfRejected(aReader, aReceiver, false);
+                break;
+            case LEADER:
+                aReceiver.literal(LEADER, aReader.getElementText());
+                skipIfRejected(aReader, aReceiver, false);
+                break;
+            case RECORD:
+                if (isNamespace(aReader)) {
+                    aReceiver.startRecord("");
+                    aReceiver.literal(TYPE, getAttribute(aReader, TYPE));
+                }
+                break;
+            default:
+                // ignore
+                break;
+        }
+    }
+
+    private void endElement(final XMLStreamReader aReader, final StreamReceiver aReceiver) {
+        switch (aReader.getLocalName()) {
+            case DATAFIELD:
+                aReceiver.endEntity();
+                break;
+            case RECORD:
+                if (isNamespace(aReader)) {
+                    aReceiver.endRecord();
+                }
+                break;
+            default:
+                // ignore
+                break;
+        }
+    }
+
+    private void skipIfRejected(final XMLStreamReader aReader, final StreamReceiver aReceiver, final boolean aInEntity) throws XMLStreamException {
+        if (mPushdownPipe == null || !mPushdownPipe.isRejected()) {
+            return;
+        }
+
+        while (aReader.hasNext()) {
+            if (aReader.next() == XMLStreamConstants.END_ELEMENT && RECORD.equals(aReader.getLocalName()) && isNamespace(aReader)) {
+                break;
+            }
+        }
+
+        if (aInEntity) {
+            aReceiver.endEntity();
+        }
+
+        aReceiver.endRecord();
+    }
+
+    private boolean isNamespace(final XMLStreamReader aReader) {
+        if (mNamespace == null) {
+            return true;
+        }
+
+        final String namespace = aReader.getNamespaceURI();
+        return mNamespace.equals(namespace != null ? namespace : "");
+    }
+
+    private String getAttribute(final XMLStreamReader aReader, final String aName) {
+        return aReader.getAttributeValue(null, aName);
+    }
+
+    private String intern(final String aName) {
+        if (aName == null) {
+            return null;
+        }
+
+        final String name = mNames.get(aName);
+        if (name != null) {
+            return name;
+        }
+
+        if (mNames.size() < MAX_NAMES) {
+            mNames.put(aName, aName);
+        }
+
+        return aName;
+    }
+
+}
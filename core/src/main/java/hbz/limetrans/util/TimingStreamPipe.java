@@ -0,0 +1,56 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+
+/**
+ * Passes events through unchanged while counting records for a stage and
+ * timing the calls into it. Time spent in timers further downstream on the
+ * same thread is excluded, so each stage only accounts for its own work.
+ */
+public final class TimingStreamPipe extends DefaultStreamPipe<StreamReceiver> {
+
+    private final Metrics.Stage mStage;
+    private final boolean mTimed;
+
+    /*package-private*/ TimingStreamPipe(final Metrics.Stage aStage, final boolean aTimed) {
+        mStage = aStage;
+        mTimed = aTimed;
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        time(() -> getReceiver().startRecord(aIdentifier));
+    }
+
+    @Override
+    public void endRecord() {
+        mStage.addRecords(1);
+        time(() -> getReceiver().endRecord());
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        time(() -> getReceiver().startEntity(aName));
+    }
+
+    @Override
+    public void endEntity() {
+        time(() -> getReceiver().endEntity());
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        time(() -> getReceiver().literal(aName, aValue));
+    }
+
+    private void time(final Runnable aRunnable) {
+        if (mTimed) {
+            mStage.time(aRunnable);
+        }
+        else {
+            aRunnable.run();
+        }
+    }
+
+}
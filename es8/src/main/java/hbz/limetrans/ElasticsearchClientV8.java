@@ -1,6 +1,7 @@
 package hbz.limetrans;
 
 import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.JsonBytesEncoder;
 import hbz.limetrans.util.LimetransException;
 import hbz.limetrans.util.Settings;
 
@@ -15,6 +16,7 @@ import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.GetResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.elasticsearch.core.bulk.OperationType;
 import co.elastic.clients.elasticsearch.indices.GetAliasRequest;
 import co.elastic.clients.elasticsearch.indices.GetAliasResponse;
@@ -261,11 +263,21 @@ public class ElasticsearchClientV8 extends ElasticsearchClient { // checkstyle-d
         addBulk(b -> b.index(f -> f.index(getIndexName()).id(aId).document(document(aDocument))));
     }
 
+    @Override
+    public void addBulkIndex(final String aId, final JsonBytesEncoder.Document aDocument) {
+        addBulk(b -> b.index(f -> f.index(getIndexName()).id(aId).document(document(aDocument))));
+    }
+
     @Override
     public void addBulkUpdate(final String aId, final String aDocument) {
         addBulk(b -> b.update(f -> f.index(getIndexName()).id(aId).action(a -> a.doc(document(aDocument)))));
     }
 
+    @Override
+    public void addBulkUpdate(final String aId, final JsonBytesEncoder.Document aDocument) {
+        addBulk(b -> b.update(f -> f.index(getIndexName()).id(aId).action(a -> a.doc(document(aDocument)))));
+    }
+
     @Override
     public void addBulkDelete(final String aId) {
         addBulk(b -> b.delete(f -> f.index(getIndexName()).id(aId)));
@@ -277,6 +289,12 @@ public class ElasticsearchClientV8 extends ElasticsearchClient { // checkstyle-d
         }
     }
 
+    private void addBulk(final BulkOperation aOperation) {
+        if (createBulk()) {
+            mBulkIngester.add(aOperation);
+        }
+    }
+
     @Override
     protected void createBulk(final int aBulkActions, final int aBulkRequests) {
         mBulkIngester = BulkIngester.of(b -> b
@@ -323,6 +341,11 @@ public class ElasticsearchClientV8 extends ElasticsearchClient { // checkstyle-d
         return BinaryData.of(aDocument.getBytes(), ContentType.APPLICATION_JSON);
     }
 
+    // Raw JSON bytes, serialized as is.
+    private BinaryData document(final JsonBytesEncoder.Document aDocument) {
+        return BinaryData.of(aDocument.array(), aDocument.offset(), aDocument.length(), ContentType.APPLICATION_JSON);
+    }
+
     private <T> T applyReader(final String aString, final IOFunction<Reader, T> aFunction) throws IOException {
         try (Reader reader = new StringReader(aString)) {
             return aFunction.apply(reader);
@@ -359,9 +382,9 @@ public class ElasticsearchClientV8 extends ElasticsearchClient { // checkstyle-d
 
     private static class ElasticsearchBulkListener implements BulkListener<Void> {
 
-        private final ElasticsearchClient mClient;
+        private final ElasticsearchClientV8 mClient;
 
-        private ElasticsearchBulkListener(final ElasticsearchClient aClient) {
+        private ElasticsearchBulkListener(final ElasticsearchClientV8 aClient) {
             mClient = aClient;
         }
 
@@ -372,26 +395,41 @@ public class ElasticsearchClientV8 extends ElasticsearchClient { // checkstyle-d
 
         @Override
         public void afterBulk(final long aId, final BulkRequest aRequest, final List<Void> aContexts, final BulkResponse aResponse) {
-            mClient.afterBulk(aId, aResponse.took(), (d, s, f) -> aResponse.items().forEach(r -> {
-                if (r.operationType() == OperationType.Delete) {
-                    d.run();
-                }
-                else {
-                    final ErrorCause error = r.error();
+            final List<BulkOperation> operations = aRequest.operations();
+            final List<BulkResponseItem> items = aResponse.items();
+
+            // Response items are in the order of the request's operations.
+            mClient.afterBulk(aId, aResponse.took(), (d, s, f, x) -> {
+                for (int i = 0; i < items.size(); ++i) {
+                    final BulkResponseItem r = items.get(i);
 
-                    if (error != null) {
-                        f.accept(r.id(), error.reason());
+                    if (isRejected(r.status())) {
+                        final BulkOperation operation = operations.get(i);
+                        x.accept(() -> mClient.addBulk(operation));
+                    }
+                    else if (r.operationType() == OperationType.Delete) {
+                        d.run();
                     }
                     else {
-                        s.run();
+                        final ErrorCause error = r.error();
+
+                        if (error != null) {
+                            f.accept(r.id(), error.reason());
+                        }
+                        else {
+                            s.accept(r.id());
+                        }
                     }
                 }
-            }));
+            });
         }
 
         @Override
         public void afterBulk(final long aId, final BulkRequest aRequest, final List<Void> aContexts, final Throwable aThrowable) {
-            mClient.afterBulk(aId, aThrowable);
+            final boolean rejected = aThrowable instanceof final ElasticsearchException e && isRejected(e.status());
+
+            mClient.afterBulk(aId, aThrowable, rejected ? aRequest.operations().stream()
+                    .<Runnable>map(o -> () -> mClient.addBulk(o)).toList() : null);
         }
 
     }
@@ -0,0 +1,109 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.BlackholeReceiver;
+import hbz.limetrans.util.FileQueue;
+import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.RecordCounter;
+import hbz.limetrans.util.Settings;
+
+import org.metafacture.flowcontrol.StreamBuffer;
+import org.metafacture.framework.StreamPipe;
+import org.metafacture.framework.StreamReceiver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs the transformation test fixtures (cf. TransformationTestSuite) through the pipes built by Limetrans;
+// building the pipes (parsing the rules) is measured separately.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class LimetransBenchmark {
+
+    private static final String PROJECT_DIR = Helpers.getProperty("projectDir") + "/main/";
+
+    private static final String FIXTURES_PATH = PROJECT_DIR + "src/test/resources/transformation";
+    private static final String RULES_PATH = PROJECT_DIR + "src/main/resources/transformation/%s%s";
+
+    @Param({"METAFIX", "METAMORPH"})
+    public String mType; // checkstyle-disable-line VisibilityModifier
+
+    private final List<Fixture> mFixtures = new ArrayList<>();
+
+    public LimetransBenchmark() {
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final Limetrans.Type type = Limetrans.Type.valueOf(mType);
+
+        final File[] directories = new File(FIXTURES_PATH).listFiles(File::isDirectory);
+        if (directories == null) {
+            throw new LimetransException("Fixtures not found: " + FIXTURES_PATH);
+        }
+
+        for (final File directory : directories) {
+            final String name = directory.getName();
+
+            // Not all fixtures have rules for both types
+            if (new File(RULES_PATH.formatted(name, type.getExtension())).exists()) {
+                final Settings settings = Settings.settingsBuilder()
+                    .put(new String[]{"input", "queue", "path"}, new File(directory, "input").getPath())
+                    .put(new String[]{"input", "queue", "pattern"}, "*.xml")
+                    .put(new String[]{"output", "json"}, "-")
+                    .put("transformation-rules", RULES_PATH.formatted(name, "%s"))
+                    .build();
+
+                final Limetrans limetrans = new Limetrans(settings, type);
+
+                // Decoded once, so that only the transformation is measured.
+                final StreamBuffer buffer = new StreamBuffer();
+                new FileQueue(settings.getAsSettings("input").getAsSettings("queue")).process(buffer);
+
+                mFixtures.add(new Fixture(limetrans, limetrans.newStreamPipe(null), buffer));
+            }
+        }
+
+        if (mFixtures.isEmpty()) {
+            throw new LimetransException("No fixtures found for " + type + ": " + FIXTURES_PATH);
+        }
+    }
+
+    @Benchmark
+    public void process(final Blackhole aBlackhole, final RecordCounter aCounter) {
+        for (final Fixture fixture : mFixtures) {
+            final BlackholeReceiver receiver = new BlackholeReceiver(aBlackhole);
+            fixture.pipe().setReceiver(receiver);
+
+            fixture.buffer().setReceiver(fixture.pipe());
+            fixture.buffer().replay();
+
+            aCounter.add(receiver.getRecords());
+        }
+    }
+
+    @Benchmark
+    public void newStreamPipe(final Blackhole aBlackhole) {
+        for (final Fixture fixture : mFixtures) {
+            aBlackhole.consume(fixture.limetrans().newStreamPipe(null));
+        }
+    }
+
+    private record Fixture(Limetrans limetrans, StreamPipe<StreamReceiver> pipe, StreamBuffer buffer) {
+    }
+
+}
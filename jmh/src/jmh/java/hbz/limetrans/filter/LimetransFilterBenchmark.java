@@ -0,0 +1,75 @@
+package hbz.limetrans.filter;
+
+import hbz.limetrans.util.BlackholeReceiver;
+import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.RecordCounter;
+import hbz.limetrans.util.StaxMarcXmlDecoder;
+
+import org.metafacture.flowcontrol.StreamBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class LimetransFilterBenchmark {
+
+    private static final String INPUT_PATH = Helpers.getProperty("projectDir") +
+        "/main/src/test/resources/transformation/DE-2524/input/sample-records.xml";
+
+    private final StreamBuffer mBuffer = new StreamBuffer();
+
+    private LimetransFilter mLimetransFilter;
+    private CompiledFilter mFilter;
+
+    public LimetransFilterBenchmark() {
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        // Similar to the Alma member filter (cf. Limetrans.initializeAlma)
+        mLimetransFilter = LimetransFilter.all()
+            .add(LimetransFilter.none()
+                    .add(LimetransFilter.any()
+                        .add("DEL??.a=Y", "leader=~^.{5}d")))
+            .add(LimetransFilter.any()
+                    .add("@001", "245??.a=~(?i)history", "~Roman"));
+
+        mFilter = mLimetransFilter.toFilter();
+
+        final StaxMarcXmlDecoder decoder = new StaxMarcXmlDecoder();
+        decoder.setReceiver(mBuffer);
+
+        try (Reader reader = new FileReader(INPUT_PATH)) {
+            decoder.process(reader);
+        }
+    }
+
+    @Benchmark
+    public CompiledFilter toFilter() {
+        return mLimetransFilter.toFilter();
+    }
+
+    @Benchmark
+    public void filter(final Blackhole aBlackhole, final RecordCounter aCounter) {
+        final BlackholeReceiver receiver = new BlackholeReceiver(aBlackhole);
+        mFilter.setReceiver(receiver);
+
+        mBuffer.setReceiver(mFilter);
+        mBuffer.replay();
+
+        aCounter.add(receiver.getRecords());
+    }
+
+}
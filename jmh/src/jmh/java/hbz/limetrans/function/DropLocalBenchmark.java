@@ -0,0 +1,82 @@
+package hbz.limetrans.function;
+
+import org.metafacture.metafix.Metafix;
+import org.metafacture.metafix.Record;
+import org.metafacture.metafix.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class DropLocalBenchmark {
+
+    private static final String MEMBER = "49HBZ_ULB";
+    private static final String OTHER_MEMBER = "49HBZ_UBK";
+
+    private static final int FIELDS = 20;
+    private static final int VALUES = 5;
+
+    private final DropLocal mFunction = new DropLocal();
+
+    private Metafix mMetafix;
+
+    public DropLocalBenchmark() {
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        mMetafix = new Metafix(Map.of("member", MEMBER));
+    }
+
+    // The function modifies the record in place, so building it is part of each operation (cf. `buildRecord`).
+    @Benchmark
+    public Record apply() {
+        final Record record = newRecord();
+        mFunction.apply(mMetafix, record, Collections.emptyList(), Collections.emptyMap());
+        return record;
+    }
+
+    @Benchmark
+    public Record buildRecord() {
+        return newRecord();
+    }
+
+    private static Record newRecord() {
+        final Record record = new Record();
+
+        for (int i = 0; i < FIELDS; ++i) {
+            final int field = i;
+
+            record.add("9%02d  ".formatted(field), Value.newArray(a -> {
+                for (int j = 0; j < VALUES; ++j) {
+                    a.add(newField(field, j));
+                }
+            }));
+        }
+
+        return record;
+    }
+
+    private static Value newField(final int aField, final int aValue) {
+        final List<String> local = List.of("LOCAL", "L:" + aValue, "l:" + aValue, "GLOBAL");
+
+        return Value.newHash(h -> {
+            h.put("a", new Value("Value " + aField + "/" + aValue));
+            h.put("9", new Value(local.get((aField + aValue) % local.size())));
+            h.put("M", new Value(aValue % 2 == 0 ? MEMBER : OTHER_MEMBER));
+        });
+    }
+
+}
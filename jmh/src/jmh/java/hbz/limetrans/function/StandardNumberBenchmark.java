@@ -0,0 +1,61 @@
+package hbz.limetrans.function;
+
+import org.metafacture.metafix.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class StandardNumberBenchmark {
+
+    private static final Map<StandardNumber.Type, String[]> VALUES = Map.of(
+            StandardNumber.Type.ISBN, new String[]{"3-86680-192-0", "978-3-86680-192-9", "9783866801929 (Pb.)", "invalid"},
+            StandardNumber.Type.ISSN, new String[]{"0028-0836", "00280836", "1476-4687 (Online)", "invalid"},
+            StandardNumber.Type.ZDB, new String[]{"2069391-7", "20693917", "(DE-600)1234-5", "invalid"}
+    );
+
+    // Generated benchmark code lives in another package and can't access StandardNumber.Type.
+    @Param({"ISBN", "ISSN", "ZDB"})
+    public String mType; // checkstyle-disable-line VisibilityModifier
+
+    private StandardNumber.Type mNumberType;
+    private String[] mValues;
+    private int mIndex;
+
+    public StandardNumberBenchmark() {
+    }
+
+    @Setup
+    public void setup() {
+        mNumberType = StandardNumber.Type.valueOf(mType);
+        mValues = VALUES.get(mNumberType);
+    }
+
+    @Benchmark
+    public String normalize() {
+        return mNumberType.normalize(nextValue(), null);
+    }
+
+    @Benchmark
+    public Value.Hash normalizeWithVariants() {
+        final Value.Hash hash = Value.newHash().asHash();
+        mNumberType.normalize(nextValue(), hash);
+        return hash;
+    }
+
+    private String nextValue() {
+        mIndex = (mIndex + 1) % mValues.length;
+        return mValues[mIndex];
+    }
+
+}
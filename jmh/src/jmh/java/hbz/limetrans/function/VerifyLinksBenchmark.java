@@ -0,0 +1,137 @@
+package hbz.limetrans.function;
+
+import org.metafacture.metafix.Metafix;
+import org.metafacture.metafix.Record;
+import org.metafacture.metafix.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class VerifyLinksBenchmark {
+
+    private static final String ID_FORMAT = "(DE-605)HT%09d";
+    private static final String ISBN_FORMAT = "978386680%04d";
+    private static final String ISSN_FORMAT = "0028%04d";
+
+    private static final List<String> ENTRIES = List.of(
+            "HostItemEntry[]",
+            "OtherEditionEntry[]",
+            "PrecedingEntry[]",
+            "SucceedingEntry[]"
+    );
+
+    private static final int LINKS_PER_ENTRY = 3;
+
+    @Param({"100000", "1000000"})
+    public int mSetSize; // checkstyle-disable-line VisibilityModifier
+
+    private final VerifyLinks mFunction = new VerifyLinks();
+
+    private Metafix mMetafix;
+    private Path mDirectory;
+    private int mIndex;
+
+    public VerifyLinksBenchmark() {
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("verify-links");
+        final String isilPath = mDirectory.resolve("DE-605").toString();
+
+        // Every other value is contained in the set
+        writeSet(isilPath, "id", i -> ID_FORMAT.formatted(i * 2));
+        writeSet(isilPath, "isbn", i -> ISBN_FORMAT.formatted(i * 2));
+        writeSet(isilPath, "issn", i -> ISSN_FORMAT.formatted(i * 2));
+        writeSet(isilPath, "superid", i -> ID_FORMAT.formatted(i * 2));
+
+        VerifyLinks.setup(Map.of("isil-path", isilPath));
+
+        mMetafix = new Metafix();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        VerifyLinks.reset();
+
+        try (Stream<Path> paths = Files.list(mDirectory)) {
+            paths.map(Path::toFile).forEach(File::delete);
+        }
+
+        Files.delete(mDirectory);
+    }
+
+    // The function modifies the record in place, so building it is part of each operation.
+    @Benchmark
+    public Record apply() {
+        final Record record = newRecord(mIndex);
+        mIndex = (mIndex + 1) % mSetSize;
+
+        mFunction.apply(mMetafix, record, Collections.emptyList(), Collections.emptyMap());
+        return record;
+    }
+
+    private Record newRecord(final int aIndex) {
+        final Record record = new Record();
+
+        record.add("RecordIdentifier", Value.newHash(h ->
+                    h.put("identifierForTheRecord", new Value(ID_FORMAT.formatted(aIndex)))));
+
+        record.add("xbib[]", Value.newArray(a -> a.add(Value.newHash(h ->
+                            h.put("uid", new Value(ID_FORMAT.formatted(aIndex + 1)))))));
+
+        ENTRIES.forEach(e -> record.add(e, Value.newArray(a -> {
+            for (int i = 0; i < LINKS_PER_ENTRY; ++i) {
+                final int link = aIndex + i;
+
+                a.add(Value.newHash(h -> {
+                    h.put("identifierForLinkingEntry[]", Value.newArray(l -> l.add(new Value(ID_FORMAT.formatted(link)))));
+                    h.put("preferredISBN", new Value(ISBN_FORMAT.formatted(link % mSetSize)));
+                    h.put("preferredISSN", new Value(ISSN_FORMAT.formatted(link % mSetSize)));
+                }));
+            }
+        })));
+
+        return record;
+    }
+
+    private void writeSet(final String aIsilPath, final String aKey, final IntFunction<String> aFunction) throws IOException {
+        try (
+            OutputStream stream = new FileOutputStream(aIsilPath + "." + aKey + ".bgzf");
+            OutputStream compressor = new GZIPOutputStream(stream);
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(compressor, StandardCharsets.UTF_8))
+        ) {
+            for (int i = 0; i < mSetSize; ++i) {
+                writer.println(aFunction.apply(i));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package hbz.limetrans.util;
+
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Consumes all events so the JIT can't eliminate the work that produced them.
+public class BlackholeReceiver extends DefaultStreamReceiver {
+
+    private final Blackhole mBlackhole;
+
+    private long mRecords;
+
+    public BlackholeReceiver(final Blackhole aBlackhole) {
+        mBlackhole = aBlackhole;
+    }
+
+    public long getRecords() {
+        return mRecords;
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mBlackhole.consume(aIdentifier);
+    }
+
+    @Override
+    public void endRecord() {
+        ++mRecords;
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        mBlackhole.consume(aName);
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        mBlackhole.consume(aName);
+        mBlackhole.consume(aValue);
+    }
+
+    @Override
+    protected void onResetStream() {
+        mRecords = 0;
+    }
+
+}
@@ -0,0 +1,91 @@
+package hbz.limetrans.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class LMDBBenchmark {
+
+    private static final String KEY_FORMAT = "99%07d";
+    private static final String VALUE_FORMAT = "Value for key %d\u001FSubvalue %d";
+
+    @Param({"10000", "1000000"})
+    public int mEntries; // checkstyle-disable-line VisibilityModifier
+
+    private File mFile;
+    private LMDB mLmdb;
+    private String[] mKeys;
+
+    public LMDBBenchmark() {
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mFile = Files.createTempFile("benchmark", ".lmdb").toFile();
+        mFile.delete(); // writable only if it doesn't exist yet
+
+        try (LMDB lmdb = new LMDB(mFile.getPath())) {
+            for (int i = 0; i < mEntries; ++i) {
+                lmdb.putKV(KEY_FORMAT.formatted(i), VALUE_FORMAT.formatted(i, i));
+            }
+        }
+
+        mLmdb = new LMDB(mFile.getPath());
+
+        // Every other key is missing
+        mKeys = new String[mEntries];
+        for (int i = 0; i < mEntries; ++i) {
+            mKeys[i] = KEY_FORMAT.formatted(i * 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mLmdb.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public String get(final Cursor aCursor) {
+        return mLmdb.get(mKeys[aCursor.next(mKeys.length)]);
+    }
+
+    // Shares one read-only instance across all threads; compare with `-t 1,2,4,...` for scaling.
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getConcurrently(final Cursor aCursor) {
+        return mLmdb.get(mKeys[aCursor.next(mKeys.length)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int mIndex;
+
+        public Cursor() {
+        }
+
+        private int next(final int aLength) {
+            mIndex = (mIndex + 1) % aLength;
+            return mIndex;
+        }
+
+    }
+
+}
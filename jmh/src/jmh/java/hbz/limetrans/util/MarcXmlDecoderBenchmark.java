@@ -0,0 +1,64 @@
+package hbz.limetrans.util;
+
+import org.metafacture.biblio.marc21.MarcXmlHandler;
+import org.metafacture.xml.XmlDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+// Compares the MARCXML_STAX processor with the MARCXML processor's decoder chain.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class MarcXmlDecoderBenchmark {
+
+    private static final String INPUT_PATH = Helpers.getProperty("projectDir") + "/main/src/test/resources/%s";
+
+    @Param({"transformation/DE-2524/input/sample-records.xml", "limetrans/input/unicode-normalization-composed.xml"})
+    public String mInput; // checkstyle-disable-line VisibilityModifier
+
+    private String mXml;
+
+    public MarcXmlDecoderBenchmark() {
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        mXml = Helpers.slurpFile(INPUT_PATH.formatted(mInput));
+    }
+
+    @Benchmark
+    public void sax(final Blackhole aBlackhole, final RecordCounter aCounter) {
+        final BlackholeReceiver receiver = new BlackholeReceiver(aBlackhole);
+
+        final XmlDecoder decoder = new XmlDecoder();
+        decoder
+            .setReceiver(new MarcXmlHandler())
+            .setReceiver(receiver);
+
+        decoder.process(new StringReader(mXml));
+        aCounter.add(receiver.getRecords());
+    }
+
+    @Benchmark
+    public void stax(final Blackhole aBlackhole, final RecordCounter aCounter) {
+        final BlackholeReceiver receiver = new BlackholeReceiver(aBlackhole);
+
+        final StaxMarcXmlDecoder decoder = new StaxMarcXmlDecoder();
+        decoder.setReceiver(receiver);
+
+        decoder.process(new StringReader(mXml));
+        aCounter.add(receiver.getRecords());
+    }
+
+}
@@ -0,0 +1,66 @@
+package hbz.limetrans.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class MultiLineDecoderBenchmark {
+
+    private static final String LINE_FORMAT = "%04d.%c:Value %d of field %d\n";
+
+    private static final int SUBFIELDS = 3;
+
+    @Param({"10", "100"})
+    public int mFields; // checkstyle-disable-line VisibilityModifier
+
+    private final MultiLineDecoder mDecoder = SisisSupplement.getDecoder();
+
+    private String mRecord;
+    private String[] mLines;
+
+    public MultiLineDecoderBenchmark() {
+    }
+
+    @Setup
+    public void setup() {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(mDecoder.getRecordStart()).append(":1\n");
+        sb.append("0010:HT000286865\n");
+
+        for (int i = 1; i <= mFields; ++i) {
+            for (int j = 0; j < SUBFIELDS; ++j) {
+                sb.append(LINE_FORMAT.formatted(i * 10, (char) ('a' + j), j, i)); // checkstyle-disable-line MagicNumber
+            }
+        }
+
+        sb.append(mDecoder.getRecordEnd()).append(":\n");
+
+        mRecord = sb.toString();
+        mLines = mRecord.split("\n");
+    }
+
+    @Benchmark
+    public void parseRecord(final Blackhole aBlackhole) {
+        mDecoder.parseRecord(mRecord, new BlackholeReceiver(aBlackhole));
+    }
+
+    @Benchmark
+    public void parseRow(final Blackhole aBlackhole) {
+        for (final String line : mLines) {
+            aBlackhole.consume(mDecoder.parseRow(line));
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package hbz.limetrans.util;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Reports records/sec next to operations/sec.
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class RecordCounter {
+
+    private long mRecords;
+
+    public RecordCounter() {
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        mRecords = 0;
+    }
+
+    public long records() {
+        return mRecords;
+    }
+
+    public void add(final long aRecords) {
+        mRecords += aRecords;
+    }
+
+}
@@ -1,32 +1,50 @@
 package hbz.limetrans;
 
+import hbz.limetrans.util.FingerprintStore;
+import hbz.limetrans.util.JsonBytesEncoder;
 import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.Metrics;
 import hbz.limetrans.util.Settings;
 
 import org.metafacture.framework.annotations.Description;
 import org.metafacture.framework.helpers.DefaultObjectReceiver;
 import org.metafacture.framework.helpers.DefaultStreamReceiver;
-import org.metafacture.json.JsonEncoder;
 
 @Description("Indexes an object into Elasticsearch")
 public final class ElasticsearchIndexer extends DefaultStreamReceiver {
 
-    private final ElasticsearchClient mClient;
-    private final JsonEncoder mJsonEncoder = new JsonEncoder();
+    private final BulkOutput mClient;
+    private final JsonBytesEncoder mJsonEncoder = new JsonBytesEncoder();
 
+    private FingerprintStore mFingerprints;
     private String mDeletionLiteral;
     private String mId;
     private boolean mIsDeletion;
     private int mAutoId;
 
-    public ElasticsearchIndexer(final ElasticsearchClient aClient, final String aBulkAction) {
+    public ElasticsearchIndexer(final BulkOutput aClient, final String aBulkAction) {
         mClient = aClient;
         mJsonEncoder.setReceiver(newBulkReceiver(aBulkAction));
     }
 
     public ElasticsearchIndexer(final Settings aSettings) {
-        this(ElasticsearchClient.newClient(aSettings), aSettings.get("bulkAction"));
+        this(ElasticsearchClient.newClient(aSettings), aSettings);
+    }
+
+    public ElasticsearchIndexer(final BulkOutput aClient, final Settings aSettings) {
+        this(aClient, aSettings.get("bulkAction"));
         mDeletionLiteral = aSettings.get("deletionLiteral");
+
+        final String fingerprints = aSettings.get("fingerprints");
+        if (fingerprints != null) {
+            // Only incremental runs may skip documents; any other run starts a fresh store.
+            setFingerprints(new FingerprintStore(fingerprints, !aSettings.getAsBoolean("update", false)));
+        }
+    }
+
+    public void setFingerprints(final FingerprintStore aFingerprints) {
+        mFingerprints = aFingerprints;
+        mClient.setAcknowledgedListener(aFingerprints != null ? aFingerprints::acknowledge : null);
     }
 
     public void setDeletionLiteral(final String aDeletionLiteral) {
@@ -37,10 +55,22 @@ public final class ElasticsearchIndexer extends DefaultStreamReceiver {
         return mDeletionLiteral;
     }
 
+    public void setMetrics(final Metrics aMetrics) {
+        mClient.setMetrics(aMetrics);
+    }
+
     public void flush() {
         mClient.flush();
     }
 
+    public boolean sync() {
+        return mClient.sync();
+    }
+
+    public boolean isFailed() {
+        return mClient.isFailed();
+    }
+
     @Override
     public void startRecord(final String id) {
         mId = id.isEmpty() ? String.valueOf(++mAutoId) : id;
@@ -74,6 +104,11 @@ public final class ElasticsearchIndexer extends DefaultStreamReceiver {
     public void closeStream() {
         mJsonEncoder.closeStream();
         mClient.close(true);
+
+        if (mFingerprints != null) {
+            // Failed bulk requests are resent next time since they were never acknowledged.
+            mFingerprints.close();
+        }
     }
 
     @Override
@@ -85,8 +120,20 @@ public final class ElasticsearchIndexer extends DefaultStreamReceiver {
         mJsonEncoder.literal(name, value);
     }
 
-    private DefaultObjectReceiver<String> newBulkReceiver(final String aBulkAction) {
-        final DefaultObjectReceiver<String> receiver;
+    private boolean isChanged(final JsonBytesEncoder.Document aJson) {
+        return mFingerprints == null || mFingerprints.update(mId, aJson.array(), aJson.offset(), aJson.length());
+    }
+
+    private void addBulkDelete() {
+        mClient.addBulkDelete(mId);
+
+        if (mFingerprints != null) {
+            mFingerprints.remove(mId);
+        }
+    }
+
+    private DefaultObjectReceiver<JsonBytesEncoder.Document> newBulkReceiver(final String aBulkAction) {
+        final DefaultObjectReceiver<JsonBytesEncoder.Document> receiver;
 
         if (aBulkAction == null) {
             receiver = new DefaultBulkReceiver();
@@ -110,55 +157,59 @@ public final class ElasticsearchIndexer extends DefaultStreamReceiver {
         return receiver;
     }
 
-    public class DefaultBulkReceiver extends DefaultObjectReceiver<String> {
+    public class DefaultBulkReceiver extends DefaultObjectReceiver<JsonBytesEncoder.Document> {
 
         public DefaultBulkReceiver() {
         }
 
         @Override
-        public void process(final String json) {
+        public void process(final JsonBytesEncoder.Document json) {
             if (mIsDeletion) {
-                mClient.addBulkDelete(mId);
+                addBulkDelete();
             }
-            else {
+            else if (isChanged(json)) {
                 mClient.addBulkIndex(mId, json);
             }
         }
 
     }
 
-    public class IndexBulkReceiver extends DefaultObjectReceiver<String> {
+    public class IndexBulkReceiver extends DefaultObjectReceiver<JsonBytesEncoder.Document> {
 
         public IndexBulkReceiver() {
         }
 
         @Override
-        public void process(final String json) {
-            mClient.addBulkIndex(mId, json);
+        public void process(final JsonBytesEncoder.Document json) {
+            if (isChanged(json)) {
+                mClient.addBulkIndex(mId, json);
+            }
         }
 
     }
 
-    public class UpdateBulkReceiver extends DefaultObjectReceiver<String> {
+    public class UpdateBulkReceiver extends DefaultObjectReceiver<JsonBytesEncoder.Document> {
 
         public UpdateBulkReceiver() {
         }
 
         @Override
-        public void process(final String json) {
-            mClient.addBulkUpdate(mId, json);
+        public void process(final JsonBytesEncoder.Document json) {
+            if (isChanged(json)) {
+                mClient.addBulkUpdate(mId, json);
+            }
         }
 
     }
 
-    public class DeleteBulkReceiver extends DefaultObjectReceiver<String> {
+    public class DeleteBulkReceiver extends DefaultObjectReceiver<JsonBytesEncoder.Document> {
 
         public DeleteBulkReceiver() {
         }
 
         @Override
-        public void process(final String json) {
-            mClient.addBulkDelete(mId);
+        public void process(final JsonBytesEncoder.Document json) {
+            addBulkDelete();
         }
 
     }
@@ -1,14 +1,19 @@
 package hbz.limetrans;
 
+import hbz.limetrans.filter.CompiledFilter;
 import hbz.limetrans.filter.LimetransFilter;
 import hbz.limetrans.function.VerifyLinks;
 import hbz.limetrans.util.AbstractInputQueue;
+import hbz.limetrans.util.Checkpoint;
 import hbz.limetrans.util.FileQueue;
 import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.Metrics;
 import hbz.limetrans.util.OaiPmhQueue;
+import hbz.limetrans.util.ParallelStreamPipe;
 import hbz.limetrans.util.RepeatedFieldsLogger;
 import hbz.limetrans.util.Settings;
 import hbz.limetrans.util.SisisSupplement;
+import hbz.limetrans.util.TimingStreamPipe;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,13 +26,13 @@ import org.metafacture.io.ObjectWriter;
 import org.metafacture.json.JsonEncoder;
 import org.metafacture.mangling.RecordIdChanger;
 import org.metafacture.metafix.Metafix;
-import org.metafacture.metamorph.Filter;
 import org.metafacture.metamorph.Metamorph;
 import org.metafacture.metamorph.api.Maps;
 import org.metafacture.metamorph.maps.FileMap;
 import org.metafacture.plumbing.StreamTee;
 import org.metafacture.statistics.Counter;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -41,6 +46,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -154,6 +161,8 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
 
     private static final boolean METAFIX_IS_DEFAULT = false;
 
+    private static final String CHECKPOINT_KEY = "checkpoint";
+
     public enum Type {
 
         METAFIX(".fix", METAFIX_IS_DEFAULT),
@@ -188,17 +197,22 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
 
     }
 
+    private final Checkpoint mCheckpoint;
     private final LimetransFilter mFilter;
     private final List<AbstractInputQueue> mInputQueues = new ArrayList<>();
     private final Map<String, Map<String, String>> mMaps = new HashMap<>();
     private final Map<String, String> mVars = new HashMap<>();
+    private final Settings mBulkSettings;
     private final Settings mElasticsearchSettings;
+    private final Settings mMetricsSettings;
     private final String mFormetaPath;
     private final String mJsonPath;
     private final String mRulesPath;
     private final Type mType;
+    private final boolean mOrdered;
     private final boolean mPostprocess;
     private final boolean mPrettyPrinting;
+    private final int mWorkers;
 
     public Limetrans(final Settings aSettings) throws IOException {
         this(aSettings, Helpers.getEnumProperty("type", aSettings.get("type"),
@@ -219,13 +233,20 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
 
         mElasticsearchSettings = outputSettings.containsSetting("elasticsearch") ?
             outputSettings.getAsSettings("elasticsearch") : null;
+        mBulkSettings = outputSettings.containsSetting("bulk") ?
+            outputSettings.getAsSettings("bulk") : null;
         mFormetaPath = pathForType(outputSettings.get("formeta"));
         mJsonPath = pathForType(outputSettings.get("json"));
 
-        if (mFormetaPath == null && mJsonPath == null && mElasticsearchSettings == null) {
+        if (mFormetaPath == null && mJsonPath == null && mElasticsearchSettings == null && mBulkSettings == null) {
             throw new IllegalArgumentException("Could not process Limetrans: no output specified.");
         }
 
+        if (mBulkSettings != null && mBulkSettings.containsSetting("fingerprints")) {
+            // Exported documents aren't acknowledged (cf. BulkExporter), so there would be nothing to compare against.
+            throw new IllegalArgumentException("Could not process Limetrans: fingerprints require Elasticsearch output.");
+        }
+
         final String defaultRulesPath;
 
         if (aSettings.containsSetting("alma")) {
@@ -244,7 +265,32 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
 
         mPostprocess = aSettings.getAsBoolean("postprocess", false);
 
+        final Settings parallelSettings = aSettings.getAsSettings("parallel");
+        mWorkers = parallelSettings.containsSetting("workers") ?
+            ParallelStreamPipe.getWorkers(parallelSettings.getAsInt("workers", null)) : 1;
+        mOrdered = parallelSettings.getAsBoolean("ordered", true);
+
+        mMetricsSettings = aSettings.containsSetting("metrics") ?
+            aSettings.getAsSettings("metrics") : null;
+
         mRulesPath = Helpers.getPath(getClass(), pathForType(aSettings.get("transformation-rules", defaultRulesPath)));
+
+        if (aSettings.containsSetting(CHECKPOINT_KEY)) {
+            if (mElasticsearchSettings == null || mFormetaPath != null || mJsonPath != null || mBulkSettings != null) {
+                throw new IllegalArgumentException("Could not process Limetrans: checkpoints require Elasticsearch as the only output.");
+            }
+
+            mCheckpoint = new Checkpoint(aSettings.getAsSettings(CHECKPOINT_KEY),
+                    ElasticsearchClient.getIndexSettings(mElasticsearchSettings).get("name") + "." + CHECKPOINT_KEY,
+                    Checkpoint.fingerprint(aSettings, CHECKPOINT_KEY, mRulesPath));
+
+            if (mCheckpoint.isResuming() && mCheckpoint.getIndexName() == null) {
+                throw new IllegalArgumentException("Could not process Limetrans: checkpoint lacks the index name, can't resume.");
+            }
+        }
+        else {
+            mCheckpoint = null;
+        }
     }
 
     private void initializeInput(final Settings aSettings) {
@@ -335,7 +381,7 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         mMaps.put("institution-code-to-isil", INSTITUTION_CODE_TO_ISIL);
 
         almaSettings.getAsSettings("sisis-supplements").forEach((s, k) ->
-                mMaps.put("sisis-supplement-" + k, new SisisSupplement(s.get(k), k)));
+                mMaps.put("sisis-supplement-" + k, new SisisSupplement(s.get(k), k, SisisSupplement.DEFAULT_ID_KEY, mVars.get("isil-index-path"))));
 
         loadMap("alma-alias", "alias");
         loadMap("alma-item-callnumber", "callnumber");
@@ -392,7 +438,8 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         ).forEach(k -> mVars.put("regexp." + k, regexp.get(k, regexpDefault.getOrDefault(k, ".*"))));
 
         final String deletionLiteral = almaSettings.get("deletion-literal",
-                mElasticsearchSettings != null ? mElasticsearchSettings.get("deletionLiteral") : null);
+                mElasticsearchSettings != null ? mElasticsearchSettings.get("deletionLiteral") :
+                mBulkSettings != null ? mBulkSettings.get("deletionLiteral") : null);
 
         if (deletionLiteral != null) {
             final String[] deletion = almaDeletion.split("=");
@@ -432,33 +479,38 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         return process(null);
     }
 
-    public boolean process(final StreamReceiver aReceiver) { // checkstyle-disable-line NPathComplexity
+    public boolean process(final StreamReceiver aReceiver) { // checkstyle-disable-line NPathComplexity|JavaNCSS
         final Counter counter = new Counter();
-        final StreamPipe<StreamReceiver> pipe = getStreamPipe(mRulesPath, mVars,
-                t -> LOGGER.info("Starting {} transformation: {}", t, mRulesPath));
+        final Metrics metrics = mMetricsSettings != null ? new Metrics(mMetricsSettings) : null;
+        final ElasticsearchIndexer elasticsearchIndexer;
+        final Queue<Maps> maps = new ConcurrentLinkedQueue<>();
+        final StreamPipe<StreamReceiver> pipe;
 
-        if (mPostprocess) {
-            VerifyLinks.setup(mVars);
+        if (mWorkers > 1) {
+            LOGGER.info("Starting parallel transformation: {} [workers={}, ordered={}]", mRulesPath, mWorkers, mOrdered);
+            pipe = new ParallelStreamPipe(() -> withMaps(maps, newStreamPipe(null)), mWorkers, mOrdered);
         }
-
-        if (pipe instanceof final Maps maps) {
-            mMaps.forEach(maps::putMap);
+        else {
+            pipe = withMaps(maps, newStreamPipe(t -> LOGGER.info("Starting {} transformation: {}", t, mRulesPath)));
         }
 
-        if (pipe instanceof final Metafix metafix) {
-            metafix.setStrictness(Metafix.Strictness.EXPRESSION);
+        if (mPostprocess) {
+            VerifyLinks.setup(mVars);
         }
 
         if (aReceiver != null) {
             pipe.setReceiver(aReceiver);
+            elasticsearchIndexer = null;
         }
         else {
             final StreamTee streamTee = new StreamTee();
             final StreamPipe<StreamReceiver> sender;
 
             if (Helpers.getProperty("warnRepeatedFields", false)) {
-                sender = pipe
-                    .setReceiver(new RepeatedFieldsLogger());
+                final RepeatedFieldsLogger repeatedFieldsLogger = new RepeatedFieldsLogger();
+                pipe.setReceiver(withMetrics(metrics, "repeated-fields", repeatedFieldsLogger));
+
+                sender = repeatedFieldsLogger;
             }
             else {
                 sender = pipe;
@@ -468,16 +520,26 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
                 .setReceiver(counter)
                 .setReceiver(streamTee);
 
-            transformJson(streamTee);
-            transformFormeta(streamTee);
-            transformElasticsearch(streamTee);
+            transformJson(streamTee, metrics);
+            transformFormeta(streamTee, metrics);
+            elasticsearchIndexer = transformElasticsearch(streamTee, metrics);
+            transformBulk(streamTee, metrics);
         }
 
-        final Filter filter = mFilter.isEmpty() ? null : mFilter.toFilter();
+        final Checkpoint checkpoint = elasticsearchIndexer != null ? setupCheckpoint(pipe, elasticsearchIndexer) : null;
+
+        final CompiledFilter filter = mFilter.isEmpty() ? null : mFilter.toFilter();
         final AtomicBoolean failed = new AtomicBoolean();
+        final StreamReceiver receiver = withMetrics(metrics, "transformation", pipe);
 
         mInputQueues.stream().map(i -> {
-            final LifeCycle lifeCycle = i.process(pipe, filter);
+            i.setMetrics(metrics);
+
+            if (checkpoint != null && i instanceof final FileQueue fileQueue) {
+                fileQueue.setCheckpoint(checkpoint);
+            }
+
+            final LifeCycle lifeCycle = i.process(receiver, filter);
 
             if (i.isFailed()) {
                 failed.set(true);
@@ -486,10 +548,20 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
             return lifeCycle;
         }).collect(Collectors.toList()).forEach(LifeCycle::closeStream);
 
+        closeMaps(maps);
+
         if (mPostprocess) {
             VerifyLinks.reset();
         }
 
+        if (metrics != null) {
+            metrics.close();
+        }
+
+        if (checkpoint != null) {
+            checkpoint.finish(!failed.get() && !elasticsearchIndexer.isFailed());
+        }
+
         if (failed.get()) {
             LOGGER.error("Finished transformation: FAILED ({})", counter);
             return false;
@@ -500,6 +572,73 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         }
     }
 
+    // Workers are created concurrently (cf. ParallelStreamPipe).
+    private StreamPipe<StreamReceiver> withMaps(final Queue<Maps> aMaps, final StreamPipe<StreamReceiver> aPipe) {
+        if (aPipe instanceof final Maps maps) {
+            aMaps.add(maps);
+        }
+
+        return aPipe;
+    }
+
+    // Closes the maps opened by the transformation rules (e.g. put_lmdbmap, which also logs its cache statistics), but not our own.
+    private void closeMaps(final Queue<Maps> aMaps) {
+        aMaps.forEach(m -> m.getMapNames().forEach(n -> {
+            final Map<String, String> map = m.getMap(n);
+
+            if (map instanceof final Closeable closeable && map != mMaps.get(n)) {
+                try {
+                    closeable.close();
+                }
+                catch (final IOException e) {
+                    LOGGER.warn("Failed to close map: " + n, e);
+                }
+            }
+        }));
+
+        aMaps.clear();
+    }
+
+    private Checkpoint setupCheckpoint(final StreamPipe<StreamReceiver> aPipe, final ElasticsearchIndexer aIndexer) {
+        if (mCheckpoint != null) {
+            // Records still in flight must reach the index before their progress is recorded.
+            mCheckpoint.setSync(() -> {
+                if (aPipe instanceof final ParallelStreamPipe parallelStreamPipe) {
+                    parallelStreamPipe.flush();
+                }
+
+                return aIndexer.sync();
+            });
+        }
+
+        return mCheckpoint;
+    }
+
+    private StreamReceiver withMetrics(final Metrics aMetrics, final String aStage, final StreamReceiver aReceiver) {
+        if (aMetrics == null) {
+            return aReceiver;
+        }
+
+        final TimingStreamPipe timer = aMetrics.newTimer(aStage);
+        timer.setReceiver(aReceiver);
+
+        return timer;
+    }
+
+    /*package-private*/ StreamPipe<StreamReceiver> newStreamPipe(final Consumer<Type> aConsumer) {
+        final StreamPipe<StreamReceiver> pipe = getStreamPipe(mRulesPath, mVars, aConsumer);
+
+        if (pipe instanceof final Maps maps) {
+            mMaps.forEach(maps::putMap);
+        }
+
+        if (pipe instanceof final Metafix metafix) {
+            metafix.setStrictness(Metafix.Strictness.EXPRESSION);
+        }
+
+        return pipe;
+    }
+
     public static StreamPipe<StreamReceiver> getStreamPipe(final String aRulesPath, final Map<String, String> aVars, final Consumer<Type> aConsumer) {
         if (aRulesPath == null) {
             return null;
@@ -533,7 +672,7 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         return pipe;
     }
 
-    private void transformFormeta(final StreamTee aTee) {
+    private void transformFormeta(final StreamTee aTee, final Metrics aMetrics) {
         if (mFormetaPath == null) {
             return;
         }
@@ -544,11 +683,11 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         formetaEncoder.setStyle(mPrettyPrinting ?
                 FormatterStyle.MULTILINE : FormatterStyle.VERBOSE);
 
-        aTee.addReceiver(formetaEncoder);
+        aTee.addReceiver(withMetrics(aMetrics, "output.formeta", formetaEncoder));
         formetaEncoder.setReceiver(new ObjectWriter<>(mFormetaPath));
     }
 
-    private void transformJson(final StreamTee aTee) {
+    private void transformJson(final StreamTee aTee, final Metrics aMetrics) {
         if (mJsonPath == null) {
             return;
         }
@@ -558,30 +697,65 @@ public class Limetrans { // checkstyle-disable-line ClassDataAbstractionCoupling
         final JsonEncoder jsonEncoder = new JsonEncoder();
         jsonEncoder.setPrettyPrinting(mPrettyPrinting);
 
-        aTee.addReceiver(jsonEncoder);
+        aTee.addReceiver(withMetrics(aMetrics, "output.json", jsonEncoder));
         jsonEncoder.setReceiver(new ObjectWriter<>(mJsonPath));
     }
 
-    private void transformElasticsearch(final StreamTee aTee) {
+    private ElasticsearchIndexer transformElasticsearch(final StreamTee aTee, final Metrics aMetrics) {
         if (mElasticsearchSettings == null) {
-            return;
+            return null;
         }
 
         LOGGER.info("Indexing into Elasticsearch: {}", mElasticsearchSettings);
 
+        final Settings settings;
+
+        if (mCheckpoint != null && mCheckpoint.isResuming()) {
+            // Resuming: the index already holds the documents processed before (even if the time window has moved on).
+            settings = ElasticsearchClient.getResumeSettings(mElasticsearchSettings, mCheckpoint.getIndexName());
+        }
+        else {
+            settings = mElasticsearchSettings;
+        }
+
+        final ElasticsearchClient client = ElasticsearchClient.newClient(settings);
+        final ElasticsearchIndexer elasticsearchIndexer = new ElasticsearchIndexer(client, settings);
+
+        if (mCheckpoint != null) {
+            mCheckpoint.setIndexName(client.getIndexName());
+        }
+
+        addIndexer(aTee, aMetrics, "output.elasticsearch",
+                ElasticsearchClient.getIndexSettings(mElasticsearchSettings).get("idKey"), elasticsearchIndexer);
+
+        return elasticsearchIndexer;
+    }
+
+    private void transformBulk(final StreamTee aTee, final Metrics aMetrics) {
+        if (mBulkSettings == null) {
+            return;
+        }
+
+        LOGGER.info("Writing Elasticsearch bulk shards: {}", mBulkSettings);
+
+        addIndexer(aTee, aMetrics, "output.bulk", mBulkSettings.get("idKey"),
+                new ElasticsearchIndexer(new BulkExporter(mBulkSettings), mBulkSettings));
+    }
+
+    private void addIndexer(final StreamTee aTee, final Metrics aMetrics, final String aStage, final String aIdKey, final ElasticsearchIndexer aIndexer) {
         final RecordIdChanger recordIdChanger = new RecordIdChanger();
-        final String idKey = ElasticsearchClient.getIndexSettings(mElasticsearchSettings).get("idKey");
 
-        if (idKey != null) {
-            recordIdChanger.setIdLiteral(idKey);
+        if (aIdKey != null) {
+            recordIdChanger.setIdLiteral(aIdKey);
             recordIdChanger.setKeepIdLiteral(true);
         }
 
-        final ElasticsearchIndexer elasticsearchIndexer =
-            new ElasticsearchIndexer(mElasticsearchSettings);
+        if (aMetrics != null) {
+            aIndexer.setMetrics(aMetrics);
+        }
 
-        aTee.addReceiver(recordIdChanger);
-        recordIdChanger.setReceiver(elasticsearchIndexer);
+        aTee.addReceiver(withMetrics(aMetrics, aStage, recordIdChanger));
+        recordIdChanger.setReceiver(aIndexer);
     }
 
     /*package-private*/ final String pathForType(final String aPath) {
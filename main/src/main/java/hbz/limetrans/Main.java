@@ -146,7 +146,11 @@ public final class Main {
             throw new IllegalArgumentException("Could not process Limetrans: empty configuration argument.");
         }
 
-        return Helpers.getEnumProperty("env", null, Env.ignore, LOGGER::info, null).settings(arg);
+        return loadSettings(arg);
+    }
+
+    public static Settings loadSettings(final String aConf) {
+        return Helpers.getEnumProperty("env", null, Env.ignore, LOGGER::info, null).settings(aConf);
     }
 
     private static class MemLog {
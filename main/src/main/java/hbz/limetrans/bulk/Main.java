@@ -0,0 +1,49 @@
+package hbz.limetrans.bulk;
+
+import hbz.limetrans.BulkReplayer;
+import hbz.limetrans.util.Cli;
+import hbz.limetrans.util.ParallelStreamPipe;
+import hbz.limetrans.util.Settings;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+public final class Main {
+
+    private Main() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static void main(final String[] aArgs) throws IOException, Cli.CliException {
+        final Cli cli = new Cli(Main.class, "CONFIG")
+            .addOption("h", "help",    "Print help output")
+            .addOption("i", "input",   "Bulk shard directory (default: output.bulk.path)", false)
+            .addOption("w", "workers", "Shards read concurrently (default: 1; 0: all processors)", false);
+
+        if (!cli.parse(aArgs)) {
+            return;
+        }
+
+        final String[] args = cli.getArgs();
+        if (args.length != 1) {
+            throw new IllegalArgumentException(cli.getHelp());
+        }
+
+        final Settings settings = hbz.limetrans.Main.loadSettings(args[0]).getAsSettings("output");
+        if (!settings.containsSetting("elasticsearch")) {
+            throw new IllegalArgumentException("Could not replay bulk shards: no Elasticsearch output specified.");
+        }
+
+        final Settings cliSettings = cli.getAsSettings();
+        final String input = cliSettings.get("input", settings.getAsSettings("bulk").get("path"));
+        if (input == null) {
+            throw new IllegalArgumentException("Could not replay bulk shards: no input specified.");
+        }
+
+        final boolean success = new BulkReplayer(settings.getAsSettings("elasticsearch"), Paths.get(input),
+                ParallelStreamPipe.getWorkers(Integer.valueOf(cliSettings.get("workers", "1")))).replay();
+
+        System.exit(success ? 0 : 1);
+    }
+
+}
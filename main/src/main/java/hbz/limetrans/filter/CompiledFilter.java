@@ -0,0 +1,569 @@
+package hbz.limetrans.filter;
+
+import hbz.limetrans.util.EventBuffer;
+import hbz.limetrans.util.PushdownFilter;
+
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates a {@link LimetransFilter} on the fly: passes on records that
+ * satisfy the filter condition and have a non-empty key field.
+ *
+ * Conditions are matched against each literal as it arrives (using Metamorph
+ * source names, i.e., {@code ENTITY.LITERAL} with {@code ?}, {@code *} and
+ * {@code |} wildcards). As soon as the outcome is decided, the record is either
+ * dropped or passed on without buffering the remaining events; absence
+ * conditions are only decided at the end of the record. The same conditions
+ * can be checked right after decoding (see {@link PushdownFilter}).
+ */
+public final class CompiledFilter extends DefaultStreamPipe<StreamReceiver> implements PushdownFilter {
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = 2;
+
+    private static final char ENTITY_SEPARATOR = '.';
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private final EventBuffer mBuffer = new EventBuffer();
+    private final Predicate mPredicate;
+    private final Source mKey;
+    private final StringBuilder mPath = new StringBuilder();
+    private final Condition[] mConditions;
+
+    private String mIdentifier;
+    private State mState = State.DROP;
+    private boolean mConditionMet;
+    private boolean mKeyFound;
+    private int[] mPathLengths = new int[INITIAL_DEPTH];
+    private int mDepth;
+
+    /**
+     * Creates a filter.
+     *
+     * @param aPredicate the filter condition (may be {@code null} to only require the key)
+     * @param aKey the key field
+     */
+    /*package-private*/ CompiledFilter(final Predicate aPredicate, final String aKey) {
+        final List<Condition> conditions = new ArrayList<>();
+
+        if (aPredicate != null) {
+            aPredicate.collect(conditions);
+        }
+
+        mPredicate = aPredicate;
+        mConditions = conditions.toArray(new Condition[0]);
+        mKey = new Source(aKey);
+    }
+
+    /*package-private*/ static Predicate all(final List<Predicate> aPredicates) {
+        return new Combination(aPredicates, false, false);
+    }
+
+    /*package-private*/ static Predicate any(final List<Predicate> aPredicates) {
+        return new Combination(aPredicates, true, false);
+    }
+
+    /*package-private*/ static Predicate none(final List<Predicate> aPredicates) {
+        return new Combination(aPredicates, true, true);
+    }
+
+    /**
+     * Creates a condition that is met by any literal with a matching name and
+     * value.
+     *
+     * @param aSource the source name pattern
+     * @param aFilter the value to compare to, or the regular expression to
+     *                search for if prefixed with {@code ~} (may be {@code null}
+     *                to accept any value)
+     * @return the condition
+     */
+    /*package-private*/ static Predicate condition(final String aSource, final String aFilter) {
+        return new Condition(aSource, aFilter);
+    }
+
+    @Override
+    public PushdownFilter.Scanner newScanner() {
+        return new ConditionScanner(mPredicate != null ? mPredicate.copy() : null, mKey);
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        for (final Condition condition : mConditions) {
+            condition.mMatched = false;
+        }
+
+        mBuffer.clear();
+        mPath.setLength(0);
+
+        mIdentifier = aIdentifier;
+        mState = State.PENDING;
+        mConditionMet = mPredicate == null;
+        mKeyFound = false;
+        mDepth = 0;
+    }
+
+    @Override
+    public void endRecord() {
+        if (mState == State.PENDING && mKeyFound && (mConditionMet || mPredicate.evaluate(true) == TRUE)) {
+            pass();
+        }
+
+        if (mState == State.PASS) {
+            getReceiver().endRecord();
+        }
+
+        mBuffer.clear();
+        mIdentifier = null;
+        mState = State.DROP;
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        switch (mState) {
+            case PASS:
+                getReceiver().startEntity(aName);
+                break;
+            case PENDING:
+                mBuffer.startEntity(aName);
+
+                if (mDepth == mPathLengths.length) {
+                    mPathLengths = Arrays.copyOf(mPathLengths, mDepth * 2);
+                }
+
+                mPathLengths[mDepth++] = mPath.length();
+                mPath.append(aName).append(ENTITY_SEPARATOR);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void endEntity() {
+        switch (mState) {
+            case PASS:
+                getReceiver().endEntity();
+                break;
+            case PENDING:
+                mBuffer.endEntity();
+                mPath.setLength(mPathLengths[--mDepth]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        switch (mState) {
+            case PASS:
+                getReceiver().literal(aName, aValue);
+                break;
+            case PENDING:
+                mBuffer.literal(aName, aValue);
+                match(aName, aValue);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        mBuffer.clear();
+        mState = State.DROP;
+    }
+
+    private void match(final String aName, final String aValue) {
+        final CharSequence name;
+        final int length = mPath.length();
+
+        if (mDepth == 0) {
+            name = aName;
+        }
+        else {
+            name = mPath.append(aName);
+        }
+
+        if (!mKeyFound && aValue != null && !aValue.isEmpty() && mKey.matches(name)) {
+            mKeyFound = true;
+        }
+
+        if (!mConditionMet) {
+            boolean changed = false;
+
+            for (final Condition condition : mConditions) {
+                if (!condition.mMatched && condition.matches(name, aValue)) {
+                    condition.mMatched = true;
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                switch (mPredicate.evaluate(false)) {
+                    case TRUE:
+                        mConditionMet = true;
+                        break;
+                    case FALSE:
+                        mState = State.DROP;
+                        mBuffer.clear();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        mPath.setLength(length);
+
+        if (mState == State.PENDING && mConditionMet && mKeyFound) {
+            pass();
+        }
+    }
+
+    private void pass() {
+        mState = State.PASS;
+
+        getReceiver().startRecord(mIdentifier);
+        mBuffer.replay(getReceiver());
+        mBuffer.clear();
+    }
+
+    // Events outside of records (or after a record has been dropped) are discarded.
+    private enum State {
+        PENDING, PASS, DROP
+    }
+
+    /*package-private*/ abstract static class Predicate {
+
+        /**
+         * Evaluates the predicate for the literals seen so far.
+         *
+         * @param aFinal whether the end of the record has been reached
+         * @return {@code TRUE} or {@code FALSE} if the outcome is decided,
+         *         {@code UNKNOWN} otherwise
+         */
+        /*package-private*/ abstract int evaluate(boolean aFinal);
+
+        /*package-private*/ abstract void collect(List<Condition> aConditions);
+
+        /*package-private*/ abstract Predicate copy();
+
+    }
+
+    private static final class Combination extends Predicate {
+
+        private final Predicate[] mPredicates;
+        private final boolean mAny;
+        private final boolean mNegate;
+
+        private Combination(final List<Predicate> aPredicates, final boolean aAny, final boolean aNegate) {
+            mPredicates = aPredicates.toArray(new Predicate[0]);
+            mAny = aAny;
+            mNegate = aNegate;
+        }
+
+        @Override
+        /*package-private*/ int evaluate(final boolean aFinal) {
+            final int result = mAny ? evaluateAny(aFinal) : evaluateAll(aFinal);
+            return mNegate && result != UNKNOWN ? TRUE - result : result;
+        }
+
+        @Override
+        /*package-private*/ void collect(final List<Condition> aConditions) {
+            for (final Predicate predicate : mPredicates) {
+                predicate.collect(aConditions);
+            }
+        }
+
+        @Override
+        /*package-private*/ Predicate copy() {
+            final List<Predicate> predicates = new ArrayList<>(mPredicates.length);
+
+            for (final Predicate predicate : mPredicates) {
+                predicates.add(predicate.copy());
+            }
+
+            return new Combination(predicates, mAny, mNegate);
+        }
+
+        private int evaluateAny(final boolean aFinal) {
+            int result = FALSE;
+
+            for (final Predicate predicate : mPredicates) {
+                final int value = predicate.evaluate(aFinal);
+
+                if (value == TRUE) {
+                    return TRUE;
+                }
+                else if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+
+            return result;
+        }
+
+        // Like Metamorph's collector, an empty "all" is never satisfied.
+        private int evaluateAll(final boolean aFinal) {
+            int result = mPredicates.length > 0 ? TRUE : FALSE;
+
+            for (final Predicate predicate : mPredicates) {
+                final int value = predicate.evaluate(aFinal);
+
+                if (value == FALSE) {
+                    return FALSE;
+                }
+                else if (value == UNKNOWN) {
+                    result = UNKNOWN;
+                }
+            }
+
+            return result;
+        }
+
+    }
+
+    private static final class Condition extends Predicate {
+
+        private final Matcher mMatcher;
+        private final Source mSource;
+        private final String mValue;
+
+        private boolean mMatched;
+
+        private Condition(final String aSource, final String aFilter) {
+            mSource = new Source(aSource);
+
+            if (aFilter != null && aFilter.startsWith("~")) {
+                mMatcher = Pattern.compile(aFilter.substring(1)).matcher("");
+                mValue = null;
+            }
+            else {
+                mMatcher = null;
+                mValue = aFilter;
+            }
+        }
+
+        private Condition(final Condition aCondition) {
+            mSource = aCondition.mSource;
+            mMatcher = aCondition.mMatcher != null ? aCondition.mMatcher.pattern().matcher("") : null;
+            mValue = aCondition.mValue;
+        }
+
+        @Override
+        /*package-private*/ int evaluate(final boolean aFinal) {
+            return mMatched ? TRUE : aFinal ? FALSE : UNKNOWN;
+        }
+
+        @Override
+        /*package-private*/ void collect(final List<Condition> aConditions) {
+            aConditions.add(this);
+        }
+
+        @Override
+        /*package-private*/ Predicate copy() {
+            return new Condition(this);
+        }
+
+        private boolean matches(final CharSequence aName, final String aValue) {
+            if (!mSource.matches(aName)) {
+                return false;
+            }
+            else if (mMatcher != null) {
+                return aValue != null && mMatcher.reset(aValue).find();
+            }
+            else {
+                return mValue == null || mValue.equals(aValue);
+            }
+        }
+
+    }
+
+    private static final class Source {
+
+        private final String[] mPatterns;
+        private final boolean mWildcard;
+        private final boolean mAny;
+
+        private Source(final String aSource) {
+            mPatterns = aSource.split("\\|");
+            mWildcard = aSource.indexOf('*') != -1 || aSource.indexOf('?') != -1;
+            mAny = "*".equals(aSource);
+        }
+
+        private boolean matches(final CharSequence aName) {
+            if (mAny) {
+                return true;
+            }
+
+            for (final String pattern : mPatterns) {
+                if (mWildcard ? matches(pattern, aName) : pattern.contentEquals(aName)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        // Patterns with `*` may span entities, so they are relevant for all of them.
+        private boolean isRelevant(final String aEntity) {
+            if (mAny) {
+                return true;
+            }
+
+            for (final String pattern : mPatterns) {
+                final int index = pattern.lastIndexOf(ENTITY_SEPARATOR);
+
+                if (pattern.indexOf('*') != -1 || (aEntity == null ? index == -1 :
+                            index != -1 && matches(pattern.substring(0, index), aEntity))) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private static boolean matches(final String aPattern, final CharSequence aName) {
+            int patternIndex = 0;
+            int nameIndex = 0;
+            int starIndex = -1;
+            int starNameIndex = 0;
+
+            while (nameIndex < aName.length()) {
+                if (patternIndex < aPattern.length() && (aPattern.charAt(patternIndex) == '?' ||
+                            aPattern.charAt(patternIndex) == aName.charAt(nameIndex))) {
+                    ++patternIndex;
+                    ++nameIndex;
+                }
+                else if (patternIndex < aPattern.length() && aPattern.charAt(patternIndex) == '*') {
+                    starIndex = patternIndex++;
+                    starNameIndex = nameIndex;
+                }
+                else if (starIndex != -1) {
+                    patternIndex = starIndex + 1;
+                    nameIndex = ++starNameIndex;
+                }
+                else {
+                    return false;
+                }
+            }
+
+            while (patternIndex < aPattern.length() && aPattern.charAt(patternIndex) == '*') {
+                ++patternIndex;
+            }
+
+            return patternIndex == aPattern.length();
+        }
+
+    }
+
+    // Decides on records from their relevant literals alone (cf. match()), using its own copy of the conditions.
+    private static final class ConditionScanner implements PushdownFilter.Scanner {
+
+        private final Condition[] mConditions;
+        private final Map<String, Boolean> mRelevant = new HashMap<>();
+        private final Predicate mPredicate;
+        private final Source mKey;
+        private final StringBuilder mName = new StringBuilder();
+
+        private boolean mConditionMet;
+        private boolean mKeyFound;
+
+        private ConditionScanner(final Predicate aPredicate, final Source aKey) {
+            final List<Condition> conditions = new ArrayList<>();
+
+            if (aPredicate != null) {
+                aPredicate.collect(conditions);
+            }
+
+            mPredicate = aPredicate;
+            mConditions = conditions.toArray(new Condition[0]);
+            mKey = aKey;
+        }
+
+        @Override
+        public boolean isRelevant(final String aEntity) {
+            return mRelevant.computeIfAbsent(aEntity, e -> {
+                for (final Condition condition : mConditions) {
+                    if (condition.mSource.isRelevant(e)) {
+                        return true;
+                    }
+                }
+
+                return mKey.isRelevant(e);
+            });
+        }
+
+        @Override
+        public void startRecord() {
+            for (final Condition condition : mConditions) {
+                condition.mMatched = false;
+            }
+
+            mConditionMet = mPredicate == null;
+            mKeyFound = false;
+        }
+
+        @Override
+        public PushdownFilter.Outcome literal(final String aEntity, final String aName, final String aValue) {
+            final CharSequence name;
+
+            if (aEntity == null) {
+                name = aName;
+            }
+            else {
+                mName.setLength(0);
+                name = mName.append(aEntity).append(ENTITY_SEPARATOR).append(aName);
+            }
+
+            if (!mKeyFound && aValue != null && !aValue.isEmpty() && mKey.matches(name)) {
+                mKeyFound = true;
+            }
+
+            if (!mConditionMet) {
+                boolean changed = false;
+
+                for (final Condition condition : mConditions) {
+                    if (!condition.mMatched && condition.matches(name, aValue)) {
+                        condition.mMatched = true;
+                        changed = true;
+                    }
+                }
+
+                if (changed) {
+                    switch (mPredicate.evaluate(false)) {
+                        case TRUE:
+                            mConditionMet = true;
+                            break;
+                        case FALSE:
+                            return PushdownFilter.Outcome.DROP;
+                        default:
+                            break;
+                    }
+                }
+            }
+
+            return mConditionMet && mKeyFound ? PushdownFilter.Outcome.PASS : PushdownFilter.Outcome.PENDING;
+        }
+
+        @Override
+        public PushdownFilter.Outcome endRecord() {
+            return mKeyFound && (mConditionMet || mPredicate.evaluate(true) == TRUE) ?
+                PushdownFilter.Outcome.PASS : PushdownFilter.Outcome.DROP;
+        }
+
+    }
+
+}
@@ -6,8 +6,6 @@ import hbz.limetrans.util.Helpers;
 import org.metafacture.io.ObjectStdoutWriter;
 import org.metafacture.io.ObjectWriter;
 import org.metafacture.json.JsonEncoder;
-import org.metafacture.metamorph.Filter;
-import org.metafacture.metamorph.InlineMorph;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -25,6 +23,9 @@ import java.util.function.Consumer;
  * - "85642.3=~Inhaltstext": Record(s) with field "85642.3" matching "Inhaltstext"
  * - "Inhaltstext": Record(s) with any field equal to "Inhaltstext"
  * - "~Inhaltstext": Record(s) with any field matching "Inhaltstext"
+ *
+ * Filters are compiled into a CompiledFilter; the Metamorph equivalent
+ * (cf. toString) is only used for debugging.
  */
 
 public class LimetransFilter {
@@ -83,10 +84,8 @@ public class LimetransFilter {
         return Helpers.prettyXml(sb.toString());
     }
 
-    public Filter toFilter() {
-        final InlineMorph metamorph = InlineMorph.in(LimetransFilter.class);
-        build(metamorph::with);
-        return new Filter(metamorph.create());
+    public CompiledFilter toFilter() {
+        return new CompiledFilter(isEmpty() ? null : compile(), mKey != null ? mKey : DEFAULT_KEY);
     }
 
     private void build(final Consumer<String> aConsumer) {
@@ -130,22 +129,9 @@ public class LimetransFilter {
     }
 
     private String buildData(final String aFilter, final boolean aFilterSource) {
-        final String source;
-        final String filter;
-
-        final int index = aFilter.indexOf('=');
-        if (index != -1) {
-            source = aFilter.substring(0, index);
-            filter = aFilter.substring(index + 1);
-        }
-        else if (aFilterSource) {
-            source = aFilter;
-            filter = null;
-        }
-        else {
-            source = "*";
-            filter = aFilter;
-        }
+        final Clause clause = Clause.parse(aFilter, aFilterSource);
+        final String source = clause.source();
+        final String filter = clause.filter();
 
         return "<data source=\"" + source + "\">" + (
                 filter == null ? "" : filter.startsWith("~") ?
@@ -154,6 +140,30 @@ public class LimetransFilter {
                 ) + "</data>";
     }
 
+    // Mirrors buildClause(): empty children are skipped, "!" negates a single condition.
+    private CompiledFilter.Predicate compile() {
+        final List<CompiledFilter.Predicate> predicates = new ArrayList<>();
+
+        mChildren.stream().filter(f -> !f.isEmpty()).forEach(f -> predicates.add(f.compile()));
+        mValues.forEach(v -> {
+            if (v.startsWith("@")) {
+                predicates.add(Clause.parse(v.substring(1), true).compile());
+            }
+            else if (v.startsWith("!")) {
+                predicates.add(CompiledFilter.none(List.of(Clause.parse(v.substring(1), true).compile())));
+            }
+            else {
+                predicates.add(Clause.parse(v, false).compile());
+            }
+        });
+
+        return switch (mOperator) {
+            case all  -> CompiledFilter.all(predicates);
+            case any  -> CompiledFilter.any(predicates);
+            case none -> CompiledFilter.none(predicates);
+        };
+    }
+
     public void process(final String[] aInput, final String aOutput, final String aProcessor, final boolean aPretty) throws IOException {
         final FileQueue inputQueue = new FileQueue(aProcessor, true, aInput);
 
@@ -164,7 +174,7 @@ public class LimetransFilter {
         final JsonEncoder encoder = new JsonEncoder();
         encoder.setPrettyPrinting(aPretty);
 
-        final Filter filter = toFilter();
+        final CompiledFilter filter = toFilter();
         filter.setReceiver(encoder).setReceiver(aOutput == null || "-".equals(aOutput) ?
                 new ObjectStdoutWriter<String>() : new ObjectWriter<String>(aOutput));
 
@@ -175,4 +185,25 @@ public class LimetransFilter {
         all, any, none
     }
 
+    private record Clause(String source, String filter) {
+
+        private static Clause parse(final String aFilter, final boolean aFilterSource) {
+            final int index = aFilter.indexOf('=');
+            if (index != -1) {
+                return new Clause(aFilter.substring(0, index), aFilter.substring(index + 1));
+            }
+            else if (aFilterSource) {
+                return new Clause(aFilter, null);
+            }
+            else {
+                return new Clause("*", aFilter);
+            }
+        }
+
+        private CompiledFilter.Predicate compile() {
+            return CompiledFilter.condition(source, filter);
+        }
+
+    }
+
 }
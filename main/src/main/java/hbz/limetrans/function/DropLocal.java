@@ -20,9 +20,12 @@ public class DropLocal implements FixFunction {
 
     private static final String LOCAL = "LOCAL";
 
-    private static final Matcher MATCHER = Pattern.compile("[A-Z]:[0-9]+[a-z]?").matcher("");
+    private static final Pattern PATTERN = Pattern.compile("[A-Z]:[0-9]+[a-z]?");
 
-    private static final Predicate<String> PREDICATE = s -> LOCAL.equals(s) || MATCHER.reset(s).matches();
+    // Matchers are not thread-safe (cf. Limetrans parallel transformation)
+    private static final ThreadLocal<Matcher> MATCHER = ThreadLocal.withInitial(() -> PATTERN.matcher(""));
+
+    private static final Predicate<String> PREDICATE = s -> LOCAL.equals(s) || MATCHER.get().reset(s).matches();
 
     public DropLocal() {
     }
@@ -0,0 +1,51 @@
+package hbz.limetrans.function;
+
+import hbz.limetrans.util.CachedMap;
+import hbz.limetrans.util.FileMapIndex;
+import hbz.limetrans.util.LMDB;
+
+import org.metafacture.metafix.FixCommand;
+import org.metafacture.metafix.Metafix;
+import org.metafacture.metafix.Record;
+import org.metafacture.metafix.api.FixFunction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Like put_filemap, but loads the file into an LMDB index once and reuses it as long as the file doesn't change.
+@FixCommand("put_cached_filemap")
+public class PutCachedFileMap implements FixFunction {
+
+    public PutCachedFileMap() {
+    }
+
+    @Override
+    public void apply(final Metafix aMetafix, final Record aRecord, final List<String> aParams, final Map<String, String> aOptions) {
+        final String fileName = aParams.get(0);
+        final String mapName = aParams.size() > 1 ? aParams.get(1) : fileName;
+
+        final FileMapIndex index = new FileMapIndex(
+                aOptions.getOrDefault("sep_char", "\t"),
+                Integer.parseInt(aOptions.getOrDefault("key_column", "0")),
+                Integer.parseInt(aOptions.getOrDefault("value_column", "1")),
+                Integer.parseInt(aOptions.getOrDefault("expected_columns", "-1")));
+
+        final LMDB lmdb;
+
+        try {
+            lmdb = index.open(aMetafix.resolvePath(fileName), aMetafix.getVars().get("isil-index-path"));
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final int cacheSize = Integer.parseInt(aOptions.getOrDefault("cache", "0"));
+
+        aMetafix.putMap(mapName, lmdb == null ? Collections.emptyMap() :
+                cacheSize > 0 ? new CachedMap(mapName, lmdb, cacheSize) : lmdb);
+    }
+
+}
@@ -1,5 +1,6 @@
 package hbz.limetrans.function;
 
+import hbz.limetrans.util.CachedMap;
 import hbz.limetrans.util.LMDB;
 
 import org.metafacture.metafix.FixCommand;
@@ -19,7 +20,12 @@ public class PutLmdbMap implements FixFunction {
     @Override
     public void apply(final Metafix aMetafix, final Record aRecord, final List<String> aParams, final Map<String, String> aOptions) {
         final String fileName = aParams.get(0);
-        aMetafix.putMap(aParams.size() > 1 ? aParams.get(1) : fileName, new LMDB(aMetafix.resolvePath(fileName)));
+        final String mapName = aParams.size() > 1 ? aParams.get(1) : fileName;
+
+        final LMDB lmdb = new LMDB(aMetafix.resolvePath(fileName));
+        final int cacheSize = Integer.parseInt(aOptions.getOrDefault("cache", "0"));
+
+        aMetafix.putMap(mapName, cacheSize > 0 ? new CachedMap(mapName, lmdb, cacheSize) : lmdb);
     }
 
 }
@@ -67,15 +67,16 @@ public class StandardNumber implements FixFunction {
 
     private abstract static class AbstractType {
 
-        private final Matcher mMatcher;
+        private final ThreadLocal<Matcher> mMatcher;
 
         private AbstractType(final String aPattern) {
-            mMatcher = Pattern.compile(aPattern).matcher("");
+            final Pattern pattern = Pattern.compile(aPattern);
+            mMatcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
         }
 
         public String normalize(final String aValue, final Value.Hash aHash, final Type aType) {
-            mMatcher.reset(aValue);
-            return mMatcher.find() ? normalize(mMatcher, aHash, aType, aValue) : null;
+            final Matcher matcher = mMatcher.get().reset(aValue);
+            return matcher.find() ? normalize(matcher, aHash, aType, aValue) : null;
         }
 
         protected abstract String normalize(Matcher aMatcher, Value.Hash aHash, Type aType, String aValue);
@@ -1,6 +1,6 @@
 package hbz.limetrans.function;
 
-import hbz.limetrans.util.Helpers;
+import hbz.limetrans.util.MappedSet;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,11 +13,10 @@ import org.metafacture.metafix.api.FixFunction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -51,7 +50,7 @@ public class VerifyLinks implements FixFunction {
     );
 
     private static final Map<String, List<String>> SUPER_MAP = new HashMap<>();
-    private static final Map<String, LongAdder> SUPER_COUNTER = new HashMap<>();
+    private static final Map<String, LongAdder> SUPER_COUNTER = new ConcurrentHashMap<>();
 
     private static final String SUPER_SOURCE = "xbib[].uid";
 
@@ -101,31 +100,31 @@ public class VerifyLinks implements FixFunction {
             throw new IllegalArgumentException("Usage: " + VerifyLinks.class + " <path> [<value>...]");
         }
 
-        final Set<String> set = loadSet(aArgs[0], "link", true);
+        final Predicate<String> set = loadSet(aArgs[0], null, "link", true);
         if (set != null) {
             for (int i = 1; i < argc; ++i) {
-                System.out.println(aArgs[i] + "=" + set.contains(aArgs[i]));
+                System.out.println(aArgs[i] + "=" + set.test(aArgs[i]));
             }
         }
     }
 
     public static void setup(final Map<String, String> aVars) {
         final String isilPath = Objects.requireNonNull(aVars.get("isil-path"));
+        final String indexPath = aVars.get("isil-index-path");
 
         Link.forEach(l -> {
             final String name = l.name();
             final String key = name.toLowerCase();
 
-            final Set<String> set = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, key), name, l.getRequired());
-            final Set<String> skipSet = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, "skip" + key), name, false);
+            final Predicate<String> set = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, key), indexPath, name, l.getRequired());
+            final Predicate<String> skipSet = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, "skip" + key), indexPath, name, false);
 
-            l.setPredicate(set != null ? v -> set.contains(v) && !skipSet.contains(v) : null);
+            l.setPredicate(set != null ? v -> set.test(v) && !skipSet.test(v) : null);
 
             l.getCounter().clear();
         });
 
-        final Set<String> superIdSet = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, "superid"), "super ID", true);
-        superPredicate = superIdSet != null ? superIdSet::contains : null;
+        superPredicate = loadSet(ISIL_PATH_FORMAT.formatted(isilPath, "superid"), indexPath, "super ID", true);
         SUPER_COUNTER.clear();
     }
 
@@ -196,9 +195,8 @@ public class VerifyLinks implements FixFunction {
         Value.asList(aHash.get(aPath), a -> a.forEach(aConsumer));
     }
 
-    private static Set<String> loadSet(final String aPath, final String aType, final boolean aRequired) {
-        final Set<String> set = new HashSet<>();
-        return Helpers.loadFile(aPath, aRequired, aType + " set", set::add, set::size, LOGGER) ? set : null;
+    private static Predicate<String> loadSet(final String aPath, final String aIndexPath, final String aType, final boolean aRequired) {
+        return MappedSet.load(aPath, aIndexPath, aRequired, aType + " set", LOGGER);
     }
 
     @FunctionalInterface
@@ -211,7 +209,7 @@ public class VerifyLinks implements FixFunction {
         ID(true), ISBN(false), ISSN(false);
 
         private final Map<String, List<String>> mMap = new HashMap<>();
-        private final Map<String, LongAdder> mCounter = new HashMap<>();
+        private final Map<String, LongAdder> mCounter = new ConcurrentHashMap<>();
         private final boolean mRequired;
 
         private Predicate<String> mPredicate;
@@ -0,0 +1,99 @@
+package hbz.limetrans.test;
+
+import hbz.limetrans.util.Helpers;
+
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the children of a test runner concurrently.
+ *
+ * Directories (cf. {@link TransformationTestSuite}) and test cases
+ * (cf. {@link TransformationTestRunner}) are scheduled on separate pools:
+ * a directory waits for its test cases, which themselves never wait, so the
+ * case pool can't be exhausted by blocked tasks.
+ */
+/*package-private*/ final class ParallelScheduler implements RunnerScheduler {
+
+    public static final int WORKERS = getWorkers();
+
+    private static final ExecutorService RUNNER_EXECUTOR = newExecutor("transformation-runner");
+    private static final ExecutorService CASE_EXECUTOR = newExecutor("transformation-case");
+
+    private final ExecutorService mExecutor;
+    private final List<Future<?>> mFutures = new ArrayList<>();
+
+    private ParallelScheduler(final ExecutorService aExecutor) {
+        mExecutor = aExecutor;
+    }
+
+    public static ParallelScheduler forRunners() {
+        return new ParallelScheduler(RUNNER_EXECUTOR);
+    }
+
+    public static ParallelScheduler forCases() {
+        return new ParallelScheduler(CASE_EXECUTOR);
+    }
+
+    public static boolean isEnabled() {
+        return WORKERS > 1;
+    }
+
+    @Override
+    public void schedule(final Runnable aChildStatement) {
+        synchronized (mFutures) {
+            mFutures.add(mExecutor.submit(aChildStatement));
+        }
+    }
+
+    @Override
+    public void finished() {
+        final List<Future<?>> futures;
+
+        synchronized (mFutures) {
+            futures = new ArrayList<>(mFutures);
+            mFutures.clear();
+        }
+
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            catch (final ExecutionException e) {
+                // Test failures are reported to the notifier by the child itself; this is unexpected.
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static int getWorkers() {
+        final Integer workers = Helpers.getProperty("testWorkers", Integer::valueOf, null);
+        return workers == null || workers < 1 ? Runtime.getRuntime().availableProcessors() : workers;
+    }
+
+    private static ExecutorService newExecutor(final String aName) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(WORKERS, r -> {
+            final Thread thread = new Thread(r, aName + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+}
@@ -0,0 +1,111 @@
+package hbz.limetrans.test;
+
+import hbz.limetrans.Limetrans;
+
+import org.metafacture.framework.StreamPipe;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Lends compiled transformation pipes to test cases that use the same rules
+ * file, so that each rules file is compiled (and its {@code do once()} block
+ * executed) once per worker instead of once per test case.
+ *
+ * A borrowed pipe is used by a single test case at a time. Closing or
+ * resetting the stream only affects that test case's receiver; the shared
+ * pipe itself stays open for the next one. Returned pipes are reset, so that
+ * no state carries over from one test case to the next.
+ */
+/*package-private*/ final class SharedStreamPipe extends DefaultStreamPipe<StreamReceiver> {
+
+    private static final Map<String, Queue<StreamPipe<StreamReceiver>>> IDLE_PIPES = new ConcurrentHashMap<>();
+
+    private static final StreamReceiver DETACHED_RECEIVER = new DefaultStreamReceiver();
+
+    private final String mRules;
+    private final StreamPipe<StreamReceiver> mPipe;
+
+    private SharedStreamPipe(final String aRules, final StreamPipe<StreamReceiver> aPipe) {
+        mRules = aRules;
+        mPipe = aPipe;
+    }
+
+    /**
+     * Borrows an idle pipe for the given rules file, compiling a new one if
+     * there is none.
+     *
+     * @param aRules the rules file (may be {@code null})
+     * @return the pipe, or {@code null} if no rules file was given
+     */
+    public static SharedStreamPipe acquire(final String aRules) {
+        return acquire(aRules, () -> Limetrans.getStreamPipe(aRules, null, null));
+    }
+
+    /*package-private*/ static SharedStreamPipe acquire(final String aRules, final Supplier<StreamPipe<StreamReceiver>> aSupplier) {
+        if (aRules == null) {
+            return null;
+        }
+
+        final StreamPipe<StreamReceiver> pipe = getIdlePipes(aRules).poll();
+        return new SharedStreamPipe(aRules, pipe != null ? pipe : aSupplier.get());
+    }
+
+    /**
+     * Resets a pipe and returns it for use by other test cases. Pipes that
+     * failed with an exception must not be returned since they might be left
+     * in the middle of a record.
+     *
+     * @param aPipe the pipe (may be {@code null})
+     */
+    public static void release(final SharedStreamPipe aPipe) {
+        if (aPipe != null) {
+            // The test case's receiver is done already and must not see the reset.
+            aPipe.mPipe.setReceiver(DETACHED_RECEIVER);
+            aPipe.mPipe.resetStream();
+
+            getIdlePipes(aPipe.mRules).offer(aPipe.mPipe);
+        }
+    }
+
+    @Override
+    public void startRecord(final String aIdentifier) {
+        mPipe.startRecord(aIdentifier);
+    }
+
+    @Override
+    public void endRecord() {
+        mPipe.endRecord();
+    }
+
+    @Override
+    public void startEntity(final String aName) {
+        mPipe.startEntity(aName);
+    }
+
+    @Override
+    public void endEntity() {
+        mPipe.endEntity();
+    }
+
+    @Override
+    public void literal(final String aName, final String aValue) {
+        mPipe.literal(aName, aValue);
+    }
+
+    @Override
+    protected void onSetReceiver() {
+        mPipe.setReceiver(getReceiver());
+    }
+
+    private static Queue<StreamPipe<StreamReceiver>> getIdlePipes(final String aRules) {
+        return IDLE_PIPES.computeIfAbsent(aRules, k -> new ConcurrentLinkedQueue<>());
+    }
+
+}
@@ -1,6 +1,5 @@
 package hbz.limetrans.test;
 
-import hbz.limetrans.Limetrans;
 import hbz.limetrans.util.FileQueue;
 import hbz.limetrans.util.Helpers;
 import hbz.limetrans.util.LimetransException;
@@ -98,7 +97,9 @@ public class TransformationTestCase extends Statement {
             throw new LimetransException(e);
         }
 
-        inputQueue.process(aReceiver, Limetrans.getStreamPipe(aRules, null, null)).closeStream();
+        final SharedStreamPipe pipe = SharedStreamPipe.acquire(aRules);
+        inputQueue.process(aReceiver, pipe).closeStream();
+        SharedStreamPipe.release(pipe);
     }
 
     private static EventStack processEvents(final Consumer<EventList> aConsumer) {
@@ -23,6 +23,10 @@ public class TransformationTestRunner extends ParentRunner<TransformationTestCas
     public TransformationTestRunner(final Class<?> aClass, final File aDirectory, final Limetrans.Type aType) throws InitializationError {
         super(aClass);
 
+        if (ParallelScheduler.isEnabled()) {
+            setScheduler(ParallelScheduler.forCases());
+        }
+
         final String name = aDirectory.getName();
         mName = aClass.getName() + "." + name;
 
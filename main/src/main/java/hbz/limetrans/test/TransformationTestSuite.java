@@ -21,6 +21,10 @@ public class TransformationTestSuite extends ParentRunner<Runner> {
     public TransformationTestSuite(final Class<?> aClass, final Limetrans.Type aType) throws InitializationError {
         super(aClass);
 
+        if (ParallelScheduler.isEnabled()) {
+            setScheduler(ParallelScheduler.forRunners());
+        }
+
         final File root = new File(ROOT_PATH);
         if (!root.exists()) {
             throw new InitializationError("Root path not found: " + ROOT_PATH);
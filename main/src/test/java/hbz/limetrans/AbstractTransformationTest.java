@@ -63,6 +63,23 @@ public abstract class AbstractTransformationTest extends AbstractLimetransTest {
         testEqualsReference("alma-" + aName, "json");
     }
 
+    // Compares the output of one configuration with the reference of another (e.g., parallel vs. sequential).
+    protected void testAlmaEqualsReference(final String aName, final String aReferenceName) throws IOException {
+        final String name = "alma-" + aName;
+        final Limetrans limetrans = getLimetrans(name);
+
+        final String outputFile = getResourcePath(limetrans, "output", name, "json");
+
+        testLimetransEqualsReference(limetrans, name, getReferenceFile(limetrans, "alma-" + aReferenceName, "json"), () -> {
+            try {
+                return Helpers.slurpFile(outputFile);
+            }
+            catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     protected void testElasticsearchEqualsReference(final String aName, final String aId) throws IOException {
         final Limetrans limetrans = getLimetrans(aName);
 
@@ -0,0 +1,139 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.Settings;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveBulkSizerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MEDIUM = TimeUnit.MILLISECONDS.toNanos(750);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(2000);
+
+    private static final int ACTIONS = 1000;
+    private static final int REQUESTS = 2;
+    private static final int WINDOW = 3;
+
+    public AdaptiveBulkSizerTest() {
+    }
+
+    @Test
+    public void testShouldKeepLimitsWithinWindow() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, WINDOW - 1, FAST);
+
+        assertLimits(sizer, ACTIONS, REQUESTS, false);
+    }
+
+    @Test
+    public void testShouldGrowWhenFast() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, WINDOW, FAST);
+        assertLimits(sizer, ACTIONS + ACTIONS / 10, REQUESTS + 1, true);
+
+        Assert.assertFalse(sizer.takeChanged());
+    }
+
+    @Test
+    public void testShouldOnlyGrowActionsWhenNearTarget() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, WINDOW, MEDIUM);
+        assertLimits(sizer, ACTIONS + ACTIONS / 10, REQUESTS, true);
+    }
+
+    @Test
+    public void testShouldShrinkWhenSlow() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, WINDOW, SLOW);
+        assertLimits(sizer, ACTIONS / 2, REQUESTS / 2, true);
+    }
+
+    @Test
+    public void testShouldShrinkImmediatelyWhenRejected() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        sizer.record(FAST, true);
+        assertLimits(sizer, ACTIONS / 2, REQUESTS / 2, true);
+
+        // A rejection starts a new window.
+        record(sizer, WINDOW - 1, FAST);
+        assertLimits(sizer, ACTIONS / 2, REQUESTS / 2, false);
+
+        sizer.record(FAST, false);
+        assertLimits(sizer, ACTIONS / 2 + ACTIONS / 10, REQUESTS / 2 + 1, true);
+    }
+
+    @Test
+    public void testShouldShrinkImmediatelyWhenFailed() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, WINDOW, FAST);
+        assertLimits(sizer, ACTIONS + ACTIONS / 10, REQUESTS + 1, true);
+
+        // A failed request (e.g., timed out) shrinks the limits however fast it was.
+        record(sizer, WINDOW - 1, FAST);
+        sizer.record(FAST, true);
+        assertLimits(sizer, (ACTIONS + ACTIONS / 10) / 2, (REQUESTS + 1) / 2, true);
+    }
+
+    @Test
+    public void testShouldRespectMinimum() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        for (int i = 0; i < 10; ++i) {
+            sizer.record(FAST, true);
+        }
+
+        assertLimits(sizer, 100, 1, true);
+    }
+
+    @Test
+    public void testShouldRespectMaximum() {
+        final AdaptiveBulkSizer sizer = newSizer(-1);
+
+        record(sizer, 100 * WINDOW, FAST);
+
+        assertLimits(sizer, 10 * ACTIONS, 2 * REQUESTS, true);
+    }
+
+    @Test
+    public void testShouldScaleBytesWithActions() {
+        final AdaptiveBulkSizer sizer = newSizer(ACTIONS * 512);
+        Assert.assertEquals(ACTIONS * 512, sizer.getBytes());
+
+        sizer.record(FAST, true);
+        Assert.assertEquals(ACTIONS / 2 * 512, sizer.getBytes());
+    }
+
+    @Test
+    public void testShouldNotLimitBytesByDefault() {
+        Assert.assertEquals(-1, newSizer(-1).getBytes());
+    }
+
+    private AdaptiveBulkSizer newSizer(final long aBytes) {
+        return new AdaptiveBulkSizer(Settings.settingsBuilder()
+                .put("target-latency", "1000")
+                .put("window", String.valueOf(WINDOW))
+                .build(), ACTIONS, aBytes, REQUESTS);
+    }
+
+    private void record(final AdaptiveBulkSizer aSizer, final int aCount, final long aNanos) {
+        for (int i = 0; i < aCount; ++i) {
+            aSizer.record(aNanos, false);
+        }
+    }
+
+    private void assertLimits(final AdaptiveBulkSizer aSizer, final int aActions, final int aRequests, final boolean aChanged) {
+        Assert.assertEquals(aActions, aSizer.getActions());
+        Assert.assertEquals(aRequests, aSizer.getRequests());
+        Assert.assertEquals(aChanged, aSizer.takeChanged());
+    }
+
+}
@@ -14,4 +14,9 @@ public class Alma107TransformationTest extends AbstractTransformationTest {
         testAlmaEqualsReference("107");
     }
 
+    @Test
+    public void testAlmaParallel() throws IOException {
+        testAlmaEqualsReference("107-parallel", "107");
+    }
+
 }
@@ -0,0 +1,151 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.FileQueue;
+import hbz.limetrans.util.FingerprintStore;
+import hbz.limetrans.util.JsonBytesEncoder;
+import hbz.limetrans.util.Settings;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BulkExporterTest {
+
+    private static final String DOCUMENT = "{\"L1\":\"V1\"}";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    public BulkExporterTest() {
+    }
+
+    @Test
+    public void testShouldWriteActions() throws IOException {
+        final BulkExporter exporter = newExporter(null);
+
+        exporter.addBulkIndex("ID1", document(DOCUMENT));
+        exporter.addBulkUpdate("ID\"2", document(DOCUMENT));
+        exporter.addBulkDelete("ID3");
+        exporter.close(true);
+
+        Assert.assertFalse(exporter.isFailed());
+        assertShards(List.of(String.join("\n",
+                        "{\"index\":{\"_id\":\"ID1\"}}",
+                        DOCUMENT,
+                        "{\"update\":{\"_id\":\"ID\\\"2\"}}",
+                        "{\"doc\":" + DOCUMENT + "}",
+                        "{\"delete\":{\"_id\":\"ID3\"}}",
+                        "")));
+    }
+
+    @Test
+    public void testShouldSplitShards() throws IOException {
+        final BulkExporter exporter = newExporter("1");
+
+        exporter.addBulkDelete("ID1");
+        exporter.addBulkDelete("ID2");
+        exporter.close(true);
+
+        assertShards(List.of("{\"delete\":{\"_id\":\"ID1\"}}\n", "{\"delete\":{\"_id\":\"ID2\"}}\n"));
+    }
+
+    @Test
+    public void testShouldRemovePreviousShards() throws IOException {
+        final BulkExporter exporter = newExporter("1");
+
+        exporter.addBulkDelete("ID1");
+        exporter.addBulkDelete("ID2");
+        exporter.close(true);
+
+        final BulkExporter next = newExporter(null);
+
+        next.addBulkDelete("ID3");
+        next.close(true);
+
+        assertShards(List.of("{\"delete\":{\"_id\":\"ID3\"}}\n"));
+    }
+
+    @Test
+    public void testShouldNotAcknowledgeWrittenDocuments() {
+        final BulkExporter exporter = newExporter(null);
+        final List<String> acknowledged = new ArrayList<>();
+
+        exporter.setAcknowledgedListener(acknowledged::add);
+
+        exporter.addBulkIndex("ID1", document(DOCUMENT));
+        exporter.addBulkDelete("ID2");
+        exporter.addBulkUpdate("ID3", document(DOCUMENT));
+        exporter.close(true);
+
+        Assert.assertEquals(List.of(), acknowledged);
+    }
+
+    @Test
+    public void testShouldNotRecordExportedFingerprints() throws IOException {
+        final String fingerprints = mFolder.newFolder().toPath().resolve("fingerprints.lmdb").toString();
+
+        index(fingerprints, "ID1", "V1", "ID2", "V2");
+        index(fingerprints, "ID1", "V1", "ID2", "V3");
+
+        assertShards(List.of(String.join("\n",
+                        "{\"index\":{\"_id\":\"ID1\"}}",
+                        "{\"L1\":\"V1\"}",
+                        "{\"index\":{\"_id\":\"ID2\"}}",
+                        "{\"L1\":\"V3\"}",
+                        "")));
+    }
+
+    private BulkExporter newExporter(final String aShardSize) {
+        final Settings.Builder settingsBuilder = Settings.settingsBuilder()
+            .put("path", mFolder.getRoot().getPath())
+            .put("compression", "none");
+
+        if (aShardSize != null) {
+            settingsBuilder.put("shard-size", aShardSize);
+        }
+
+        return new BulkExporter(settingsBuilder.build());
+    }
+
+    private void index(final String aFingerprints, final String... aRecords) {
+        final ElasticsearchIndexer indexer = new ElasticsearchIndexer(newExporter(null), (String) null);
+        indexer.setFingerprints(new FingerprintStore(aFingerprints, false));
+
+        for (int i = 0; i < aRecords.length; i += 2) {
+            indexer.startRecord(aRecords[i]);
+            indexer.literal("L1", aRecords[i + 1]);
+            indexer.endRecord();
+        }
+
+        indexer.closeStream();
+    }
+
+    private JsonBytesEncoder.Document document(final String aJson) {
+        final byte[] bytes = aJson.getBytes(StandardCharsets.UTF_8);
+        return new JsonBytesEncoder.Document(bytes, 0, bytes.length);
+    }
+
+    private void assertShards(final List<String> aExpected) throws IOException {
+        try (Stream<Path> stream = FileQueue.findFiles(mFolder.getRoot().toPath(), BulkExporter.SHARD_PATTERN)) {
+            Assert.assertEquals(aExpected, stream.sorted().map(p -> {
+                try {
+                    return Files.readString(p);
+                }
+                catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }).collect(Collectors.toList()));
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package hbz.limetrans;
+
+import hbz.limetrans.util.LimetransException;
+import hbz.limetrans.util.Settings;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+public class BulkReplayerTest {
+
+    private static final String INDEX_NAME = "replay";
+    private static final String INDEX_TYPE = "type1";
+    private static final String TIME_WINDOW = "yyyyMMdd";
+
+    private static final String ID1 = "ID1";
+    private static final String ID2 = "ID2";
+
+    private static final String SHARD1 = "bulk-00000.ndjson";
+    private static final String SHARD2 = "bulk-00001.ndjson";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private ElasticsearchClient mClient;
+    private Path mPath;
+
+    public BulkReplayerTest() {
+    }
+
+    @Before
+    public void createShards() throws IOException {
+        mPath = mFolder.getRoot().toPath();
+
+        writeShard(SHARD1, "{\"index\":{\"_id\":\"ID1\"}}\n{\"L1\":\"V1\"}\n");
+        writeShard(SHARD2, "{\"index\":{\"_id\":\"ID2\"}}\n{\"L1\":\"V2\"}\n");
+    }
+
+    @After
+    public void cleanup() {
+        if (mClient != null) {
+            mClient.close();
+        }
+    }
+
+    @Test
+    public void testShouldResumeIntoCheckpointedIndex() throws IOException {
+        final String indexName = INDEX_NAME + "1";
+        final String currentIndexName = getCurrentIndexName();
+
+        // Set up by an earlier run, whose time window has passed since.
+        mClient = ElasticsearchClient.newClient(indexName, INDEX_TYPE, null);
+
+        if (mClient.indexExists(currentIndexName)) {
+            mClient.deleteIndex(currentIndexName);
+        }
+
+        Files.write(mPath.resolve(BulkExporter.CHECKPOINT_FILE), List.of("index=" + indexName, SHARD1));
+
+        Assert.assertTrue(newReplayer(TIME_WINDOW).replay());
+        Assert.assertFalse(Files.exists(mPath.resolve(BulkExporter.CHECKPOINT_FILE)));
+
+        Assert.assertNull(mClient.getDocument(ID1));
+        Assert.assertEquals("{\"L1\":\"V2\"}", mClient.getDocument(ID2));
+
+        Assert.assertFalse(mClient.indexExists(currentIndexName));
+        Assert.assertEquals(indexName, getAliasIndex());
+    }
+
+    @Test
+    public void testShouldRecordIndexInCheckpoint() throws IOException {
+        final String indexName = getCurrentIndexName();
+
+        writeShard(SHARD2, "{\"invalid\":{\"_id\":\"ID2\"}}\n");
+        Assert.assertFalse(newReplayer(TIME_WINDOW).replay());
+
+        Assert.assertEquals(List.of("index=" + indexName, SHARD1), Files.readAllLines(mPath.resolve(BulkExporter.CHECKPOINT_FILE)));
+
+        writeShard(SHARD2, "{\"index\":{\"_id\":\"ID2\"}}\n{\"L1\":\"V2\"}\n");
+        Assert.assertTrue(newReplayer(TIME_WINDOW).replay());
+
+        mClient = ElasticsearchClient.newClient(ElasticsearchClient.getResumeSettings(getSettings(null), indexName));
+
+        Assert.assertEquals("{\"L1\":\"V1\"}", mClient.getDocument(ID1));
+        Assert.assertEquals("{\"L1\":\"V2\"}", mClient.getDocument(ID2));
+    }
+
+    @Test
+    public void testShouldNotResumeWithoutIndex() throws IOException {
+        Files.write(mPath.resolve(BulkExporter.CHECKPOINT_FILE), List.of(SHARD1));
+        Assert.assertThrows(LimetransException.class, () -> newReplayer(null).replay());
+    }
+
+    private BulkReplayer newReplayer(final String aTimeWindow) {
+        return new BulkReplayer(getSettings(aTimeWindow), mPath, 1);
+    }
+
+    private Settings getSettings(final String aTimeWindow) {
+        final Settings.Builder settingsBuilder = Settings.settingsBuilder()
+            .put(new String[]{"index", "name"}, INDEX_NAME)
+            .put(new String[]{"index", "type"}, INDEX_TYPE)
+            .put(new String[]{"delete"}, true);
+
+        if (aTimeWindow != null) {
+            settingsBuilder.put(new String[]{"index", "timewindow"}, aTimeWindow);
+        }
+
+        return settingsBuilder.build();
+    }
+
+    private String getCurrentIndexName() {
+        return INDEX_NAME + LocalDate.now().format(DateTimeFormatter.ofPattern(TIME_WINDOW));
+    }
+
+    private String getAliasIndex() {
+        final ElasticsearchClient client = ElasticsearchClient.newClient(getSettings(null)
+                .amendSettings((s, b) -> b.put(new String[]{"update"}, true)));
+
+        try {
+            return client.getIndexName();
+        }
+        finally {
+            client.close();
+        }
+    }
+
+    private void writeShard(final String aName, final String aContent) throws IOException {
+        Files.writeString(mPath.resolve(aName), aContent);
+    }
+
+}
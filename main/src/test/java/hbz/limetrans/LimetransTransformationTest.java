@@ -24,11 +24,26 @@ public class LimetransTransformationTest extends AbstractTransformationTest {
         testEqualsReference("marc21");
     }
 
+    @Test
+    public void testMarc21Parallel() throws IOException {
+        testEqualsReference("marc21-parallel");
+    }
+
+    @Test
+    public void testMarc21Workers() throws IOException {
+        testEqualsReference("marc21-workers");
+    }
+
     @Test
     public void testMarc21Records() throws IOException {
         testEqualsReference("marc21records");
     }
 
+    @Test
+    public void testMarcXmlStax() throws IOException {
+        testEqualsReference("marcxml-stax");
+    }
+
     @Test
     public void testFormeta() throws IOException {
         testEqualsReference("formeta", "formeta");
@@ -0,0 +1,244 @@
+package hbz.limetrans.filter;
+
+import hbz.limetrans.util.PushdownStreamPipe;
+import hbz.limetrans.util.StaxMarcXmlDecoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompiledFilterTest {
+
+    private static final String INPUT_PATH = "src/test/resources/filter/input/test.xml";
+
+    public CompiledFilterTest() {
+    }
+
+    @Test
+    public void testShouldMatchEntityPath() {
+        Assert.assertEquals(List.of("1"), process(LimetransFilter.any().add("650??.a=Mathematics")));
+    }
+
+    @Test
+    public void testShouldMatchAnyField() {
+        Assert.assertEquals(List.of("1", "2"), process(LimetransFilter.any().add("~^Math")));
+    }
+
+    @Test
+    public void testShouldMatchAlternatives() {
+        Assert.assertEquals(List.of("1", "2"), process(LimetransFilter.any().add("245??.a|650??.a=~^Math")));
+    }
+
+    @Test
+    public void testShouldEvaluateAbsenceAtEndOfRecord() {
+        Assert.assertEquals(List.of("2"), process(LimetransFilter.any().add("!650??.a")));
+    }
+
+    @Test
+    public void testShouldDropRecordsWithoutKey() {
+        Assert.assertEquals(List.of("1", "2"), process(LimetransFilter.any()));
+    }
+
+    @Test
+    public void testShouldUseCustomKey() {
+        Assert.assertEquals(List.of("3"), process(LimetransFilter.all("DEL??.a")));
+    }
+
+    @Test
+    public void testShouldDropDeletedRecords() {
+        Assert.assertEquals(List.of("1"), process(LimetransFilter.all()
+                    .add(LimetransFilter.none().add("DEL??.a=Y", "leader=~^.{5}d"))
+                    .add(LimetransFilter.any().add("@001"))));
+    }
+
+    @Test
+    public void testShouldPassCompleteRecords() {
+        final List<String> events = new ArrayList<>();
+
+        final CompiledFilter filter = LimetransFilter.any().add("@650??.a").toFilter();
+        filter.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                events.add("startRecord:" + aIdentifier);
+            }
+
+            @Override
+            public void endRecord() {
+                events.add("endRecord");
+            }
+
+            @Override
+            public void startEntity(final String aName) {
+                events.add("startEntity:" + aName);
+            }
+
+            @Override
+            public void endEntity() {
+                events.add("endEntity");
+            }
+
+            @Override
+            public void literal(final String aName, final String aValue) {
+                events.add(aName + "=" + aValue);
+            }
+        });
+
+        feed(filter);
+
+        Assert.assertEquals(List.of("startRecord:1", "leader=00000cam", "001=1", "startEntity:650 0",
+                    "a=Mathematics", "endEntity", "startEntity:651 0", "a=Math@", "endEntity", "endRecord"), events);
+    }
+
+    @Test
+    public void testShouldSkipRejectedRecordsInDecoder() throws IOException {
+        final LimetransFilter filter = LimetransFilter.none()
+            .add(LimetransFilter.any().add("650??.a=Mathematics", "@042??.a"))
+            .add("856??.u=~book");
+
+        final AtomicInteger records = new AtomicInteger();
+        final AtomicInteger literals = new AtomicInteger();
+        final AtomicInteger pushdownRecords = new AtomicInteger();
+        final AtomicInteger pushdownLiterals = new AtomicInteger();
+
+        final List<String> ids = decode(filter, false, records, literals);
+        final List<String> pushdownIds = decode(filter, true, pushdownRecords, pushdownLiterals);
+
+        Assert.assertEquals(List.of("ocm44959477 ", "ocm44960649 ", "ocm44961551 ", "ocm48498937 "), ids);
+        Assert.assertEquals(ids, pushdownIds);
+        Assert.assertEquals(records.get(), pushdownRecords.get());
+        Assert.assertTrue(pushdownLiterals.get() < literals.get());
+    }
+
+    @Test
+    public void testShouldSkipRecordsLackingRequiredField() throws IOException {
+        // Like an Alma member run's "MBD  .M=<memberCode>": only decided at the end of the record.
+        final LimetransFilter filter = LimetransFilter.any().add("MBD  .M=49HBZ_XYZ");
+
+        final AtomicInteger records = new AtomicInteger();
+        final AtomicInteger literals = new AtomicInteger();
+
+        Assert.assertEquals(List.of(), decode(filter, true, records, literals));
+        Assert.assertEquals(10, records.get());
+        Assert.assertEquals(0, literals.get());
+    }
+
+    private List<String> decode(final LimetransFilter aFilter, final boolean aPushdown, final AtomicInteger aRecords, final AtomicInteger aLiterals) throws IOException {
+        final List<String> ids = new ArrayList<>();
+
+        final CompiledFilter filter = aFilter.toFilter();
+        filter.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void literal(final String aName, final String aValue) {
+                if ("001".equals(aName)) {
+                    ids.add(aValue);
+                }
+            }
+        });
+
+        final DefaultStreamPipe<StreamReceiver> counter = new DefaultStreamPipe<StreamReceiver>() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                aRecords.incrementAndGet();
+                getReceiver().startRecord(aIdentifier);
+            }
+
+            @Override
+            public void endRecord() {
+                getReceiver().endRecord();
+            }
+
+            @Override
+            public void startEntity(final String aName) {
+                getReceiver().startEntity(aName);
+            }
+
+            @Override
+            public void endEntity() {
+                getReceiver().endEntity();
+            }
+
+            @Override
+            public void literal(final String aName, final String aValue) {
+                aLiterals.incrementAndGet();
+                getReceiver().literal(aName, aValue);
+            }
+        };
+
+        counter.setReceiver(filter);
+
+        final StaxMarcXmlDecoder decoder = new StaxMarcXmlDecoder();
+
+        if (aPushdown) {
+            final PushdownStreamPipe pushdownPipe = new PushdownStreamPipe(filter.newScanner(), null);
+            decoder.setPushdownPipe(pushdownPipe);
+            decoder.setReceiver(pushdownPipe).setReceiver(counter);
+        }
+        else {
+            decoder.setReceiver(counter);
+        }
+
+        try (Reader reader = new FileReader(INPUT_PATH)) {
+            decoder.process(reader);
+        }
+
+        return ids;
+    }
+
+    private List<String> process(final LimetransFilter aFilter) {
+        final List<String> ids = new ArrayList<>();
+
+        final CompiledFilter filter = aFilter.toFilter();
+        filter.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                ids.add(aIdentifier);
+            }
+        });
+
+        feed(filter);
+
+        return ids;
+    }
+
+    private void feed(final CompiledFilter aFilter) {
+        aFilter.startRecord("1");
+        aFilter.literal("leader", "00000cam");
+        aFilter.literal("001", "1");
+        aFilter.startEntity("650 0");
+        aFilter.literal("a", "Mathematics");
+        aFilter.endEntity();
+        aFilter.startEntity("651 0");
+        aFilter.literal("a", "Math@");
+        aFilter.endEntity();
+        aFilter.endRecord();
+
+        aFilter.startRecord("2");
+        aFilter.literal("leader", "00000dam");
+        aFilter.literal("001", "2");
+        aFilter.startEntity("245 0");
+        aFilter.literal("a", "Mathematical models");
+        aFilter.endEntity();
+        aFilter.startEntity("651 0");
+        aFilter.literal("a", "@");
+        aFilter.endEntity();
+        aFilter.endRecord();
+
+        aFilter.startRecord("3");
+        aFilter.literal("leader", "00000cam");
+        aFilter.literal("001", "");
+        aFilter.startEntity("DEL  ");
+        aFilter.literal("a", "Y");
+        aFilter.endEntity();
+        aFilter.endRecord();
+    }
+
+}
@@ -0,0 +1,148 @@
+package hbz.limetrans.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.StreamPipe;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamPipe;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class SharedStreamPipeTest {
+
+    private final AtomicInteger mCompiled = new AtomicInteger();
+
+    public SharedStreamPipeTest() {
+    }
+
+    @Test
+    public void testShouldReusePipe() {
+        final String rules = "testShouldReusePipe.fix";
+
+        Assert.assertEquals(List.of("startRecord 1", "literal count 1", "endRecord", "closeStream"), process(rules, "1"));
+        Assert.assertEquals(List.of("startRecord 2", "literal count 1", "endRecord", "closeStream"), process(rules, "2"));
+
+        Assert.assertEquals(1, mCompiled.get());
+    }
+
+    @Test
+    public void testShouldResetStateBetweenTestCases() {
+        final String rules = "testShouldResetStateBetweenTestCases.fix";
+
+        Assert.assertEquals(List.of(
+                    "startRecord 1", "literal count 1", "endRecord",
+                    "startRecord 2", "literal count 2", "endRecord",
+                    "closeStream"), process(rules, "1", "2"));
+
+        // Neither the count nor the reset event reach the next (or previous) test case.
+        Assert.assertEquals(List.of("startRecord 3", "literal count 1", "endRecord", "closeStream"), process(rules, "3"));
+    }
+
+    @Test
+    public void testShouldNotReuseUnreleasedPipe() {
+        final String rules = "testShouldNotReuseUnreleasedPipe.fix";
+
+        final SharedStreamPipe pipe = SharedStreamPipe.acquire(rules, newSupplier());
+        Assert.assertNotNull(pipe);
+
+        process(rules, "1");
+
+        Assert.assertEquals(2, mCompiled.get());
+    }
+
+    @Test
+    public void testShouldIgnoreMissingRules() {
+        Assert.assertNull(SharedStreamPipe.acquire(null, newSupplier()));
+        Assert.assertEquals(0, mCompiled.get());
+    }
+
+    private List<String> process(final String aRules, final String... aIds) {
+        final List<String> events = new ArrayList<>();
+
+        final SharedStreamPipe pipe = SharedStreamPipe.acquire(aRules, newSupplier());
+        pipe.setReceiver(new RecordingReceiver(events));
+
+        for (final String id : aIds) {
+            pipe.startRecord(id);
+            pipe.endRecord();
+        }
+
+        pipe.closeStream();
+        SharedStreamPipe.release(pipe);
+
+        return events;
+    }
+
+    private Supplier<StreamPipe<StreamReceiver>> newSupplier() {
+        return () -> {
+            mCompiled.incrementAndGet();
+            return new CountingPipe();
+        };
+    }
+
+    // Stands in for transformation rules with state that spans records.
+    private static final class CountingPipe extends DefaultStreamPipe<StreamReceiver> {
+
+        private int mRecords;
+
+        private CountingPipe() {
+        }
+
+        @Override
+        public void startRecord(final String aIdentifier) {
+            getReceiver().startRecord(aIdentifier);
+            getReceiver().literal("count", String.valueOf(++mRecords));
+        }
+
+        @Override
+        public void endRecord() {
+            getReceiver().endRecord();
+        }
+
+        @Override
+        protected void onResetStream() {
+            mRecords = 0;
+        }
+
+    }
+
+    private static final class RecordingReceiver extends DefaultStreamReceiver {
+
+        private final List<String> mEvents;
+
+        private RecordingReceiver(final List<String> aEvents) {
+            mEvents = aEvents;
+        }
+
+        @Override
+        public void startRecord(final String aIdentifier) {
+            mEvents.add("startRecord " + aIdentifier);
+        }
+
+        @Override
+        public void endRecord() {
+            mEvents.add("endRecord");
+        }
+
+        @Override
+        public void literal(final String aName, final String aValue) {
+            mEvents.add("literal " + aName + " " + aValue);
+        }
+
+        @Override
+        public void resetStream() {
+            mEvents.add("resetStream");
+        }
+
+        @Override
+        public void closeStream() {
+            mEvents.add("closeStream");
+        }
+
+    }
+
+}
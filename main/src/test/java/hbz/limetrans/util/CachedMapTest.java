@@ -0,0 +1,94 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CachedMapTest {
+
+    public CachedMapTest() {
+    }
+
+    @Test
+    public void testShouldEvictLeastRecentlyUsed() {
+        final CountingMap map = new CountingMap(Map.of("a", "1", "b", "2", "c", "3"));
+        final CachedMap cachedMap = new CachedMap("test", map, 2, 1);
+
+        Assert.assertEquals("1", cachedMap.get("a"));
+        Assert.assertEquals("2", cachedMap.get("b"));
+        Assert.assertEquals("1", cachedMap.get("a"));
+
+        // Evicts "b", which has been used less recently than "a".
+        Assert.assertEquals("3", cachedMap.get("c"));
+        Assert.assertEquals("1", cachedMap.get("a"));
+        Assert.assertEquals("2", cachedMap.get("b"));
+
+        Assert.assertEquals(1, map.getLookups("a"));
+        Assert.assertEquals(2, map.getLookups("b"));
+        Assert.assertEquals(1, map.getLookups("c"));
+
+        Assert.assertEquals(2, cachedMap.getHits());
+        Assert.assertEquals(4, cachedMap.getMisses());
+    }
+
+    @Test
+    public void testShouldCacheAbsentKeys() {
+        final CountingMap map = new CountingMap(Map.of("a", "1"));
+        final CachedMap cachedMap = new CachedMap("test", map, 2);
+
+        Assert.assertNull(cachedMap.get("x"));
+        Assert.assertEquals("default", cachedMap.getOrDefault("x", "default"));
+        Assert.assertEquals("1", cachedMap.getOrDefault("a", "default"));
+        Assert.assertNull(cachedMap.get(null));
+
+        Assert.assertEquals(1, map.getLookups("x"));
+        Assert.assertEquals(1, cachedMap.getHits());
+        Assert.assertEquals(2, cachedMap.getMisses());
+    }
+
+    @Test
+    public void testShouldCloseUnderlyingMap() throws IOException {
+        final CountingMap map = new CountingMap(Map.of());
+        new CachedMap("test", map, 1).close();
+
+        Assert.assertTrue(map.isClosed());
+    }
+
+    private static final class CountingMap extends AbstractReadOnlyMap<String, String> implements Closeable {
+
+        private final Map<String, Integer> mLookups = new HashMap<>();
+        private final Map<String, String> mMap;
+
+        private boolean mClosed;
+
+        private CountingMap(final Map<String, String> aMap) {
+            mMap = aMap;
+        }
+
+        @Override
+        public String get(final Object aKey) {
+            mLookups.merge(aKey.toString(), 1, Integer::sum);
+            return mMap.get(aKey);
+        }
+
+        @Override
+        public void close() {
+            mClosed = true;
+        }
+
+        private int getLookups(final String aKey) {
+            return mLookups.getOrDefault(aKey, 0);
+        }
+
+        private boolean isClosed() {
+            return mClosed;
+        }
+
+    }
+
+}
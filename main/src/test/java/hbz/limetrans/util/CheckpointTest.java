@@ -0,0 +1,153 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CheckpointTest {
+
+    private static final String FILE1 = "file1";
+    private static final String FILE2 = "file2";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String INDEX_NAME = "index20240101";
+
+    private static final int INTERVAL = 2;
+    private static final int RECORDS = 5;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    public CheckpointTest() {
+    }
+
+    @Test
+    public void testShouldStartFresh() {
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertFalse(checkpoint.isResuming());
+        Assert.assertEquals(List.of("1", "2", "3", "4", "5"), process(checkpoint, FILE1, false));
+    }
+
+    @Test
+    public void testShouldResumeWithinFile() {
+        process(newCheckpoint(FINGERPRINT, true), FILE1, false);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertTrue(checkpoint.isResuming());
+        Assert.assertFalse(checkpoint.isCompleted(FILE1));
+        Assert.assertEquals(INTERVAL * 2, checkpoint.getOffset(FILE1));
+        Assert.assertEquals(0, checkpoint.getOffset(FILE2));
+        Assert.assertEquals(List.of("5"), process(checkpoint, FILE1, true));
+    }
+
+    @Test
+    public void testShouldSkipCompletedFile() {
+        final Checkpoint previous = newCheckpoint(FINGERPRINT, true);
+        process(previous, FILE1, true);
+        process(previous, FILE2, false);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertTrue(checkpoint.isCompleted(FILE1));
+        Assert.assertFalse(checkpoint.isCompleted(FILE2));
+        Assert.assertEquals(INTERVAL * 2, checkpoint.getOffset(FILE2));
+    }
+
+    @Test
+    public void testShouldNotRecordUnacknowledgedProgress() {
+        final Checkpoint previous = newCheckpoint(FINGERPRINT, true);
+        previous.setSync(() -> false);
+        process(previous, FILE1, true);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertFalse(checkpoint.isCompleted(FILE1));
+        Assert.assertEquals(0, checkpoint.getOffset(FILE1));
+    }
+
+    @Test
+    public void testShouldRecordIndexName() {
+        final Checkpoint previous = newCheckpoint(FINGERPRINT, true);
+        previous.setIndexName(INDEX_NAME);
+        process(previous, FILE1, false);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertTrue(checkpoint.isResuming());
+        Assert.assertEquals(INDEX_NAME, checkpoint.getIndexName());
+    }
+
+    @Test
+    public void testShouldNotRecordMissingIndexName() {
+        process(newCheckpoint(FINGERPRINT, true), FILE1, false);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT, true);
+
+        Assert.assertTrue(checkpoint.isResuming());
+        Assert.assertNull(checkpoint.getIndexName());
+    }
+
+    @Test
+    public void testShouldDiscardChangedFingerprint() {
+        process(newCheckpoint(FINGERPRINT, true), FILE1, false);
+
+        final Checkpoint checkpoint = newCheckpoint(FINGERPRINT + "2", true);
+
+        Assert.assertFalse(checkpoint.isResuming());
+        Assert.assertEquals(0, checkpoint.getOffset(FILE1));
+    }
+
+    @Test
+    public void testShouldNotResumeByDefault() {
+        process(newCheckpoint(FINGERPRINT, true), FILE1, false);
+
+        Assert.assertFalse(newCheckpoint(FINGERPRINT, false).isResuming());
+    }
+
+    @Test
+    public void testShouldRemoveAfterSuccess() {
+        final Checkpoint previous = newCheckpoint(FINGERPRINT, true);
+        process(previous, FILE1, true);
+        previous.finish(true);
+
+        Assert.assertFalse(newCheckpoint(FINGERPRINT, true).isResuming());
+    }
+
+    private Checkpoint newCheckpoint(final String aFingerprint, final boolean aResume) {
+        return new Checkpoint(Settings.settingsBuilder()
+                .put(new String[]{"interval"}, INTERVAL)
+                .put(new String[]{"resume"}, aResume)
+                .build(), mFolder.getRoot().toPath().resolve("test.checkpoint").toString(), aFingerprint);
+    }
+
+    private List<String> process(final Checkpoint aCheckpoint, final String aFile, final boolean aCompleted) {
+        final List<String> ids = new ArrayList<>();
+
+        final CheckpointStreamPipe checkpointPipe = new CheckpointStreamPipe(aCheckpoint);
+        checkpointPipe.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                ids.add(aIdentifier);
+            }
+        });
+
+        checkpointPipe.startFile(aFile);
+
+        for (int i = 1; i <= RECORDS; ++i) {
+            checkpointPipe.startRecord(String.valueOf(i));
+            checkpointPipe.literal("l", "v");
+            checkpointPipe.endRecord();
+        }
+
+        checkpointPipe.endFile(aCompleted);
+
+        return ids;
+    }
+
+}
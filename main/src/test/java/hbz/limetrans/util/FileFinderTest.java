@@ -0,0 +1,149 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class FileFinderTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private Path mRoot;
+
+    public FileFinderTest() {
+    }
+
+    @Before
+    public void createFiles() throws IOException {
+        mRoot = mFolder.getRoot().toPath();
+
+        createFile("export-20240101.xml", 3);
+        createFile("export-20240102.xml", 1);
+        createFile("a/export-20240103.xml", 2);
+        createFile("a/b/export-20240104.xml", 4);
+        createFile("a/b/export-20240104.tar.gz", 0);
+        createFile("a/readme.txt", 0);
+    }
+
+    @Test
+    public void testShouldFindFilesInDirectoryOrder() throws IOException {
+        try (Stream<Path> expected = Files.find(mRoot, Integer.MAX_VALUE, (p, a) -> a.isRegularFile() &&
+                    p.getFileName().toString().endsWith(".xml"), FileVisitOption.FOLLOW_LINKS)) {
+            Assert.assertEquals(expected.collect(Collectors.toList()), find(new FileFinder(4).find(mRoot, "*.xml")));
+        }
+    }
+
+    @Test
+    public void testShouldSortByLastModified() throws IOException {
+        Assert.assertEquals(getNames("20240102", "20240103", "20240101", "20240104"),
+                getNames(find(getSettings("lastmodified", "desc", null, null), "*.xml")));
+
+        Assert.assertEquals(getNames("20240104", "20240101"),
+                getNames(find(getSettings("lastmodified", "asc", 2, null), "*.xml")));
+    }
+
+    @Test
+    public void testShouldSortByName() throws IOException {
+        // Sorted by path, so subdirectories come first.
+        Assert.assertEquals(getNames("20240102", "20240101"),
+                getNames(find(getSettings("name", "desc", 2, null), "export-*.xml")));
+    }
+
+    @Test
+    public void testShouldMatchBracketAndBraceExpressions() throws IOException {
+        Assert.assertEquals(List.of("export-20240104.tar.gz", "export-20240101.xml"),
+                find(getSettings("name", "asc", null, null), "export-*{01.xml,.gz}").stream()
+                    .map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+
+        Assert.assertEquals(getNames("20240104", "20240103"),
+                getNames(find(getSettings("name", "asc", null, null), "export-2024010[!1-2].xml")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testShouldRejectOldFiles() throws IOException {
+        find(getSettings("lastmodified", "asc", 1, 2), "*.xml");
+    }
+
+    @Test
+    public void testShouldAcceptRecentFiles() throws IOException {
+        Assert.assertEquals(getNames("20240102"), getNames(find(getSettings("lastmodified", "asc", 1, 2), "export-*02.xml")));
+    }
+
+    @Test
+    public void testShouldTranslateGlobs() {
+        assertGlob("export-*.xml", "export-2024.xml", "export-2024.xmlx", "export-2024.tar.gz");
+        assertGlob("export-????.{xml,json}", "export-2024.json", "export-2024.gz", "export-20240.xml");
+        assertGlob("[A-Z]*.{java,class}", "Foo.class", "foo.class", "Foo.jar");
+        assertGlob("[!a-z]*", "1.txt", "a.txt", "");
+        assertGlob("a+b(c)\\*.d", "a+b(c)*.d", "a+b(c)x.d", "aab(c)*.d");
+    }
+
+    private void createFile(final String aName, final int aDaysAgo) throws IOException {
+        final Path path = mRoot.resolve(aName);
+
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, aName);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - aDaysAgo * DAY));
+    }
+
+    private Settings getSettings(final String aSort, final String aOrder, final Integer aMax, final Integer aMaxAge) {
+        final Settings.Builder builder = Settings.settingsBuilder()
+            .put(new String[]{"path"}, mRoot.toString())
+            .put(new String[]{"sort_by"}, aSort)
+            .put(new String[]{"order"}, aOrder);
+
+        if (aMax != null) {
+            builder.put(new String[]{"max"}, aMax);
+        }
+
+        if (aMaxAge != null) {
+            builder.put(new String[]{"max-age"}, aMaxAge);
+        }
+
+        return builder.build();
+    }
+
+    private List<Path> find(final Settings aSettings, final String aPattern) throws IOException {
+        return find(new FileFinder(2).find(aSettings, aPattern));
+    }
+
+    private List<Path> find(final Stream<Path> aStream) {
+        try (Stream<Path> stream = aStream) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    private List<String> getNames(final String... aDates) {
+        return Stream.of(aDates).map(d -> "export-" + d + ".xml").collect(Collectors.toList());
+    }
+
+    private List<String> getNames(final List<Path> aPaths) {
+        return aPaths.stream().map(p -> p.getFileName().toString()).collect(Collectors.toList());
+    }
+
+    private void assertGlob(final String aGlob, final String aMatch, final String... aMismatches) {
+        final Pattern pattern = Pattern.compile(FileFinder.toRegex(aGlob));
+
+        Assert.assertTrue(aGlob + ": " + aMatch, pattern.matcher(aMatch).matches());
+
+        for (final String mismatch : aMismatches) {
+            Assert.assertFalse(aGlob + ": " + mismatch, pattern.matcher(mismatch).matches());
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class FileMapIndexTest {
+
+    private static final String CONTENT = "k1\tv1\nk2\tv2\textra\n\nk3\n";
+    private static final int MAX_KEY_SIZE = 511;
+    private static final int THREADS = 8;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private Path mFile;
+    private Path mIndexPath;
+
+    public FileMapIndexTest() {
+    }
+
+    @Before
+    public void createFile() throws IOException {
+        mFile = mFolder.getRoot().toPath().resolve("map.tsv");
+        mIndexPath = mFolder.newFolder("index").toPath();
+
+        Files.writeString(mFile, CONTENT);
+    }
+
+    @Test
+    public void testShouldLoadAllMatchingLines() throws IOException {
+        try (LMDB lmdb = open(-1)) {
+            Assert.assertEquals("v1", lmdb.get("k1"));
+            Assert.assertEquals("v2", lmdb.get("k2"));
+            Assert.assertNull(lmdb.get("k3"));
+        }
+    }
+
+    @Test
+    public void testShouldFilterByExpectedColumns() throws IOException {
+        try (LMDB lmdb = open(2)) {
+            Assert.assertEquals("v1", lmdb.get("k1"));
+            Assert.assertNull(lmdb.get("k2"));
+        }
+
+        Assert.assertEquals(1, getIndexFiles().size());
+
+        // Different settings get an index of their own.
+        try (LMDB lmdb = open(3)) {
+            Assert.assertNull(lmdb.get("k1"));
+            Assert.assertEquals("v2", lmdb.get("k2"));
+        }
+
+        Assert.assertEquals(2, getIndexFiles().size());
+    }
+
+    @Test
+    public void testShouldReuseIndex() throws IOException {
+        open(-1).close();
+        final List<Path> indexFiles = getIndexFiles();
+        final long lastModified = Files.getLastModifiedTime(indexFiles.get(0)).toMillis();
+
+        try (LMDB lmdb = open(-1)) {
+            Assert.assertEquals("v1", lmdb.get("k1"));
+        }
+
+        Assert.assertEquals(indexFiles, getIndexFiles());
+        Assert.assertEquals(lastModified, Files.getLastModifiedTime(indexFiles.get(0)).toMillis());
+    }
+
+    @Test
+    public void testShouldRebuildOnContentChange() throws IOException {
+        open(-1).close();
+        final List<Path> indexFiles = getIndexFiles();
+
+        Files.writeString(mFile, CONTENT.replace("v1", "v1*"));
+
+        try (LMDB lmdb = open(-1)) {
+            Assert.assertEquals("v1*", lmdb.get("k1"));
+        }
+
+        // The superseded index is deleted.
+        final List<Path> newIndexFiles = getIndexFiles();
+        Assert.assertEquals(1, newIndexFiles.size());
+        Assert.assertFalse(indexFiles.contains(newIndexFiles.get(0)));
+    }
+
+    @Test
+    public void testShouldSkipInvalidEntries() throws IOException {
+        final String longKey = "\u00e4".repeat(MAX_KEY_SIZE / 2 + 1);
+        Files.writeString(mFile, "k1\tv1\n\tv2\nk3\t\n" + longKey + "\tv4\nk5\tv5\n");
+
+        try (LMDB lmdb = open(-1)) {
+            Assert.assertEquals("v1", lmdb.get("k1"));
+            Assert.assertNull(lmdb.get("k3"));
+            Assert.assertEquals("v5", lmdb.get("k5"));
+        }
+    }
+
+    @Test
+    public void testShouldBuildOnceConcurrently() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<String>> futures = new ArrayList<>();
+
+            for (int i = 0; i < THREADS; ++i) {
+                futures.add(executor.submit((Callable<String>) () -> {
+                    start.await();
+
+                    try (LMDB lmdb = open(-1)) {
+                        return lmdb.get("k2");
+                    }
+                }));
+            }
+
+            start.countDown();
+
+            for (final Future<String> future : futures) {
+                Assert.assertEquals("v2", future.get());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(1, getIndexFiles().size());
+
+        try (Stream<Path> stream = Files.list(mIndexPath)) {
+            Assert.assertTrue(stream.noneMatch(p -> p.getFileName().toString().startsWith(".")));
+        }
+    }
+
+    @Test
+    public void testShouldIgnoreMissingFile() throws IOException {
+        Assert.assertNull(new FileMapIndex("\t", 0, 1, -1).open(mFile.resolveSibling("missing.tsv").toString(), mIndexPath.toString()));
+    }
+
+    private LMDB open(final int aExpectedColumns) throws IOException {
+        return new FileMapIndex("\t", 0, 1, aExpectedColumns).open(mFile.toString(), mIndexPath.toString());
+    }
+
+    private List<Path> getIndexFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(mIndexPath)) {
+            return stream.filter(p -> p.getFileName().toString().matches("map\\.tsv\\.[0-9a-f]+\\.[0-9a-f]+\\.lmdb"))
+                .sorted().collect(Collectors.toList());
+        }
+    }
+
+}
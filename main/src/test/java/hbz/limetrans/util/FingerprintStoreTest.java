@@ -0,0 +1,105 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FingerprintStoreTest {
+
+    private static final String ID1 = "ID1";
+    private static final String ID2 = "ID2";
+
+    private static final String DOCUMENT1 = "{\"L1\":\"V1\"}";
+    private static final String DOCUMENT2 = "{\"L1\":\"V2\"}";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private String mPath;
+
+    public FingerprintStoreTest() {
+    }
+
+    @Before
+    public void setPath() {
+        mPath = mFolder.getRoot().toPath().resolve("fingerprints.lmdb").toString();
+    }
+
+    @Test
+    public void testShouldSkipUnchangedDocument() {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            store.acknowledge(ID1);
+        }
+
+        try (FingerprintStore store = new FingerprintStore(mPath, false)) {
+            Assert.assertFalse(store.update(ID1, DOCUMENT1));
+            Assert.assertTrue(store.update(ID1, DOCUMENT2));
+        }
+    }
+
+    @Test
+    public void testShouldSkipAcknowledgedDocumentInSameRun() {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            store.acknowledge(ID1);
+
+            Assert.assertFalse(store.update(ID1, DOCUMENT1));
+        }
+    }
+
+    @Test
+    public void testShouldNotRecordUnacknowledgedDocument() {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            Assert.assertTrue(store.update(ID2, DOCUMENT1));
+            store.acknowledge(ID2);
+        }
+
+        try (FingerprintStore store = new FingerprintStore(mPath, false)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            Assert.assertFalse(store.update(ID2, DOCUMENT1));
+        }
+    }
+
+    @Test
+    public void testShouldAcknowledgeFromOtherThread() throws InterruptedException {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+
+            final Thread thread = new Thread(() -> store.acknowledge(ID1));
+            thread.start();
+            thread.join();
+        }
+
+        try (FingerprintStore store = new FingerprintStore(mPath, false)) {
+            Assert.assertFalse(store.update(ID1, DOCUMENT1));
+        }
+    }
+
+    @Test
+    public void testShouldRemoveDocument() {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            store.acknowledge(ID1);
+
+            store.remove(ID1);
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+        }
+    }
+
+    @Test
+    public void testShouldResetStore() {
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+            store.acknowledge(ID1);
+        }
+
+        try (FingerprintStore store = new FingerprintStore(mPath, true)) {
+            Assert.assertTrue(store.update(ID1, DOCUMENT1));
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+import org.metafacture.json.JsonEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class JsonBytesEncoderTest {
+
+    private static final int LARGE_RECORDS = 100;
+    private static final int LARGE_LITERALS = 100;
+
+    public JsonBytesEncoderTest() {
+    }
+
+    @Test
+    public void testEmptyRecord() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testLiterals() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.literal("a", "b");
+            r.literal("c", "d");
+            r.literal("e", null);
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testEntities() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.startEntity("a");
+            r.literal("b", "c");
+            r.startEntity("d");
+            r.literal("e", "f");
+            r.endEntity();
+            r.endEntity();
+            r.literal("g", "h");
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testLists() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.startEntity("a[]");
+            r.literal("1", "b");
+            r.literal("2", "c");
+            r.startEntity("3");
+            r.literal("d", "e");
+            r.endEntity();
+            r.startEntity("4[]");
+            r.literal("1", "f");
+            r.endEntity();
+            r.endEntity();
+            r.startEntity("g[]");
+            r.endEntity();
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testEscapes() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.literal("a\"b", "c\\d\"e/f");
+            r.literal("g", "h\bi\fj\nk\rl\tm\u0001n\u001fo");
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testUnicode() {
+        assertJson(r -> {
+            r.startRecord("1");
+            r.literal("ä", "üßé");
+            r.literal("b", "€ 日本");
+            r.literal("c", "𝄞");
+            r.endRecord();
+        });
+    }
+
+    @Test
+    public void testMultipleRecords() {
+        assertJson(r -> {
+            for (int i = 0; i < LARGE_RECORDS; ++i) {
+                r.startRecord(String.valueOf(i));
+
+                for (int j = 0; j < LARGE_LITERALS; ++j) {
+                    r.literal("literal" + j, "value " + i + " äöü " + j);
+                }
+
+                r.endRecord();
+            }
+        });
+    }
+
+    private void assertJson(final Consumer<StreamReceiver> aConsumer) {
+        final List<String> expected = new ArrayList<>();
+        final JsonEncoder jsonEncoder = new JsonEncoder();
+        jsonEncoder.setReceiver(new DefaultObjectReceiver<String>() {
+            @Override
+            public void process(final String aJson) {
+                expected.add(aJson);
+            }
+        });
+
+        // Keeps the documents (not their strings) to verify earlier slices stay intact.
+        final List<JsonBytesEncoder.Document> documents = new ArrayList<>();
+        final JsonBytesEncoder jsonBytesEncoder = new JsonBytesEncoder();
+        jsonBytesEncoder.setReceiver(new DefaultObjectReceiver<JsonBytesEncoder.Document>() {
+            @Override
+            public void process(final JsonBytesEncoder.Document aDocument) {
+                documents.add(aDocument);
+            }
+        });
+
+        aConsumer.accept(jsonEncoder);
+        aConsumer.accept(jsonBytesEncoder);
+
+        Assert.assertEquals(expected, documents.stream().map(JsonBytesEncoder.Document::toString).toList());
+    }
+
+}
@@ -0,0 +1,91 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LMDBTest {
+
+    private static final int ENTRIES = 10_000;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 5;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    public LMDBTest() {
+    }
+
+    @Test
+    public void testShouldGetConcurrently() throws Exception {
+        final String path = mFolder.getRoot().toPath().resolve("test.lmdb").toString();
+
+        try (LMDB lmdb = new LMDB(path, true)) {
+            for (int i = 0; i < ENTRIES; ++i) {
+                lmdb.putKV(getKey(i), getValue(i));
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try (LMDB lmdb = new LMDB(path)) {
+            Assert.assertTrue(lmdb.isReadOnly());
+            Assert.assertEquals(ENTRIES, lmdb.count());
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<Integer>> futures = new ArrayList<>();
+
+            for (int t = 0; t < THREADS; ++t) {
+                final int offset = t;
+
+                // Each thread walks the keys from a different offset, so lookups interleave.
+                futures.add(executor.submit((Callable<Integer>) () -> {
+                    start.await();
+
+                    int found = 0;
+
+                    for (int r = 0; r < ROUNDS; ++r) {
+                        for (int i = 0; i < ENTRIES; ++i) {
+                            final int index = (i + offset * ENTRIES / THREADS) % ENTRIES;
+
+                            if (getValue(index).equals(lmdb.get(getKey(index)))) {
+                                ++found;
+                            }
+
+                            Assert.assertNull(lmdb.get(getKey(index + ENTRIES)));
+                        }
+                    }
+
+                    return found;
+                }));
+            }
+
+            start.countDown();
+
+            for (final Future<Integer> future : futures) {
+                Assert.assertEquals(Integer.valueOf(ENTRIES * ROUNDS), future.get());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String getKey(final int aIndex) {
+        return "key" + aIndex;
+    }
+
+    private String getValue(final int aIndex) {
+        return "value" + aIndex + "\u00e4".repeat(aIndex % 100);
+    }
+
+}
@@ -0,0 +1,125 @@
+package hbz.limetrans.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class MappedSetTest {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String DESCRIPTION = "test set";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private Path mIndexPath;
+    private Path mSource;
+
+    public MappedSetTest() {
+    }
+
+    @Before
+    public void createSource() throws IOException {
+        mIndexPath = mFolder.newFolder("index").toPath();
+        mSource = mFolder.getRoot().toPath().resolve("ids.txt");
+    }
+
+    @Test
+    public void testShouldLookUpValues() throws IOException {
+        final List<String> values = IntStream.range(0, 1000).mapToObj(i -> "(DE-605)" + i).collect(Collectors.toList());
+        values.add("\u00dcn\u00efc\u00f6d\u00e9");
+        values.add("");
+
+        Files.write(mSource, values);
+        final Predicate<String> set = load();
+
+        Assert.assertEquals(values.size(), ((MappedSet) set).size());
+
+        for (final String value : values) {
+            Assert.assertTrue(value, set.test(value));
+        }
+
+        Assert.assertFalse(set.test("(DE-605)1000"));
+        Assert.assertFalse(set.test("(DE-605)"));
+        Assert.assertFalse(set.test("Unicode"));
+    }
+
+    @Test
+    public void testShouldIgnoreDuplicates() throws IOException {
+        Files.write(mSource, List.of("a", "b", "a", "b", "c"));
+        Assert.assertEquals(3, ((MappedSet) load()).size());
+    }
+
+    @Test
+    public void testShouldReuseIndex() throws IOException {
+        Files.write(mSource, List.of("a", "b"));
+        load();
+
+        final Path indexFile = getIndexFile();
+        final FileTime lastModified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(indexFile, lastModified);
+
+        Assert.assertTrue(load().test("b"));
+        Assert.assertEquals(indexFile, getIndexFile());
+        Assert.assertEquals(lastModified, Files.getLastModifiedTime(indexFile));
+    }
+
+    @Test
+    public void testShouldRebuildOnSourceChange() throws IOException {
+        Files.write(mSource, List.of("a", "b"));
+        Assert.assertTrue(load().test("a"));
+
+        Files.write(mSource, List.of("b", "c", "d"));
+        final Predicate<String> set = load();
+
+        Assert.assertFalse(set.test("a"));
+        Assert.assertTrue(set.test("d"));
+        Assert.assertEquals(3, ((MappedSet) set).size());
+
+        // Same size, different modification time.
+        Files.write(mSource, List.of("e", "f", "g"));
+        Files.setLastModifiedTime(mSource, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+
+        Assert.assertTrue(load().test("e"));
+        Assert.assertFalse(load().test("b"));
+
+        // Rebuilt in place.
+        getIndexFile();
+    }
+
+    @Test
+    public void testShouldHandleMissingSource() {
+        Assert.assertFalse(MappedSet.load(mSource.toString(), mIndexPath.toString(), false, DESCRIPTION, LOGGER).test("a"));
+        Assert.assertNull(MappedSet.load(mSource.toString(), mIndexPath.toString(), true, DESCRIPTION, LOGGER));
+    }
+
+    private Predicate<String> load() {
+        final Predicate<String> set = MappedSet.load(mSource.toString(), mIndexPath.toString(), true, DESCRIPTION, LOGGER);
+        Assert.assertTrue(set instanceof MappedSet);
+        return set;
+    }
+
+    private Path getIndexFile() throws IOException {
+        try (Stream<Path> stream = Files.list(mIndexPath)) {
+            final List<Path> files = stream.collect(Collectors.toList());
+            Assert.assertEquals(1, files.size());
+            return files.get(0);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package hbz.limetrans.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+public class MetricsTest {
+
+    private static final long SLEEP = 50;
+    private static final double SECONDS = SLEEP / 1000.0;
+
+    private final Metrics mMetrics = new Metrics(Settings.settingsBuilder()
+            .put(new String[]{"interval"}, 0)
+            .put(new String[]{"jmx"}, false)
+            .build());
+
+    public MetricsTest() {
+    }
+
+    @After
+    public void close() {
+        mMetrics.close();
+    }
+
+    @Test
+    public void testShouldExcludeNestedStages() {
+        final TimingStreamPipe outer = newPipeline(new DefaultStreamReceiver() {
+            @Override
+            public void literal(final String aName, final String aValue) {
+                sleep();
+            }
+        });
+
+        outer.startRecord("1");
+        outer.literal("a", "b");
+        outer.endRecord();
+
+        assertStages();
+        Assert.assertEquals(1, mMetrics.getStage("outer").getRecords());
+        Assert.assertEquals(1, mMetrics.getStage("inner").getRecords());
+    }
+
+    @Test
+    public void testShouldExcludeFailedNestedStages() {
+        final TimingStreamPipe inner = mMetrics.newTimer("inner");
+        inner.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void literal(final String aName, final String aValue) {
+                sleep();
+                throw new IllegalStateException(aValue);
+            }
+        });
+
+        // The enclosing stage recovers from the failure and carries on.
+        mMetrics.getStage("outer").time(() -> {
+            try {
+                inner.literal("a", "b");
+                Assert.fail("Expected exception");
+            }
+            catch (final IllegalStateException e) {
+                Assert.assertEquals("b", e.getMessage());
+            }
+        });
+
+        assertStages();
+
+        // Nothing is left over for the next top-level stage to exclude.
+        mMetrics.getStage("next").time(this::sleep);
+        Assert.assertTrue(mMetrics.getStage("next").getSeconds() >= SECONDS);
+    }
+
+    private TimingStreamPipe newPipeline(final StreamReceiver aReceiver) {
+        final TimingStreamPipe outer = mMetrics.newTimer("outer");
+
+        outer
+            .setReceiver(mMetrics.newTimer("inner"))
+            .setReceiver(aReceiver);
+
+        return outer;
+    }
+
+    private void assertStages() {
+        final double outer = mMetrics.getStage("outer").getSeconds();
+        final double inner = mMetrics.getStage("inner").getSeconds();
+
+        Assert.assertTrue("inner: " + inner, inner >= SECONDS);
+        Assert.assertTrue("outer: " + outer, outer < SECONDS);
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(SLEEP);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
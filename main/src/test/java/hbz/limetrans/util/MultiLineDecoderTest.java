@@ -0,0 +1,87 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultiLineDecoderTest {
+
+    public MultiLineDecoderTest() {
+    }
+
+    @Test
+    public void testShouldDecodeRecords() {
+        Assert.assertEquals(List.of(
+                    "startRecord:1", "0010=HT1", "startEntity:0331", "a=Title", "b=Subtitle", "endEntity",
+                    "startEntity:0335", "a=Addendum", "endEntity", "0425=2001", "endRecord",
+                    "startRecord:2", "startEntity:0331", "a=Other:title", "endEntity", "endRecord"),
+                process(SisisSupplement.getDecoder(),
+                    "0000:1\n0010:HT1\n0331.a:Title\n0331.b:Subtitle\n0335.a:Addendum\n0425:2001\n9999:\n" +
+                    "0000:2\r\n\r\ninvalid\r\n0331.a:Other:title\r\n9999:"));
+    }
+
+    @Test
+    public void testShouldIncludeRecordBoundaries() {
+        final MultiLineDecoder decoder = SisisSupplement.getDecoder();
+        decoder.setIncludeRecordStart(true);
+        decoder.setIncludeRecordEnd(true);
+
+        Assert.assertEquals(List.of("startRecord:1", "0000=1", "0010=HT1", "9999=", "endRecord"),
+                process(decoder, "0000:1\n0010:HT1\n9999:\n"));
+    }
+
+    @Test
+    public void testShouldSplitOnRegularExpression() {
+        final MultiLineDecoder decoder = SisisSupplement.getDecoder();
+        decoder.setValueSeparator(":+");
+
+        Assert.assertEquals(List.of("startRecord:1", "startEntity:0331", "a=Title:", "endEntity", "endRecord"),
+                process(decoder, "0000::1\n0331.a:::Title:\n9999:\n"));
+    }
+
+    @Test
+    public void testShouldParseRow() {
+        final MultiLineDecoder decoder = SisisSupplement.getDecoder();
+
+        Assert.assertEquals(new MultiLineDecoder.Row("0331", "a", "Title:1", false, false, false), decoder.parseRow("0331.a:Title:1"));
+        Assert.assertEquals(new MultiLineDecoder.Row("9999", null, "", false, true, false), decoder.parseRow("9999:"));
+        Assert.assertNull(decoder.parseRow("invalid"));
+    }
+
+    private List<String> process(final MultiLineDecoder aDecoder, final String aRecord) {
+        final List<String> events = new ArrayList<>();
+
+        aDecoder.parseRecord(aRecord, new DefaultStreamReceiver() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                events.add("startRecord:" + aIdentifier);
+            }
+
+            @Override
+            public void endRecord() {
+                events.add("endRecord");
+            }
+
+            @Override
+            public void startEntity(final String aName) {
+                events.add("startEntity:" + aName);
+            }
+
+            @Override
+            public void endEntity() {
+                events.add("endEntity");
+            }
+
+            @Override
+            public void literal(final String aName, final String aValue) {
+                events.add(aName + "=" + aValue);
+            }
+        });
+
+        return events;
+    }
+
+}
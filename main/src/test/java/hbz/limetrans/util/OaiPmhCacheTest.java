@@ -0,0 +1,106 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class OaiPmhCacheTest {
+
+    private static final int MEGABYTE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    public OaiPmhCacheTest() {
+    }
+
+    @Test
+    public void testShouldRoundTripResponses() {
+        final OaiPmhCache cache = newCache(1, 1);
+        final URI uri = getUri("from=2024-01-01");
+
+        Assert.assertNull(cache.get(uri));
+        Assert.assertTrue(cache.isExpired(uri));
+
+        cache.put(uri, "<OAI-PMH/>".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertEquals("<OAI-PMH/>", new String(cache.get(uri), StandardCharsets.UTF_8));
+        Assert.assertFalse(cache.isExpired(uri));
+        Assert.assertNull(cache.get(getUri("from=2024-01-02")));
+    }
+
+    @Test
+    public void testShouldExpireResponses() {
+        final OaiPmhCache cache = newCache(0, 1);
+        final URI uri = getUri("resumptionToken=1");
+
+        cache.put(uri, "<OAI-PMH/>".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(cache.isExpired(uri));
+        Assert.assertNotNull(cache.get(uri));
+    }
+
+    @Test
+    public void testShouldEvictOldestResponses() throws IOException {
+        final OaiPmhCache cache = newCache(1, 1);
+        final Random random = new Random(42);
+        final Set<Path> seen = new HashSet<>();
+
+        // Incompressible, so that four of them exceed the size limit.
+        for (int i = 0; i < 4; ++i) {
+            final byte[] response = new byte[MEGABYTE / 3];
+            random.nextBytes(response);
+
+            cache.put(getUri("resumptionToken=" + i), response);
+            setLastModified(seen, i);
+        }
+
+        Assert.assertNull(cache.get(getUri("resumptionToken=0")));
+        Assert.assertNotNull(cache.get(getUri("resumptionToken=3")));
+        Assert.assertTrue(getSize() <= MEGABYTE);
+    }
+
+    private OaiPmhCache newCache(final int aTtl, final int aMaxSize) {
+        return new OaiPmhCache(Settings.settingsBuilder()
+                .put(new String[]{"path"}, mFolder.getRoot().toString())
+                .put(new String[]{"ttl"}, aTtl)
+                .put(new String[]{"max-size"}, aMaxSize)
+                .build());
+    }
+
+    private URI getUri(final String aQuery) {
+        return URI.create("http://localhost/oai?verb=ListRecords&" + aQuery);
+    }
+
+    // Makes the modification times distinct, regardless of file system resolution.
+    private void setLastModified(final Set<Path> aSeen, final int aIndex) throws IOException {
+        final FileTime time = FileTime.fromMillis(System.currentTimeMillis() - 1000L * (10 - aIndex));
+
+        try (Stream<Path> stream = Files.list(mFolder.getRoot().toPath())) {
+            for (final Path file : (Iterable<Path>) stream::iterator) {
+                if (aSeen.add(file)) {
+                    Files.setLastModifiedTime(file, time);
+                }
+            }
+        }
+    }
+
+    private long getSize() throws IOException {
+        try (Stream<Path> stream = Files.list(mFolder.getRoot().toPath())) {
+            return stream.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package hbz.limetrans.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OaiPmhQueueTest {
+
+    private static final String FROM = "2024-01-01";
+    private static final String UNTIL = "2024-01-06";
+
+    private static final String RECORD_FORMAT = "<record><metadata><marc:record xmlns:marc=\"http://www.loc.gov/MARC21/slim\">" +
+        "<marc:leader>00000nam a2200000 c 4500</marc:leader><marc:controlfield tag=\"001\">%s</marc:controlfield>" +
+        "</marc:record></metadata></record>";
+
+    private static final int HTTP_ERROR = 500;
+    private static final int HTTP_OK = 200;
+    private static final int RECORDS_PER_DAY = 2;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder(); // checkstyle-disable-line VisibilityModifier
+
+    private final Set<String> mFailingTokens = ConcurrentHashMap.newKeySet();
+    private final List<String> mRequests = new ArrayList<>();
+
+    private HttpServer mServer;
+
+    public OaiPmhQueueTest() {
+    }
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        mServer.createContext("/oai", this::handle);
+        mServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void testShouldHarvestWindowsInOrder() {
+        final OaiPmhQueue queue = newQueue(UNTIL, 3, 3, null);
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(getIds(1, 6), process(queue));
+        Assert.assertFalse(queue.isFailed());
+        Assert.assertEquals(6, mRequests.size());
+    }
+
+    @Test
+    public void testShouldHarvestEmptyWindows() {
+        final OaiPmhQueue queue = newQueue("2024-01-08", 4, 2, null);
+
+        Assert.assertEquals(4, queue.size());
+        Assert.assertEquals(getIds(1, 6), process(queue));
+    }
+
+    @Test
+    public void testShouldResumeInterruptedHarvest() {
+        final String state = mFolder.getRoot().toPath().resolve("oai.state").toString();
+
+        // Second page of the second window.
+        mFailingTokens.add("2024-01-04/2024-01-04");
+        final List<String> ids = process(newQueue(UNTIL, 3, 1, state));
+
+        Assert.assertTrue(Files.exists(Path.of(state)));
+        Assert.assertEquals(10, ids.size());
+
+        mFailingTokens.clear();
+        final OaiPmhQueue queue = newQueue(UNTIL, 3, 1, state);
+
+        Assert.assertEquals(1, queue.size());
+        ids.addAll(process(queue));
+
+        Assert.assertFalse(queue.isFailed());
+        Assert.assertFalse(Files.exists(Path.of(state)));
+        Assert.assertEquals(Set.copyOf(getIds(1, 6)), Set.copyOf(ids));
+        Assert.assertEquals(12, ids.size());
+    }
+
+    @Test
+    public void testShouldReplayFromCache() {
+        final String cache = mFolder.getRoot().toPath().resolve("cache").toString();
+
+        Assert.assertEquals(getIds(1, 6), process(newQueue(UNTIL, 3, 3, null, cache, 1)));
+        Assert.assertEquals(6, mRequests.size());
+
+        mRequests.clear();
+        Assert.assertEquals(getIds(1, 6), process(newQueue(UNTIL, 3, 3, null, cache, 1)));
+        Assert.assertEquals(0, mRequests.size());
+    }
+
+    @Test
+    public void testShouldFallBackToExpiredCache() {
+        final String cache = mFolder.getRoot().toPath().resolve("cache").toString();
+
+        Assert.assertEquals(getIds(1, 6), process(newQueue(UNTIL, 1, 1, null, cache, 0)));
+
+        mFailingTokens.add("2024-01-04/2024-01-06");
+        final OaiPmhQueue queue = newQueue(UNTIL, 1, 1, null, cache, 0);
+
+        Assert.assertEquals(getIds(1, 6), process(queue));
+        Assert.assertFalse(queue.isFailed());
+    }
+
+    private OaiPmhQueue newQueue(final String aUntil, final int aWindows, final int aWorkers, final String aState) {
+        return newQueue(aUntil, aWindows, aWorkers, aState, null, 0);
+    }
+
+    private OaiPmhQueue newQueue(final String aUntil, final int aWindows, final int aWorkers, final String aState, final String aCache, final int aTtl) {
+        final Settings.Builder builder = Settings.settingsBuilder()
+            .put(new String[]{"uri"}, "http://localhost:" + mServer.getAddress().getPort() + "/oai")
+            .put(new String[]{"from"}, FROM)
+            .put(new String[]{"until"}, aUntil)
+            .put(new String[]{"windows"}, aWindows)
+            .put(new String[]{"workers"}, aWorkers);
+
+        if (aState != null) {
+            builder.put(new String[]{"state"}, aState);
+        }
+
+        if (aCache != null) {
+            builder
+                .put(new String[]{"cache", "path"}, aCache)
+                .put(new String[]{"cache", "ttl"}, aTtl);
+        }
+
+        return new OaiPmhQueue(builder.build());
+    }
+
+    private List<String> process(final OaiPmhQueue aQueue) {
+        final List<String> ids = new ArrayList<>();
+
+        aQueue.process(new DefaultStreamReceiver() {
+            @Override
+            public void literal(final String aName, final String aValue) {
+                if ("001".equals(aName)) {
+                    ids.add(aValue);
+                }
+            }
+        });
+
+        return ids;
+    }
+
+    private List<String> getIds(final int aFromDay, final int aUntilDay) {
+        final List<String> ids = new ArrayList<>();
+
+        for (int day = aFromDay; day <= aUntilDay; ++day) {
+            for (int i = 1; i <= RECORDS_PER_DAY; ++i) {
+                ids.add(day + "-" + i);
+            }
+        }
+
+        return ids;
+    }
+
+    // One page per day; the resumption token is the next day and the end of the window.
+    private void handle(final HttpExchange aExchange) throws IOException {
+        final Map<String, String> params = new HashMap<>();
+
+        for (final String param : aExchange.getRequestURI().getRawQuery().split("&")) {
+            final String[] parts = param.split("=", 2);
+            params.put(parts[0], URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+        }
+
+        final String token = params.get("resumptionToken");
+
+        synchronized (mRequests) {
+            mRequests.add(aExchange.getRequestURI().toString());
+        }
+
+        final LocalDate day = LocalDate.parse(token != null ? token.split("/")[0] : params.get("from"));
+        final LocalDate until = LocalDate.parse(token != null ? token.split("/")[1] : params.get("until"));
+
+        final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+            .append("<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">");
+
+        if (day.isAfter(until) || day.isAfter(LocalDate.parse(UNTIL))) {
+            sb.append("<error code=\"noRecordsMatch\"/>");
+        }
+        else {
+            sb.append("<ListRecords>");
+
+            for (int i = 1; i <= RECORDS_PER_DAY; ++i) {
+                sb.append(RECORD_FORMAT.formatted(day.getDayOfMonth() + "-" + i));
+            }
+
+            final LocalDate next = day.plusDays(1);
+            sb.append("<resumptionToken>").append(next.isAfter(until) ? "" : next + "/" + until).append("</resumptionToken>");
+            sb.append("</ListRecords>");
+        }
+
+        sb.append("</OAI-PMH>");
+
+        final byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final boolean failing = token != null && mFailingTokens.contains(token);
+
+        aExchange.sendResponseHeaders(failing ? HTTP_ERROR : HTTP_OK, failing ? -1 : body.length);
+
+        if (!failing) {
+            try (OutputStream output = aExchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+
+        aExchange.close();
+    }
+
+}
@@ -0,0 +1,152 @@
+package hbz.limetrans.util;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+import org.metafacture.io.FileCompression;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+
+public class ParallelBGZFInputStreamTest {
+
+    private static final String INPUT_PATH = "src/test/resources/limetrans/input/";
+
+    private static final String[] FIXTURES = new String[]{
+        "DE-468.alias.kv.bgzf",
+        "DE-468.callnumber.kv.bgzf",
+        "DE-A96.id.bgzf",
+        "DE-A96.skipid.bgzf",
+        "DE-A96.superid.bgzf"
+    };
+
+    private static final int WORKERS = 4;
+
+    private final ExecutorService mExecutor = ParallelBGZFInputStream.newExecutor(WORKERS);
+
+    public ParallelBGZFInputStreamTest() {
+    }
+
+    @After
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testShouldDetectBGZF() throws IOException {
+        for (final String fixture : FIXTURES) {
+            try (InputStream stream = open(getBytes(fixture))) {
+                Assert.assertTrue(fixture, ParallelBGZFInputStream.isBGZF(stream));
+            }
+        }
+
+        try (InputStream stream = open("plain text".getBytes(StandardCharsets.UTF_8))) {
+            Assert.assertFalse(ParallelBGZFInputStream.isBGZF(stream));
+        }
+    }
+
+    @Test
+    public void testShouldInflateFixtures() throws IOException {
+        for (final String fixture : FIXTURES) {
+            final byte[] bytes = getBytes(fixture);
+            Assert.assertArrayEquals(fixture, getReference(bytes), inflate(bytes));
+        }
+    }
+
+    @Test
+    public void testShouldOpenFixtures() throws IOException {
+        final BGZFOpener opener = new BGZFOpener(mExecutor, WORKERS);
+        final StringWriter writer = new StringWriter();
+
+        opener.setReceiver(new DefaultObjectReceiver<Reader>() {
+            @Override
+            public void process(final Reader aReader) {
+                try {
+                    aReader.transferTo(writer);
+                }
+                catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+
+        for (final String fixture : FIXTURES) {
+            writer.getBuffer().setLength(0);
+            opener.process(INPUT_PATH + fixture);
+
+            Assert.assertEquals(fixture, new String(getReference(getBytes(fixture)), StandardCharsets.UTF_8), writer.toString());
+        }
+    }
+
+    @Test
+    public void testShouldRejectTruncatedBlock() throws IOException {
+        final byte[] bytes = getBytes(FIXTURES[0]);
+        final byte[] truncated = Arrays.copyOf(bytes, getBlockSize(bytes) - 1);
+
+        Assert.assertThrows(IOException.class, () -> inflate(truncated));
+    }
+
+    @Test
+    public void testShouldRejectCrcMismatch() throws IOException {
+        final byte[] bytes = getBytes(FIXTURES[0]);
+
+        // First byte of the first block's CRC32 (footer: CRC32, ISIZE).
+        bytes[getBlockSize(bytes) - 2 * Integer.BYTES] ^= 1;
+
+        final IOException e = Assert.assertThrows(IOException.class, () -> inflate(bytes));
+        Assert.assertEquals("BGZF block CRC mismatch", e.getCause().getMessage());
+    }
+
+    @Test
+    public void testShouldReadSingleBytes() throws IOException {
+        final byte[] bytes = getBytes(FIXTURES[0]);
+        final byte[] reference = getReference(bytes);
+
+        try (InputStream stream = new ParallelBGZFInputStream(open(bytes), mExecutor, WORKERS)) {
+            for (final byte b : reference) {
+                Assert.assertEquals(b & 0xff, stream.read());
+            }
+
+            Assert.assertEquals(-1, stream.read());
+        }
+    }
+
+    private byte[] inflate(final byte[] aBytes) throws IOException {
+        try (InputStream stream = new ParallelBGZFInputStream(open(aBytes), mExecutor, WORKERS)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    // BGZF files are valid multi-member gzip files.
+    private byte[] getReference(final byte[] aBytes) throws IOException {
+        try (InputStream stream = FileCompression.GZIP.createDecompressor(new ByteArrayInputStream(aBytes), true)) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private int getBlockSize(final byte[] aBytes) {
+        return (aBytes[16] & 0xff | (aBytes[17] & 0xff) << 8) + 1;
+    }
+
+    private byte[] getBytes(final String aFixture) throws IOException {
+        final Path path = Paths.get(INPUT_PATH, aFixture);
+        return Files.readAllBytes(path);
+    }
+
+    private InputStream open(final byte[] aBytes) {
+        return new BufferedInputStream(new ByteArrayInputStream(aBytes));
+    }
+
+}
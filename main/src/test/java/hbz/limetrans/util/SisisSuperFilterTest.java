@@ -0,0 +1,109 @@
+package hbz.limetrans.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SisisSuperFilterTest {
+
+    private static final String LONG_VALUE = "Über".repeat(100);
+
+    public SisisSuperFilterTest() {
+    }
+
+    @Test
+    public void testShouldEnrichSubordinateRecords() {
+        Assert.assertEquals(List.of(
+                    "startRecord:B", "startEntity:0004", "001=A", "endEntity",
+                    "startEntity:0331", "001=Sub title", "002=" + LONG_VALUE, "endEntity",
+                    "startEntity:0331", "001=Super title", "endEntity",
+                    "startEntity:0335", "001=Addendum", "endEntity",
+                    "startEntity:0451", "001=Super title", "endEntity",
+                    "startEntity:0453", "001=(DE-600)ZDB-1", "endEntity",
+                    "startEntity:9010", "001=S-1", "endEntity",
+                    "endRecord",
+                    "startRecord:D", "startEntity:0004", "001=A", "endEntity",
+                    "startEntity:0451", "001=Own series", "endEntity",
+                    "startEntity:0331", "001=Super title", "endEntity",
+                    "startEntity:0335", "001=Addendum", "endEntity",
+                    "startEntity:0453", "001=(DE-600)ZDB-1", "endEntity",
+                    "startEntity:9010", "001=S-1", "endEntity",
+                    "endRecord"), process(true));
+    }
+
+    @Test
+    public void testShouldSpillLikeBuffering() {
+        Assert.assertEquals(process(false), process(true));
+    }
+
+    private List<String> process(final boolean aSpill) {
+        final List<String> events = new ArrayList<>();
+
+        final SisisSuperFilter filter = new SisisSuperFilter(aSpill);
+        filter.setReceiver(new DefaultStreamReceiver() {
+            @Override
+            public void startRecord(final String aIdentifier) {
+                events.add("startRecord:" + aIdentifier);
+            }
+
+            @Override
+            public void endRecord() {
+                events.add("endRecord");
+            }
+
+            @Override
+            public void startEntity(final String aName) {
+                events.add("startEntity:" + aName);
+            }
+
+            @Override
+            public void endEntity() {
+                events.add("endEntity");
+            }
+
+            @Override
+            public void literal(final String aName, final String aValue) {
+                events.add(aName + "=" + aValue);
+            }
+        });
+
+        // Subordinate records before and after their superordinate record, out of identifier order.
+        filter.startRecord("D");
+        entity(filter, "0004", "001", "A");
+        entity(filter, "0451", "001", "Own series");
+        filter.endRecord();
+
+        filter.startRecord("A");
+        entity(filter, "0010", "001", "S-1");
+        entity(filter, "0331", "001", "Super title");
+        entity(filter, "0335", "001", "Addendum");
+        entity(filter, "0572", "011", "ZDB-1");
+        filter.endRecord();
+
+        filter.startRecord("C");
+        entity(filter, "0331", "001", "Unrelated");
+        filter.endRecord();
+
+        filter.startRecord("B");
+        entity(filter, "0004", "001", "A");
+        filter.startEntity("0331");
+        filter.literal("001", "Sub title");
+        filter.literal("002", LONG_VALUE);
+        filter.endEntity();
+        filter.endRecord();
+
+        filter.closeStream();
+
+        return events;
+    }
+
+    private void entity(final SisisSuperFilter aFilter, final String aEntity, final String aLiteral, final String aValue) {
+        aFilter.startEntity(aEntity);
+        aFilter.literal(aLiteral, aValue);
+        aFilter.endEntity();
+    }
+
+}